@@ -5,7 +5,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.ComponentScan;
 
 @SpringBootApplication
-@ComponentScan(basePackages = {"video.example.com.controller"})
+@ComponentScan(basePackages = {"video.example.com.controller", "video.example.com.service"})
 public class Application {
    public static void main(String[] args) {
       SpringApplication.run(Application.class, args);
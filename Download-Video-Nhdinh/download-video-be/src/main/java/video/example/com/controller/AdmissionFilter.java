@@ -0,0 +1,166 @@
+package video.example.com.controller;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import video.example.com.service.AdmissionControl;
+import video.example.com.service.Platform;
+
+/**
+ * Runs {@link AdmissionControl} in front of the preview and download endpoints and
+ * answers {@code 429} with {@code Retry-After} itself, before a controller or a Tomcat
+ * thread is tied up. File downloads ({@code /download?id=}) and status endpoints
+ * are not limited.
+ * <p>
+ * A preview resolved asynchronously keeps its global slot until its response is
+ * complete. A download gives its slot back once the controller returns, i.e. once the
+ * job is queued: its SSE stream can stay open for minutes, and the download stage's own
+ * queue (and the queue-wait check) already limits downloads.
+ */
+@Component
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Pattern PREVIEW = Pattern.compile("/api(/tiktok|/instagram)?/preview");
+    private static final Pattern DOWNLOAD = Pattern.compile("/api(/tiktok|/instagram)?/download/(stream|pipe)");
+    private static final String BATCH = "/api/batch";
+    private static final String TOO_MANY_REQUESTS = "Bạn gửi quá nhiều yêu cầu. Vui lòng thử lại sau %d giây.";
+    private static final String SERVER_BUSY = "Máy chủ đang quá tải. Vui lòng thử lại sau %d giây.";
+
+    @Value("${admission.trust-forwarded-for:false}")
+    private boolean trustForwardedFor;
+
+    private final AdmissionControl admission;
+
+    public AdmissionFilter(AdmissionControl admission) {
+        this.admission = admission;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        AdmissionControl.Kind kind;
+        Platform platform = null;
+        Matcher download = DOWNLOAD.matcher(path);
+        if ("POST".equals(request.getMethod()) && PREVIEW.matcher(path).matches()) {
+            kind = AdmissionControl.Kind.PREVIEW;
+        } else if ("GET".equals(request.getMethod()) && download.matches()) {
+            kind = AdmissionControl.Kind.DOWNLOAD;
+            platform = platformOf(download.group(1));
+        } else if ("POST".equals(request.getMethod()) && BATCH.equals(path)) {
+            kind = AdmissionControl.Kind.DOWNLOAD;
+        } else {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        AdmissionControl.Ticket ticket;
+        try {
+            ticket = admission.admit(clientOf(request), kind, platform);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+            return;
+        }
+        if (!ticket.isAdmitted()) {
+            reject(request, response, ticket);
+            return;
+        }
+        boolean async = false;
+        try {
+            chain.doFilter(request, response);
+            if (kind == AdmissionControl.Kind.PREVIEW && request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new TicketRelease(ticket));
+                async = true;
+            }
+        } finally {
+            if (!async) {
+                ticket.close();
+            }
+        }
+    }
+
+    /**
+     * Gives back the slot of a request that went async once its response is done.
+     */
+    private record TicketRelease(AdmissionControl.Ticket ticket) implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            ticket.close();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            ticket.close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            ticket.close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // A new async cycle drops its listeners; stay registered so the slot is still given back
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+    private static Platform platformOf(String prefix) {
+        if ("/tiktok".equals(prefix)) {
+            return Platform.TIKTOK;
+        }
+        if ("/instagram".equals(prefix)) {
+            return Platform.INSTAGRAM;
+        }
+        return Platform.FACEBOOK;
+    }
+
+    private String clientOf(HttpServletRequest request) {
+        if (trustForwardedFor) {
+            String forwarded = request.getHeader("X-Forwarded-For");
+            if (forwarded != null && !forwarded.isBlank()) {
+                int comma = forwarded.indexOf(',');
+                return (comma < 0 ? forwarded : forwarded.substring(0, comma)).trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private static void reject(HttpServletRequest request, HttpServletResponse response, AdmissionControl.Ticket ticket)
+            throws IOException {
+        String message = String.format("rate".equals(ticket.getReason()) ? TOO_MANY_REQUESTS : SERVER_BUSY,
+                ticket.getRetryAfterSeconds());
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(ticket.getRetryAfterSeconds()));
+        // CORS is applied by the controllers, which a rejected request never reaches
+        if (request.getHeader(HttpHeaders.ORIGIN) != null) {
+            response.setHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, "*");
+            response.setHeader(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, HttpHeaders.RETRY_AFTER);
+        }
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        MAPPER.writeValue(response.getOutputStream(), Map.of("error", message));
+    }
+}
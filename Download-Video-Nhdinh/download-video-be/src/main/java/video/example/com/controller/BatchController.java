@@ -0,0 +1,111 @@
+package video.example.com.controller;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import video.example.com.service.BatchDownloadService;
+import video.example.com.service.ProgressHub;
+
+@RestController
+@RequestMapping("/api/batch")
+@CrossOrigin(origins = "*")
+public class BatchController {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchController.class);
+
+    private final BatchDownloadService batchService;
+    private final ProgressHub progressHub;
+
+    public BatchController(BatchDownloadService batchService, ProgressHub progressHub) {
+        this.batchService = batchService;
+        this.progressHub = progressHub;
+    }
+
+    /**
+     * Starts downloading a list of TikTok / Facebook / Instagram URLs. Progress for every
+     * item arrives as {@code item} events on {@code /api/batch/{id}/events}; the stream ends
+     * with {@code DONE_<succeeded>/<total>}.
+     */
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> start(@RequestBody Map<String, List<String>> payload) {
+        BatchDownloadService.Batch batch;
+        try {
+            batch = batchService.start(payload.get("urls"));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejected batch: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        Map<String, Object> body = describe(batch);
+        body.put("events", "/api/batch/" + batch.getId() + "/events");
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(body);
+    }
+
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> events(@PathVariable String id,
+                                             @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        BatchDownloadService.Batch batch = batchService.getBatch(id);
+        if (batch == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(progressHub.attach(batch.getChannel(), lastEventId, 1_800_000L));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Map<String, Object>> getBatch(@PathVariable String id) {
+        BatchDownloadService.Batch batch = batchService.getBatch(id);
+        if (batch == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(describe(batch));
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Map<String, Object>> cancel(@PathVariable String id) {
+        BatchDownloadService.Batch batch = batchService.getBatch(id);
+        if (batch == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!batchService.cancel(id)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("id", id, "finished", true));
+        }
+        return ResponseEntity.accepted().body(describe(batch));
+    }
+
+    private static Map<String, Object> describe(BatchDownloadService.Batch batch) {
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (BatchDownloadService.Item item : batch.getItems()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("index", item.getIndex());
+            entry.put("url", item.getUrl());
+            entry.put("platform", item.getPlatform() != null ? item.getPlatform().key() : null);
+            entry.put("status", item.getStatus().name());
+            if (item.getResult() != null) {
+                entry.put(item.getStatus() == BatchDownloadService.ItemStatus.DONE ? "artifact" : "error", item.getResult());
+            }
+            items.add(entry);
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("id", batch.getId());
+        body.put("finished", batch.isFinished());
+        body.put("items", items);
+        return body;
+    }
+}
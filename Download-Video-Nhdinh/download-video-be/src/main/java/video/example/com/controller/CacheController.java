@@ -0,0 +1,45 @@
+package video.example.com.controller;
+
+import java.util.Map;
+
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import video.example.com.service.ArtifactStore;
+import video.example.com.service.PreviewCache;
+import video.example.com.service.PreviewHedger;
+import video.example.com.service.UrlCanonicalizer;
+
+@RestController
+@RequestMapping("/api/cache")
+@CrossOrigin(origins = "*")
+public class CacheController {
+
+    private final PreviewCache previewCache;
+    private final ArtifactStore artifacts;
+    private final PreviewHedger previewHedger;
+    private final UrlCanonicalizer canonicalizer;
+
+    public CacheController(PreviewCache previewCache, ArtifactStore artifacts, PreviewHedger previewHedger,
+                           UrlCanonicalizer canonicalizer) {
+        this.previewCache = previewCache;
+        this.artifacts = artifacts;
+        this.previewHedger = previewHedger;
+        this.canonicalizer = canonicalizer;
+    }
+
+    @GetMapping("/stats")
+    public Map<String, Object> stats() {
+        return Map.of(
+                "preview", previewCache.stats(),
+                "previewHedge", previewHedger.stats(),
+                "shortLinks", canonicalizer.stats(),
+                "files", Map.of(
+                        "entries", artifacts.entryCount(),
+                        "sizeBytes", artifacts.sizeBytes()
+                )
+        );
+    }
+}
@@ -0,0 +1,69 @@
+package video.example.com.controller;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import video.example.com.service.ClusterRouting;
+import video.example.com.service.Platform;
+import video.example.com.service.VideoUrl;
+
+/**
+ * Redirects download streams to the node {@link ClusterRouting} assigns the video to,
+ * so its job and cached file live on one node whichever node the load balancer picked.
+ * The redirect carries {@code routed=1} and is never redirected again, so nodes that
+ * disagree about membership cannot bounce a client around. Runs before
+ * {@link AdmissionFilter} so a redirect does not use up the client's rate.
+ * Artifact downloads ({@code /download?id=}) are not routed: every node can serve them
+ * from the shared artifact store.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+public class ClusterRoutingFilter extends OncePerRequestFilter {
+
+    private static final Pattern DOWNLOAD = Pattern.compile("/api(/tiktok|/instagram)?/download/(stream|pipe)");
+    private static final String ROUTED = "routed";
+
+    private final ClusterRouting routing;
+
+    public ClusterRoutingFilter(ClusterRouting routing) {
+        this.routing = routing;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !routing.isEnabled() || !"GET".equals(request.getMethod()) || !DOWNLOAD.matcher(path).matches()
+                || request.getParameter(ROUTED) != null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String url = request.getParameter("url");
+        Platform platform = url != null ? VideoUrl.platformOf(url) : null;
+        String owner = platform != null ? routing.ownerOf(platform, url) : null;
+        if (owner == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        // 307 keeps the method; EventSource follows it like any redirect
+        response.setStatus(HttpServletResponse.SC_TEMPORARY_REDIRECT);
+        response.setHeader(HttpHeaders.LOCATION, owner + request.getRequestURI() + "?" + request.getQueryString()
+                + "&" + ROUTED + "=1");
+        // CORS is applied by the controllers, which a redirected request never reaches
+        if (request.getHeader(HttpHeaders.ORIGIN) != null) {
+            response.setHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, "*");
+        }
+    }
+}
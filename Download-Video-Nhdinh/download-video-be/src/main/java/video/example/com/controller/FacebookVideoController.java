@@ -1,117 +1,148 @@
 package video.example.com.controller;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
-import org.springframework.core.io.InputStreamResource;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import video.example.com.service.CircuitBreakers;
+import video.example.com.service.DownloadCoordinator;
+import video.example.com.service.DownloadTask;
+import video.example.com.service.PassThroughStreamer;
+import video.example.com.service.Platform;
+import video.example.com.service.PreviewCache;
+import video.example.com.service.ProcessSupervisor;
+import video.example.com.service.ProxyPool;
+import video.example.com.service.VideoFileServer;
+import video.example.com.service.VideoUrl;
+import video.example.com.util.ProcessWatcher;
 import video.example.com.util.FacebookVideoUtil;
+import video.example.com.util.VideoMetadata;
+import video.example.com.util.YtDlpRunner;
 
 @RestController
 @RequestMapping("/api")
 @CrossOrigin(origins = "*")
 public class FacebookVideoController {
-@GetMapping(value = "/download/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-public SseEmitter streamDownload(@RequestParam String url, @RequestParam(required = false) String title) {
-    SseEmitter emitter = new SseEmitter(600_000L); // Tăng lên 10 phút
-
-    new Thread(() -> {
-        try {
-            String filename = FacebookVideoUtil.downloadVideoUsingYtDlp(url, title, progress -> {
-                try {
-                    emitter.send(SseEmitter.event().data(progress));
-                } catch (IOException e) {
-                    System.err.println("Client disconnected: " + e.getMessage());
-                }
-            });
-
-            emitter.send(SseEmitter.event().data("DONE_" + filename));
-        } catch (Exception e) {
+
+    private final DownloadCoordinator downloadCoordinator;
+    private final PreviewCache previewCache;
+    private final VideoFileServer fileServer;
+    private final PassThroughStreamer passThroughStreamer;
+    private final ProcessSupervisor processSupervisor;
+    private final ProxyPool proxyPool;
+    private final CircuitBreakers circuits;
+
+    public FacebookVideoController(DownloadCoordinator downloadCoordinator, PreviewCache previewCache,
+                                   VideoFileServer fileServer, PassThroughStreamer passThroughStreamer,
+                                   ProcessSupervisor processSupervisor, ProxyPool proxyPool,
+                                   CircuitBreakers circuits) {
+        this.downloadCoordinator = downloadCoordinator;
+        this.previewCache = previewCache;
+        this.fileServer = fileServer;
+        this.passThroughStreamer = passThroughStreamer;
+        this.processSupervisor = processSupervisor;
+        this.proxyPool = proxyPool;
+        this.circuits = circuits;
+        downloadCoordinator.register(Platform.FACEBOOK, this::downloadTask, null);
+    }
+
+    @GetMapping(value = "/download/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDownload(@RequestParam String url, @RequestParam(required = false) String title,
+                                     @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        // Tăng lên 10 phút
+        return downloadCoordinator.stream(Platform.FACEBOOK, url, title, lastEventId, 600_000L);
+    }
+
+    // Thử lại (nếu lỗi tạm thời) do job engine lên lịch, lần sau sẽ đi đường khác nếu lỗi do proxy
+    private DownloadTask downloadTask(String url, String title) {
+        return job -> {
+            ProxyPool.Lease lease = proxyPool.lease(job);
+            long startedAt = System.nanoTime();
             try {
-                emitter.send(SseEmitter.event().data("ERROR_Retry_" + e.getMessage()));
-                // Thêm retry logic nếu cần
-                Thread.sleep(2000); // Chờ 2 giây trước khi retry
-                String filename = FacebookVideoUtil.downloadVideoUsingYtDlp(url, title, progress -> {
-                    try {
-                        emitter.send(SseEmitter.event().data(progress));
-                    } catch (IOException ex) {
-                        System.err.println("Client disconnected: " + ex.getMessage());
-                    }
-                });
-                emitter.send(SseEmitter.event().data("DONE_" + filename));
-            } catch (Exception ex) {
-                // emitter.send(SseEmitter.event().data("ERROR_" + ex.getMessage()));
+                FacebookVideoUtil.Download download = FacebookVideoUtil.downloadVideoUsingYtDlp(url, title, lease.proxy(),
+                        job.getWorkFile(), job::reportProgress, job.getProcessWatcher());
+                lease.succeeded(System.nanoTime() - startedAt);
+                job.setFileName(download.fileName());
+                return download.file().toString();
+            } catch (IOException e) {
+                lease.failed(e, System.nanoTime() - startedAt);
+                throw e;
             }
-        } finally {
-            emitter.complete();
-        }
-    }).start();
-
-    return emitter;
-}
+        };
+    }
 
-    @GetMapping("/download")
-    public ResponseEntity<InputStreamResource> downloadVideo(@RequestParam String filename) throws IOException {
-        File file = new File(filename);
-        if (!file.exists()) {
-            return ResponseEntity.notFound().build();
+    /**
+     * Tải trực tiếp: byte từ yt-dlp được chuyển thẳng tới client trong lúc đang tải.
+     */
+    @GetMapping("/download/pipe")
+    public void pipeDownload(@RequestParam String url, @RequestParam(required = false) String title,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!VideoUrl.accepts(Platform.FACEBOOK, url)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "URL không hợp lệ.");
+            return;
         }
+        String fileName = FacebookVideoUtil.sanitizeFileName(title) + ".mp4";
+        ProxyPool.Lease lease = proxyPool.lease(Platform.FACEBOOK, null);
+        passThroughStreamer.stream(Platform.FACEBOOK, url, lease, FacebookVideoUtil.buildStreamCommand(url, lease.proxy()),
+                fileName, request, response);
+    }
 
-        InputStreamResource resource = new InputStreamResource(new FileInputStream(file));
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getName() + "\"")
-                .contentLength(file.length())
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(resource);
+    @GetMapping("/download")
+    public void downloadVideo(@RequestParam String id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        fileServer.serveArtifact(id, request, response);
     }
 
     @PostMapping("/preview")
     public ResponseEntity<Map<String, String>> previewVideo(@RequestBody Map<String, String> payload) throws IOException {
         String fbUrl = payload.get("url");
-        if (fbUrl == null || !fbUrl.matches("https?://(www\\.)?(facebook\\.com|fb\\.watch|fb\\.com)/.*")) {
+        if (!VideoUrl.accepts(Platform.FACEBOOK, fbUrl)) {
             return ResponseEntity.badRequest().body(Map.of("error", "URL không hợp lệ."));
         }
 
-        ProcessBuilder pb = new ProcessBuilder("yt-dlp", "-f", "b", "-g", "--get-title", fbUrl);
-        pb.redirectErrorStream(true);
-        Process process = pb.start();
+        return previewCache.get(Platform.FACEBOOK, fbUrl, () -> loadPreview(fbUrl));
+    }
 
-        String videoTitle = null;
-        String directUrl = null;
+    private ResponseEntity<Map<String, String>> loadPreview(String fbUrl) throws IOException {
+        circuits.acquire(Platform.FACEBOOK, CircuitBreakers.Upstream.EXTRACTOR);
+        ProxyPool.Lease lease = proxyPool.lease(Platform.FACEBOOK, null);
+        List<String> command = new ArrayList<>(List.of("yt-dlp", "-f", "b"));
+        command.addAll(lease.args());
+        command.addAll(YtDlpRunner.METADATA_ONLY);
+        command.add(fbUrl);
+        long startedAt = System.nanoTime();
+        YtDlpRunner.Result result = YtDlpRunner.run(command, ProcessWatcher.PHASE_METADATA, null,
+                (process, phase) -> processSupervisor.track(process, phase, null));
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"))) {
-            videoTitle = reader.readLine(); // Dòng đầu là title
-            directUrl = reader.readLine();  // Dòng hai là link mp4
+        VideoMetadata metadata = result.metadata();
+        String directUrl = metadata != null ? metadata.url() : null;
+        if (result.exitCode() != 0) {
+            lease.failed(result.output().toString(), System.nanoTime() - startedAt);
+        } else {
+            lease.succeeded(System.nanoTime() - startedAt);
         }
-
-        try {
-            int exit = process.waitFor();
-            if (exit != 0 || directUrl == null || !directUrl.contains(".mp4")) {
-                return ResponseEntity.status(500).body(Map.of("error", "Kiểm tra lại link."));
-            }
-            return ResponseEntity.ok(Map.of(
-                    "videoUrl", directUrl,
-                    "title", videoTitle != null ? videoTitle : ""
-            ));
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            return ResponseEntity.status(500).body(Map.of("error", "Lỗi hệ thống."));
+        if (result.exitCode() != 0 || directUrl == null || !directUrl.contains(".mp4")) {
+            return ResponseEntity.status(500).body(Map.of("error", "Kiểm tra lại link."));
         }
+        return ResponseEntity.ok(Map.of(
+                "videoUrl", directUrl,
+                "title", metadata.title() != null ? metadata.title() : ""
+        ));
     }
 
 }
@@ -1,31 +1,42 @@
 package video.example.com.controller;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.InputStreamResource;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import video.example.com.service.CircuitBreakers;
+import video.example.com.service.DownloadCoordinator;
+import video.example.com.service.DownloadTask;
+import video.example.com.service.PassThroughStreamer;
+import video.example.com.service.Platform;
+import video.example.com.service.PreviewCache;
+import video.example.com.service.ProcessSupervisor;
+import video.example.com.service.ProxyPool;
+import video.example.com.service.VideoFileServer;
+import video.example.com.service.VideoUrl;
+import video.example.com.util.ProcessWatcher;
 import video.example.com.util.InstagramVideoUtil;
+import video.example.com.util.VideoMetadata;
+import video.example.com.util.YtDlpRunner;
 
 @RestController
 @RequestMapping("/api/instagram")
@@ -34,63 +45,75 @@ public class InstagramVideoController {
 
     private static final Logger logger = LoggerFactory.getLogger(InstagramVideoController.class);
 
+    private final DownloadCoordinator downloadCoordinator;
+    private final PreviewCache previewCache;
+    private final VideoFileServer fileServer;
+    private final PassThroughStreamer passThroughStreamer;
+    private final ProcessSupervisor processSupervisor;
+    private final ProxyPool proxyPool;
+    private final CircuitBreakers circuits;
+
+    public InstagramVideoController(DownloadCoordinator downloadCoordinator, PreviewCache previewCache,
+                                    VideoFileServer fileServer, PassThroughStreamer passThroughStreamer,
+                                    ProcessSupervisor processSupervisor, ProxyPool proxyPool,
+                                    CircuitBreakers circuits) {
+        this.downloadCoordinator = downloadCoordinator;
+        this.previewCache = previewCache;
+        this.fileServer = fileServer;
+        this.passThroughStreamer = passThroughStreamer;
+        this.processSupervisor = processSupervisor;
+        this.proxyPool = proxyPool;
+        this.circuits = circuits;
+        downloadCoordinator.register(Platform.INSTAGRAM, this::downloadTask, null);
+    }
+
     @PostMapping("/preview")
-    public ResponseEntity<Map<String, String>> previewVideo(@RequestBody Map<String, String> payload) {
+    public ResponseEntity<Map<String, String>> previewVideo(@RequestBody Map<String, String> payload) throws IOException {
         String instaUrl = payload.get("url");
         logger.info("Received preview request for URL: {}", instaUrl);
 
-        if (instaUrl == null || !instaUrl.matches("https?://(www\\.)?instagram\\.com/reel/[a-zA-Z0-9_-]+(/|\\?[^\\s]*)?")) {
+        if (!VideoUrl.accepts(Platform.INSTAGRAM, instaUrl)) {
             logger.error("Invalid Instagram URL: {}", instaUrl);
             return ResponseEntity.badRequest().body(Map.of("error", "URL không hợp lệ."));
         }
 
-        // Process the URL using yt-dlp
-        ProcessBuilder pb = new ProcessBuilder("yt-dlp", "-f", "best", "-g", "--get-title", instaUrl);
-        pb.redirectErrorStream(true);
+        return previewCache.get(Platform.INSTAGRAM, instaUrl, () -> loadPreview(instaUrl));
+    }
+
+    private ResponseEntity<Map<String, String>> loadPreview(String instaUrl) throws IOException {
+        circuits.acquire(Platform.INSTAGRAM, CircuitBreakers.Upstream.EXTRACTOR);
+        ProxyPool.Lease lease = proxyPool.lease(Platform.INSTAGRAM, null);
+        List<String> command = new ArrayList<>(List.of("yt-dlp", "-f", "best"));
+        command.addAll(lease.args());
+        command.addAll(YtDlpRunner.METADATA_ONLY);
+        command.add(instaUrl);
 
-        List<String> outputLines = new ArrayList<>();
-        int exit = -1;
+        long startedAt = System.nanoTime();
+        YtDlpRunner.Result result;
         try {
-            Process process = pb.start();
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    outputLines.add(line);
-                    logger.info("yt-dlp output: {}", line);
-                }
-            }
-            try {
-                exit = process.waitFor();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                logger.error("Interrupted while waiting for process: {}", e.getMessage());
-                return ResponseEntity.status(500).body(Map.of("error", "Lỗi hệ thống (quá trình bị gián đoạn)."));
-            }
+            result = YtDlpRunner.run(command, ProcessWatcher.PHASE_METADATA, null,
+                    (process, phase) -> processSupervisor.track(process, phase, null));
         } catch (IOException e) {
             logger.error("IOException when running yt-dlp: {}", e.getMessage());
             return ResponseEntity.status(500).body(Map.of("error", "Lỗi hệ thống (không chạy được yt-dlp)."));
         }
 
-        logger.info("yt-dlp exit code: {}", exit);
-
-        // Extract video URL and title from yt-dlp output
-        String directUrl = outputLines.stream()
-                .filter(line -> line.contains(".mp4") && line.startsWith("http"))
-                .findFirst().orElse(null);
-
-        String videoTitle = outputLines.stream()
-                .map(String::trim)
-                .filter(line -> !line.isEmpty())
-                .filter(line -> !line.toLowerCase().contains("warning"))
-                .findFirst()
-                .orElse("Instagram Video (không có tiêu đề)")
-                .trim();
+        logger.info("yt-dlp exit code: {}", result.exitCode());
+        if (result.exitCode() != 0) {
+            lease.failed(result.output().toString(), System.nanoTime() - startedAt);
+        } else {
+            lease.succeeded(System.nanoTime() - startedAt);
+        }
 
-        if (exit != 0 || directUrl == null) {
-            logger.error("Failed to fetch preview for URL: {}. Output: {}", instaUrl, outputLines);
+        VideoMetadata metadata = result.metadata();
+        String directUrl = metadata != null ? metadata.url() : null;
+        if (result.exitCode() != 0 || directUrl == null) {
+            logger.error("Failed to fetch preview for URL: {}. Output: {}", instaUrl, result.output());
             return ResponseEntity.status(500).body(Map.of("error", "Không thể lấy link xem trước."));
         }
 
+        String videoTitle = metadata.title() != null && !metadata.title().isBlank()
+                ? metadata.title().trim() : "Instagram Video (không có tiêu đề)";
         return ResponseEntity.ok(Map.of(
                 "videoUrl", directUrl,
                 "title", videoTitle
@@ -98,53 +121,47 @@ public class InstagramVideoController {
     }
 
     @GetMapping(value = "/download/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public SseEmitter streamDownload(@RequestParam String url) {
+    public SseEmitter streamDownload(@RequestParam String url,
+                                     @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
         logger.info("Received download request for URL: {}", url);
-        SseEmitter emitter = new SseEmitter(300_000L); // Timeout 5 phút
+        // Timeout 5 phút
+        return downloadCoordinator.stream(Platform.INSTAGRAM, url, null, lastEventId, 300_000L);
+    }
 
-        new Thread(() -> {
+    private DownloadTask downloadTask(String url, String title) {
+        return job -> {
+            ProxyPool.Lease lease = proxyPool.lease(job);
+            long startedAt = System.nanoTime();
             try {
-                String filename = InstagramVideoUtil.downloadVideoUsingYtDlp(url, progress -> {
-                    try {
-                        emitter.send(SseEmitter.event().data(progress));
-                    } catch (IOException e) {
-                        logger.error("Client disconnected during SSE: {}", e.getMessage());
-                    }
-                });
-
-                emitter.send(SseEmitter.event().data("DONE_" + filename));
-                logger.info("Download completed for file: {}", filename);
-            } catch (Exception e) {
-                logger.error("Error during download: {}", e.getMessage());
-                try {
-                    emitter.send(SseEmitter.event().data("ERROR_" + e.getMessage()));
-                } catch (IOException ignored) {
-                }
-            } finally {
-                emitter.complete();
+                String file = InstagramVideoUtil.downloadVideoUsingYtDlp(url, lease.proxy(), job.getWorkFile(),
+                        job::reportProgress, job.getProcessWatcher());
+                lease.succeeded(System.nanoTime() - startedAt);
+                return file;
+            } catch (IOException e) {
+                lease.failed(e, System.nanoTime() - startedAt);
+                throw e;
             }
-        }).start();
+        };
+    }
 
-        return emitter;
+    @GetMapping("/download/pipe")
+    public void pipeDownload(@RequestParam String url, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        logger.info("Received pass-through download request for URL: {}", url);
+        if (!VideoUrl.accepts(Platform.INSTAGRAM, url)) {
+            logger.error("Invalid Instagram URL: {}", url);
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "URL không hợp lệ.");
+            return;
+        }
+        ProxyPool.Lease lease = proxyPool.lease(Platform.INSTAGRAM, null);
+        passThroughStreamer.stream(Platform.INSTAGRAM, url, lease, InstagramVideoUtil.buildStreamCommand(url, lease.proxy()),
+                "instagram-" + UUID.randomUUID() + ".mp4", request, response);
     }
 
     /**
      * Download file về máy người dùng
      */
     @GetMapping("/download")
-    public ResponseEntity<InputStreamResource> downloadVideo(@RequestParam String filename) throws IOException {
-        File file = new File(filename);
-        if (!file.exists()) {
-            logger.error("File not found: {}", filename);
-            return ResponseEntity.notFound().build();
-        }
-
-        InputStreamResource resource = new InputStreamResource(new FileInputStream(file));
-        logger.info("Serving file for download: {}", filename);
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + file.getName())
-                .contentLength(file.length())
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(resource);
+    public void downloadVideo(@RequestParam String id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        fileServer.serveArtifact(id, request, response);
     }
 }
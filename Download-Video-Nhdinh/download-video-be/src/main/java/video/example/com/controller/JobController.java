@@ -0,0 +1,153 @@
+package video.example.com.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import video.example.com.service.AdmissionControl;
+import video.example.com.service.CircuitBreakers;
+import video.example.com.service.ClusterRouting;
+import video.example.com.service.DownloadJob;
+import video.example.com.service.DownloadJobEngine;
+import video.example.com.service.JobOutput;
+import video.example.com.service.ProcessSupervisor;
+import video.example.com.service.ProgressHub;
+import video.example.com.service.ProxyPool;
+import video.example.com.service.RetryPolicy;
+import video.example.com.service.SegmentedDownloader;
+
+@RestController
+@RequestMapping("/api/jobs")
+@CrossOrigin(origins = "*")
+public class JobController {
+
+    private final DownloadJobEngine jobEngine;
+    private final ProgressHub progressHub;
+    private final ProcessSupervisor processSupervisor;
+    private final SegmentedDownloader segmentedDownloader;
+    private final AdmissionControl admission;
+    private final ProxyPool proxyPool;
+    private final RetryPolicy retryPolicy;
+    private final CircuitBreakers circuits;
+    private final ClusterRouting cluster;
+
+    public JobController(DownloadJobEngine jobEngine, ProgressHub progressHub, ProcessSupervisor processSupervisor,
+                         SegmentedDownloader segmentedDownloader, AdmissionControl admission, ProxyPool proxyPool,
+                         RetryPolicy retryPolicy, CircuitBreakers circuits, ClusterRouting cluster) {
+        this.jobEngine = jobEngine;
+        this.progressHub = progressHub;
+        this.processSupervisor = processSupervisor;
+        this.segmentedDownloader = segmentedDownloader;
+        this.admission = admission;
+        this.proxyPool = proxyPool;
+        this.retryPolicy = retryPolicy;
+        this.circuits = circuits;
+        this.cluster = cluster;
+    }
+
+    @GetMapping("/stats")
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>(jobEngine.stats());
+        stats.put("sseSubscribers", progressHub.subscriberCount());
+        stats.put("processes", processSupervisor.stats());
+        stats.put("direct", segmentedDownloader.stats());
+        stats.put("admission", admission.stats());
+        stats.put("proxies", proxyPool.stats());
+        stats.put("retries", retryPolicy.stats());
+        stats.put("circuits", circuits.stats());
+        stats.put("cluster", cluster.stats());
+        return stats;
+    }
+
+    /**
+     * Attach (or re-attach) to a job's progress stream. Any number of clients may follow
+     * the same job; {@code Last-Event-ID} resumes after the last event the client saw.
+     */
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> events(@PathVariable String id,
+                                             @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        DownloadJob job = jobEngine.getJob(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(progressHub.attach(job, lastEventId, 600_000L));
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Map<String, Object>> cancel(@PathVariable String id) {
+        DownloadJob job = jobEngine.getJob(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!jobEngine.cancel(id, "cancelled by client")) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("id", id, "status", job.getStatus().name()));
+        }
+        return ResponseEntity.accepted().body(Map.of("id", id, "status", DownloadJob.Status.CANCELLED.name()));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Map<String, Object>> getJob(@PathVariable String id) {
+        DownloadJob job = jobEngine.getJob(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(Map.of(
+                "id", job.getId(),
+                "platform", job.getPlatform().key(),
+                "status", job.getStatus().name(),
+                "stage", String.valueOf(job.getStage()),
+                "subscribers", job.getSubscriberCount(),
+                "createdAt", job.getCreatedAt()
+        ));
+    }
+
+    /**
+     * What the job's yt-dlp / ffmpeg processes printed: the last few KB inline, plus a
+     * link to the complete output while the job is retained.
+     */
+    @GetMapping("/{id}/diagnostics")
+    public ResponseEntity<Map<String, Object>> diagnostics(@PathVariable String id) {
+        DownloadJob job = jobEngine.getJob(id);
+        if (job == null || job.getOutput() == null) {
+            return ResponseEntity.notFound().build();
+        }
+        JobOutput output = job.getOutput();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("id", job.getId());
+        body.put("status", job.getStatus().name());
+        body.put("stage", String.valueOf(job.getStage()));
+        body.put("output", output.stats());
+        body.put("tail", output.tail());
+        if (output.getSpillFile() != null) {
+            body.put("fullOutput", "/api/jobs/" + id + "/diagnostics/output");
+        }
+        return ResponseEntity.ok(body);
+    }
+
+    @GetMapping(value = "/{id}/diagnostics/output", produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<Resource> fullOutput(@PathVariable String id) {
+        DownloadJob job = jobEngine.getJob(id);
+        Path file = job != null && job.getOutput() != null ? job.getOutput().getSpillFile() : null;
+        if (file == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                .body(new FileSystemResource(file));
+    }
+}
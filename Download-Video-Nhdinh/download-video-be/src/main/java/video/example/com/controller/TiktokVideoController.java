@@ -1,10 +1,12 @@
 package video.example.com.controller;
 
 import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.text.Normalizer;
 import java.util.ArrayList;
@@ -13,32 +15,56 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.InputStreamResource;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import jakarta.annotation.PreDestroy;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import video.example.com.service.CircuitBreakers;
+import video.example.com.service.DownloadCoordinator;
+import video.example.com.service.DownloadTask;
+import video.example.com.service.DownloadMetrics;
+import video.example.com.service.Platform;
+import video.example.com.service.PreviewHedger;
+import video.example.com.service.PreviewCache;
+import video.example.com.service.ProcessSupervisor;
+import video.example.com.service.ProxyPool;
+import video.example.com.service.RetryPolicy;
+import video.example.com.service.SharedHttpClient;
+import video.example.com.service.ToolchainRegistry;
+import video.example.com.service.TranscodePolicy;
+import video.example.com.service.VideoFileServer;
+import video.example.com.service.VideoUrl;
+import video.example.com.util.CircuitOpenException;
+import video.example.com.util.FailureClass;
+import video.example.com.util.OutputRingBuffer;
+import video.example.com.util.ProcessWatcher;
 import video.example.com.util.TiktokVideoUtil;
+import video.example.com.util.VideoMetadata;
+import video.example.com.util.YtDlpRunner;
 
 @RestController
 @RequestMapping("/api/tiktok")
@@ -47,32 +73,49 @@ public class TiktokVideoController {
 
     private static final Logger logger = LoggerFactory.getLogger(TiktokVideoController.class);
     private static final Set<String> ALLOWED_THUMBNAIL_DOMAINS = new HashSet<>(Arrays.asList("tiktokcdn.com", "muscdn.com"));
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    /** Output kept across preview retries for the failure log. */
+    private static final int PREVIEW_OUTPUT_TAIL_CHARS = 8 * 1024;
     private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/91.0.4472.124 Safari/537.36";
 
-    @Value("${tiktok.thread.pool.size:10}")
-    private int threadPoolSize;
-
     @Value("${tiktok.yt.dlp.path:yt-dlp}")
     private String ytDlpPath;
 
-    @Value("${tiktok.proxy:}")
-    private String proxy;
-
     @Value("${tiktok.cookies.path:}")
     private String cookiesPath;
 
-    private final ExecutorService executorService;
-
-    public TiktokVideoController() {
-        if (threadPoolSize <= 0) {
-            logger.warn("Invalid threadPoolSize ({}), defaulting to 10", threadPoolSize);
-            threadPoolSize = 10;
-        }
-        this.executorService = new ThreadPoolExecutor(
-                threadPoolSize, threadPoolSize, 0L, TimeUnit.MILLISECONDS,
-                new java.util.concurrent.LinkedBlockingQueue<>(100),
-                new ThreadPoolExecutor.CallerRunsPolicy()
-        );
+    private final DownloadCoordinator downloadCoordinator;
+    private final PreviewCache previewCache;
+    private final VideoFileServer fileServer;
+    private final ToolchainRegistry toolchain;
+    private final ProcessSupervisor processSupervisor;
+    private final TranscodePolicy transcodePolicy;
+    private final SharedHttpClient httpClient;
+    private final PreviewHedger previewHedger;
+    private final DownloadMetrics metrics;
+    private final ProxyPool proxyPool;
+    private final RetryPolicy retryPolicy;
+    private final CircuitBreakers circuits;
+
+    public TiktokVideoController(DownloadCoordinator downloadCoordinator, PreviewCache previewCache,
+                                 ToolchainRegistry toolchain, VideoFileServer fileServer,
+                                 ProcessSupervisor processSupervisor, TranscodePolicy transcodePolicy,
+                                 SharedHttpClient httpClient, PreviewHedger previewHedger, DownloadMetrics metrics,
+                                 ProxyPool proxyPool, RetryPolicy retryPolicy, CircuitBreakers circuits) {
+        this.downloadCoordinator = downloadCoordinator;
+        this.previewCache = previewCache;
+        this.toolchain = toolchain;
+        this.fileServer = fileServer;
+        this.processSupervisor = processSupervisor;
+        this.transcodePolicy = transcodePolicy;
+        this.httpClient = httpClient;
+        this.previewHedger = previewHedger;
+        this.metrics = metrics;
+        this.proxyPool = proxyPool;
+        this.retryPolicy = retryPolicy;
+        this.circuits = circuits;
+        // Registered rather than passed per request, so jobs interrupted by a restart can be rebuilt
+        downloadCoordinator.register(Platform.TIKTOK, this::downloadTask, (job, file) -> transcodePolicy.apply(file, job.getProcessWatcher()));
     }
 
     public enum ErrorMessage {
@@ -99,43 +142,6 @@ public class TiktokVideoController {
         }
     }
 
-    private boolean isYtDlpAvailable() {
-        try {
-            Process process = new ProcessBuilder(ytDlpPath, "--version").start();
-            int exitCode = process.waitFor();
-            return exitCode == 0;
-        } catch (IOException | InterruptedException e) {
-            Thread.currentThread().interrupt();
-            logger.error("Failed to check yt-dlp availability: {}", e.getMessage(), e);
-            return false;
-        }
-    }
-
-    private boolean isValidProxy(String proxy) {
-        if (proxy == null || proxy.isEmpty()) {
-            return false;
-        }
-        try {
-            new java.net.URI(proxy);
-            return true;
-        } catch (java.net.URISyntaxException e) {
-            logger.warn("Invalid proxy URL: {}, error: {}", proxy, e.getMessage());
-            return false;
-        }
-    }
-
-    private boolean isFfmpegAvailable() {
-        try {
-            Process process = new ProcessBuilder("ffmpeg", "-version").start();
-            int exitCode = process.waitFor();
-            return exitCode == 0;
-        } catch (IOException | InterruptedException e) {
-            Thread.currentThread().interrupt();
-            logger.error("Failed to check ffmpeg availability: {}", e.getMessage(), e);
-            return false;
-        }
-    }
-
     private boolean isValidThumbnailUrl(String url) {
         if (url == null || !url.startsWith("https://")) {
             return false;
@@ -165,8 +171,9 @@ public class TiktokVideoController {
     }
 
     @GetMapping(value = "/download/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public SseEmitter streamDownload(@RequestParam String url) {
-        if (url == null || url.length() > 2048 || !url.matches("https?://(www\\.)?(tiktok\\.com|vm\\.tiktok\\.com|vt\\.tiktok\\.com)/.*")) {
+    public SseEmitter streamDownload(@RequestParam String url,
+                                     @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        if (!VideoUrl.accepts(Platform.TIKTOK, url)) {
             logger.warn("Invalid URL: {}", url);
             SseEmitter emitter = new SseEmitter(0L);
             try {
@@ -178,7 +185,7 @@ public class TiktokVideoController {
             }
             return emitter;
         }
-        if (!isFfmpegAvailable()) {
+        if (!toolchain.isFfmpegAvailable()) {
             logger.error("ffmpeg is not available for re-encode: {}", url);
             SseEmitter emitter = new SseEmitter(0L);
             try {
@@ -191,7 +198,7 @@ public class TiktokVideoController {
             return emitter;
         }
 
-        if (!isYtDlpAvailable()) {
+        if (!toolchain.isAvailable(ytDlpPath)) {
             logger.error("yt-dlp is not available for download: {}", url);
             SseEmitter emitter = new SseEmitter(0L);
             try {
@@ -204,125 +211,178 @@ public class TiktokVideoController {
             return emitter;
         }
 
-        SseEmitter emitter = new SseEmitter(300_000L);
-        emitter.onCompletion(() -> logger.info("SSE completed for URL: {}", url));
-        emitter.onTimeout(() -> {
-            logger.warn("SSE timeout for URL: {}", url);
-            emitter.complete();
-        });
-
-        executorService.submit(() -> {
-            int retries = 3;
-            String effectiveProxy = isValidProxy(proxy) ? proxy : "";
-            while (retries > 0) {
-                Process process = null;
-                try {
-                    String filename = TiktokVideoUtil.downloadVideoUsingYtDlp(url, ytDlpPath, effectiveProxy, progress -> {
-                        try {
-                            emitter.send(SseEmitter.event().data(progress));
-                        } catch (IOException e) {
-                            logger.warn("Client disconnected during progress: {}", e.getMessage());
-                        }
-                    });
-                    emitter.send(SseEmitter.event().data("DONE_" + filename));
-                    return;
-                } catch (Exception e) {
-                    retries--;
-                    logger.warn("Download attempt failed ({} retries left): {}", retries, e.getMessage(), e);
-                    if (retries == 2 && !effectiveProxy.isEmpty()) {
-                        logger.info("Retrying without proxy due to potential proxy failure");
-                        effectiveProxy = "";
-                    }
-                    if (retries == 0) {
-                        try {
-                            emitter.send(SseEmitter.event().data("FALLBACK_" + url));
-                        } catch (IOException ignored) {
-                            logger.error("Failed to send fallback: {}", ignored.getMessage());
-                        }
-                    }
-                    try {
-                        Thread.sleep(1000);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                    }
-                } finally {
-                    if (retries == 0) {
-                        emitter.complete();
-                    }
-                }
-            }
-        });
+        return downloadCoordinator.stream(Platform.TIKTOK, url, null, lastEventId, 300_000L);
+    }
 
-        return emitter;
+    // One attempt per run; the job engine retries transient failures and, when it gives up, sends the fallback
+    private DownloadTask downloadTask(String url, String title) {
+        return job -> {
+            job.setFallbackEvent("FALLBACK_" + url);
+            ProxyPool.Lease lease = proxyPool.lease(job);
+            long startedAt = System.nanoTime();
+            try {
+                String downloaded = TiktokVideoUtil.downloadVideoUsingYtDlp(url, ytDlpPath, lease.proxy(), job.getWorkFile(),
+                        job::reportProgress, job.getProcessWatcher());
+                lease.succeeded(System.nanoTime() - startedAt);
+                return downloaded;
+            } catch (IOException e) {
+                lease.failed(e, System.nanoTime() - startedAt);
+                throw e;
+            }
+        };
     }
 
     @GetMapping("/download")
-    public ResponseEntity<InputStreamResource> downloadVideo(@RequestParam String filename) throws IOException {
-        File file = new File(filename);
-        if (!file.exists()) {
-            logger.error("File not found: {}", filename);
-            return ResponseEntity.notFound().build();  // Optimized: direct notFound without body
-        }
-
-        InputStreamResource resource = new InputStreamResource(new FileInputStream(file));
-        logger.info("Serving file for download: {}", filename);
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + file.getName())
-                .contentLength(file.length())
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(resource);
+    public void downloadVideo(@RequestParam String id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        fileServer.serveArtifact(id, request, response);
     }
 
     @PostMapping("/preview")
-    public ResponseEntity<Map<String, String>> previewVideo(@RequestBody Map<String, String> payload) {
+    public CompletableFuture<ResponseEntity<Map<String, String>>> previewVideo(@RequestBody Map<String, String> payload) {
         String tiktokUrl = payload.get("url");
         logger.info("Received preview request for URL: {}", tiktokUrl);
 
-        if (tiktokUrl == null || tiktokUrl.length() > 2048 || !tiktokUrl.matches("https?://(www\\.)?(tiktok\\.com|vm\\.tiktok\\.com|vt\\.tiktok\\.com)/.*")) {
+        if (!VideoUrl.accepts(Platform.TIKTOK, tiktokUrl)) {
             logger.warn("Invalid TikTok URL: {}", tiktokUrl);
-            return ResponseEntity.badRequest().body(Map.of("error", ErrorMessage.INVALID_URL.getMessage()));
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.badRequest().body(Map.of("error", ErrorMessage.INVALID_URL.getMessage())));
+        }
+
+        return previewCache.getAsync(Platform.TIKTOK, tiktokUrl, () -> loadPreview(tiktokUrl));
+    }
+
+    /**
+     * Result of one preview run: the response to send, or {@code null} with the decision on
+     * whether yt-dlp gets another try.
+     */
+    private record PreviewAttempt(ResponseEntity<Map<String, String>> response, RetryPolicy.Decision decision) {
+    }
+
+    /**
+     * Resolves the preview without holding the request thread: the first round runs on the
+     * hedger's pool, and yt-dlp retries wait on the retry scheduler rather than on a thread.
+     */
+    private CompletableFuture<ResponseEntity<Map<String, String>>> loadPreview(String tiktokUrl) {
+        if (circuits.isOpen(Platform.TIKTOK, CircuitBreakers.Upstream.OEMBED)
+                && circuits.isOpen(Platform.TIKTOK, CircuitBreakers.Upstream.EXTRACTOR)) {
+            return CompletableFuture.failedFuture(circuits.unavailable(Platform.TIKTOK, CircuitBreakers.Upstream.EXTRACTOR));
         }
+        YtDlpPreview ytDlp = new YtDlpPreview(tiktokUrl);
+        return CompletableFuture.supplyAsync(() -> hedgedPreview(tiktokUrl, ytDlp), previewHedger.executor())
+                .thenCompose(first -> retryYtDlp(ytDlp, first, 1));
+    }
 
-        // Optimized oEmbed: Use exchange with headers to mimic browser, improve success rate for short links
-        RestTemplate restTemplate = new RestTemplate();
-        String oEmbedUrl = "https://www.tiktok.com/oembed?url=" + tiktokUrl;
-        HttpHeaders headers = new HttpHeaders();
-        headers.set("User-Agent", USER_AGENT);
-        headers.set("Referer", "https://www.tiktok.com/");
-        HttpEntity<String> entity = new HttpEntity<>(headers);
+    private PreviewAttempt hedgedPreview(String tiktokUrl, YtDlpPreview ytDlp) {
+        // oEmbed answers in a few hundred ms when TikTok is healthy; yt-dlp is started next to it once it runs late
+        AtomicBoolean ytDlpCancelled = new AtomicBoolean();
+        AtomicReference<Process> ytDlpProcess = new AtomicReference<>();
+        PreviewAttempt first;
         try {
-            ResponseEntity<Map> oEmbedResponse = restTemplate.exchange(oEmbedUrl, HttpMethod.GET, entity, Map.class);
-            if (oEmbedResponse.getStatusCode() == HttpStatus.OK) {
-                Map<String, Object> oEmbedData = oEmbedResponse.getBody();
-                String title = (String) oEmbedData.get("title");
-                String thumbnail = (String) oEmbedData.get("thumbnail_url");
-                String embedHtml = (String) oEmbedData.get("html");
-                logger.info("oEmbed success for URL: {}, title: {}", tiktokUrl, title);
-                return ResponseEntity.ok(Map.of(
-                        "title", Normalizer.normalize(title != null ? title : "Untitled", Normalizer.Form.NFC),
-                        "thumbnail", isValidThumbnailUrl(thumbnail) ? thumbnail : "https://via.placeholder.com/300x150?text=Thumbnail",
-                        "embedHtml", embedHtml != null ? embedHtml : "",
-                        "videoUrl", ""
-                ));
-            }
-        } catch (Exception e) {
-            logger.warn("oEmbed failed for URL: {}, error: {}. Fallback to yt-dlp.", tiktokUrl, e.getMessage(), e);
+            first = previewHedger.resolve("tiktok-oembed",
+                    PreviewHedger.Attempt.of(() -> new PreviewAttempt(loadOEmbedPreview(tiktokUrl), null)),
+                    PreviewHedger.Attempt.of(() -> ytDlp.attempt(1, process -> {
+                        ytDlpProcess.set(process);
+                        if (ytDlpCancelled.get()) {
+                            processSupervisor.killTree(process, "oEmbed answered first");
+                        }
+                    }), () -> {
+                        ytDlpCancelled.set(true);
+                        Process process = ytDlpProcess.get();
+                        if (process != null) {
+                            processSupervisor.killTree(process, "oEmbed answered first");
+                        }
+                    }),
+                    a -> a != null && a.response() != null && a.response().getStatusCode().is2xxSuccessful());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(new IOException("Preview interrupted", e));
+        }
+        if (first == null) {
+            // yt-dlp was refused by its circuit and oEmbed had nothing either
+            throw new CompletionException(circuits.unavailable(Platform.TIKTOK, CircuitBreakers.Upstream.EXTRACTOR));
         }
+        return first;
+    }
 
-        // Fallback yt-dlp
-        if (!isYtDlpAvailable()) {
-            logger.error("yt-dlp is not available on the system");
-            return ResponseEntity.status(500).body(Map.of("error", ErrorMessage.YT_DLP_UNAVAILABLE.getMessage()));
+    private CompletableFuture<ResponseEntity<Map<String, String>>> retryYtDlp(YtDlpPreview ytDlp, PreviewAttempt last,
+                                                                             int attempt) {
+        if (last.response() != null) {
+            return CompletableFuture.completedFuture(last.response());
+        }
+        if (last.decision() == null || !last.decision().retry()) {
+            return CompletableFuture.completedFuture(ytDlp.failed());
         }
+        return retryPolicy.retryAfter(last.decision().delayMillis(), previewHedger.executor(),
+                        () -> ytDlp.attempt(attempt + 1, process -> { }))
+                .thenCompose(next -> retryYtDlp(ytDlp, next, attempt + 1));
+    }
+
+    private ResponseEntity<Map<String, String>> loadOEmbedPreview(String tiktokUrl) throws IOException, InterruptedException {
+        // Browser-like headers improve the success rate for short links
+        URI oEmbedUri = URI.create("https://www.tiktok.com/oembed?url=" + URLEncoder.encode(tiktokUrl, StandardCharsets.UTF_8));
+        HttpRequest request = httpClient.request(oEmbedUri)
+                .header("Referer", "https://www.tiktok.com/")
+                .GET()
+                .build();
+        circuits.acquire(Platform.TIKTOK, CircuitBreakers.Upstream.OEMBED);
+        HttpResponse<String> oEmbedResponse;
+        try {
+            oEmbedResponse = httpClient.client().send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            circuits.record(Platform.TIKTOK, CircuitBreakers.Upstream.OEMBED, FailureClass.of(e));
+            throw e;
+        }
+        int status = oEmbedResponse.statusCode();
+        FailureClass failure = status == 429 ? FailureClass.RATE_LIMITED
+                : status == 403 ? FailureClass.FORBIDDEN
+                : status >= 500 ? FailureClass.TRANSIENT
+                : null;
+        circuits.record(Platform.TIKTOK, CircuitBreakers.Upstream.OEMBED, failure);
+        if (status != 200) {
+            logger.warn("oEmbed returned HTTP {} for URL: {}", status, tiktokUrl);
+            return null;
+        }
+        JsonNode oEmbedData = MAPPER.readTree(oEmbedResponse.body());
+        String title = oEmbedData.path("title").asText(null);
+        String thumbnail = oEmbedData.path("thumbnail_url").asText(null);
+        String embedHtml = oEmbedData.path("html").asText(null);
+        logger.info("oEmbed success for URL: {}, title: {}", tiktokUrl, title);
+        return ResponseEntity.ok(Map.of(
+                "title", Normalizer.normalize(title != null ? title : "Untitled", Normalizer.Form.NFC),
+                "thumbnail", isValidThumbnailUrl(thumbnail) ? thumbnail : "https://via.placeholder.com/300x150?text=Thumbnail",
+                "embedHtml", embedHtml != null ? embedHtml : "",
+                "videoUrl", ""
+        ));
+    }
 
-        int retries = 3;
-        String videoTitle = null;
-        String thumbnail = null;
-        String videoUrl = null;
-        StringBuilder output = new StringBuilder();
-        String effectiveProxy = isValidProxy(proxy) ? proxy : "";
+    /**
+     * yt-dlp preview of one URL, run one attempt at a time. Keeps the proxy lease, the
+     * output and whatever metadata the attempts found so far.
+     */
+    private final class YtDlpPreview {
+
+        private final String tiktokUrl;
+        private final OutputRingBuffer output = new OutputRingBuffer(PREVIEW_OUTPUT_TAIL_CHARS);
+        private ProxyPool.Lease lease;
+        private String videoTitle;
+        private String thumbnail;
+        private String videoUrl;
+
+        YtDlpPreview(String tiktokUrl) {
+            this.tiktokUrl = tiktokUrl;
+        }
 
-        while (retries > 0) {
+        PreviewAttempt attempt(int attempt, Consumer<Process> onStart) throws CircuitOpenException {
+            if (attempt == 1) {
+                metrics.recordFallback(Platform.TIKTOK, "preview-yt-dlp");
+                if (!toolchain.isAvailable(ytDlpPath)) {
+                    logger.error("yt-dlp is not available on the system");
+                    return new PreviewAttempt(ResponseEntity.status(500)
+                            .body(Map.of("error", ErrorMessage.YT_DLP_UNAVAILABLE.getMessage())), null);
+                }
+                lease = proxyPool.lease(Platform.TIKTOK, null);
+            }
+            circuits.acquire(Platform.TIKTOK, CircuitBreakers.Upstream.EXTRACTOR);
             List<String> command = new ArrayList<>();
             command.add(ytDlpPath);
             command.add("--user-agent");
@@ -335,98 +395,77 @@ public class TiktokVideoController {
             command.add("--extractor-retries");
             command.add("3");
 
-            if (!cookiesPath.isEmpty() && !effectiveProxy.isEmpty()) {
+            if (!cookiesPath.isEmpty() && !lease.proxy().isEmpty()) {
                 command.add("--cookies");
                 command.add(cookiesPath);
-            } else if (!effectiveProxy.isEmpty()) {
-                command.add("--proxy");
-                command.add(effectiveProxy);
             }
+            command.addAll(lease.args());
 
-            command.add("--print");
-            command.add("title");
-            command.add("--print");
-            command.add("thumbnail");
-            command.add("--print");
-            command.add("url");
+            command.addAll(YtDlpRunner.METADATA_ONLY);
 
             command.add(tiktokUrl);
 
             ProcessBuilder pb = new ProcessBuilder(command);
             pb.redirectErrorStream(true);
             Process process = null;
+            long startedAt = System.nanoTime();
             try {
                 logger.debug("Executing yt-dlp command: {}", pb.command());
                 process = pb.start();
+                processSupervisor.track(process, ProcessWatcher.PHASE_METADATA, null);
+                onStart.accept(process);
                 try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
                     String line;
                     while ((line = reader.readLine()) != null) {
-                        output.append(line).append("\n");
-                        logger.debug("yt-dlp output: {}", line);
-                        if (line.startsWith("https://") && isValidThumbnailUrl(line) && thumbnail == null) {
-                            thumbnail = line;
-                            logger.info("Found valid thumbnail: {}", thumbnail);
-                        } else if (line.startsWith("https://") && line.contains(".mp4") && isValidVideoUrl(line)) {
-                            videoUrl = line;
-                            logger.info("Found valid video URL: {}", videoUrl);
-                        } else if (!line.startsWith("[") && !line.isEmpty() && !line.contains("ERROR") && videoTitle == null) {
-                            videoTitle = Normalizer.normalize(line, Normalizer.Form.NFC);
-                            logger.info("Found video title: {}", videoTitle);
+                        output.append(line);
+                        VideoMetadata metadata = VideoMetadata.parse(line);
+                        if (metadata == null) {
+                            continue;
+                        }
+                        if (metadata.title() != null) {
+                            videoTitle = Normalizer.normalize(metadata.title(), Normalizer.Form.NFC);
+                        }
+                        if (isValidThumbnailUrl(metadata.thumbnail())) {
+                            thumbnail = metadata.thumbnail();
                         }
+                        if (metadata.url() != null && isValidVideoUrl(metadata.url())) {
+                            videoUrl = metadata.url();
+                        }
+                        logger.info("Found video metadata: title={}, thumbnail={}, url={}", videoTitle, thumbnail, videoUrl);
                     }
                 }
 
                 if (!process.waitFor(60, TimeUnit.SECONDS)) {  // Increase timeout for larger videos
                     if (process != null) process.destroy();
                     logger.error("yt-dlp process timed out for URL: {}", tiktokUrl);
-                    return ResponseEntity.status(500).body(Map.of("error", ErrorMessage.TIMEOUT.getMessage()));
+                    return new PreviewAttempt(ResponseEntity.status(500).body(Map.of("error", ErrorMessage.TIMEOUT.getMessage())), null);
                 }
 
                 int exitCode = process.exitValue();
                 logger.info("yt-dlp exited with code: {}", exitCode);
                 if (exitCode == 0 && (videoUrl != null || thumbnail != null)) {
-                    return ResponseEntity.ok(Map.of(
+                    lease.succeeded(System.nanoTime() - startedAt);
+                    return new PreviewAttempt(ResponseEntity.ok(Map.of(
                             "title", videoTitle != null ? videoTitle : "Untitled",
                             "thumbnail", thumbnail != null && isValidThumbnailUrl(thumbnail) ? thumbnail : "https://via.placeholder.com/300x150?text=Thumbnail",
                             "embedHtml", "",
                             "videoUrl", videoUrl != null && isValidVideoUrl(videoUrl) ? videoUrl : ""
-                    ));
-                }
-                logger.warn("yt-dlp failed (retries left: {}), output: {}", retries - 1, output);
-                retries--;
-                if (retries == 2 && !effectiveProxy.isEmpty()) {
-                    logger.info("Retrying without proxy due to proxy failure");
-                    effectiveProxy = "";
-                } else if (retries > 0) {
-                    Thread.sleep(1000);
+                    )), null);
                 }
+                logger.warn("yt-dlp failed (attempt {}), output: {}", attempt, output);
+                lease.failed(output.toString(), System.nanoTime() - startedAt);
+                return new PreviewAttempt(null, retryPolicy.onFailure(Platform.TIKTOK, "preview", attempt, output.toString(), exitCode));
             } catch (IOException e) {
                 logger.error("IO error executing yt-dlp: {}, output: {}", e.getMessage(), output.toString(), e);
-                retries--;
-                if (retries == 2 && !effectiveProxy.isEmpty()) {
-                    logger.info("Retrying without proxy due to proxy failure");
-                    effectiveProxy = "";
-                } else if (retries > 0) {
-                    try {
-                        Thread.sleep(1000);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                    }
-                }
+                lease.failed(e, System.nanoTime() - startedAt);
+                return new PreviewAttempt(null, retryPolicy.onFailure(Platform.TIKTOK, "preview", attempt, e));
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 logger.error("Process interrupted: {}, output: {}", e.getMessage(), output.toString(), e);
-                retries = 0;
+                return new PreviewAttempt(null, null);
             } catch (Exception e) {
                 logger.error("Unexpected error executing yt-dlp: {}, output: {}", e.getMessage(), output.toString(), e);
-                retries--;
-                if (retries > 0) {
-                    try {
-                        Thread.sleep(1000);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                    }
-                }
+                return new PreviewAttempt(null, retryPolicy.onFailure(Platform.TIKTOK, "preview", attempt, e));
             } finally {
                 if (process != null) {
                     process.destroy();  // Ensure cleanup
@@ -434,40 +473,15 @@ public class TiktokVideoController {
             }
         }
 
-        logger.error("All retries failed for URL: {}, output: {}", tiktokUrl, output.toString());
-        return ResponseEntity.status(500).body(Map.of(
-                "error", ErrorMessage.PREVIEW_FAILED.getMessage(),
-                "title", videoTitle != null ? videoTitle : "Untitled",
-                "thumbnail", thumbnail != null ? thumbnail : "https://via.placeholder.com/300x150?text=Thumbnail",
-                "embedHtml", "",
-                "videoUrl", ""
-        ));
-    }
-
-    @PreDestroy
-    public void shutdown() {
-        executorService.shutdown();
-        try {
-            if (!executorService.awaitTermination(60, TimeUnit.SECONDS)) {
-                executorService.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            executorService.shutdownNow();
-            Thread.currentThread().interrupt();
-            logger.error("Shutdown interrupted: {}", e.getMessage(), e);
-        }
-        File tempDir = new File(System.getProperty("java.io.tmpdir"));
-        File[] tempFiles = tempDir.listFiles((dir, name) -> name.endsWith(".mp4"));
-        if (tempFiles != null) {
-            for (File file : tempFiles) {
-                if (file.lastModified() < System.currentTimeMillis() - 12 * 60 * 60 * 1000) {  // Optimized: Cleanup older files more aggressively (12h)
-                    if (file.delete()) {
-                        logger.info("Deleted old temp file: {}", file.getName());
-                    } else {
-                        logger.warn("Failed to delete old temp file: {}", file.getName());
-                    }
-                }
-            }
+        ResponseEntity<Map<String, String>> failed() {
+            logger.error("All retries failed for URL: {}, output: {}", tiktokUrl, output.toString());
+            return ResponseEntity.status(500).body(Map.of(
+                    "error", ErrorMessage.PREVIEW_FAILED.getMessage(),
+                    "title", videoTitle != null ? videoTitle : "Untitled",
+                    "thumbnail", thumbnail != null ? thumbnail : "https://via.placeholder.com/300x150?text=Thumbnail",
+                    "embedHtml", "",
+                    "videoUrl", ""
+            ));
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,255 @@
+package video.example.com.service;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import video.example.com.util.TokenBucket;
+
+/**
+ * Decides up front whether a preview or download request is served, so overload turns
+ * into quick {@code 429}s instead of requests parked on Tomcat threads. Three checks, in
+ * order: a per-client token bucket, the estimated queue wait of the download stage the
+ * request would join, and a global limit on requests being handled at once, which
+ * sheds when the wait for a slot is estimated to exceed {@code admission.max-wait-ms}.
+ * A client turned away by the last two checks gets its token back: being shed because
+ * the server is busy does not count against its rate.
+ * Hold times are averaged per {@link Kind}, so a burst of long pass-through streams does
+ * not make every preview look like it would wait minutes.
+ */
+@Component
+public class AdmissionControl {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionControl.class);
+
+    public enum Kind {
+        PREVIEW,
+        DOWNLOAD
+    }
+
+    /**
+     * Result of {@link #admit}. An admitted ticket holds a global slot until closed, which
+     * may happen on another thread than the one that admitted it.
+     */
+    public final class Ticket implements AutoCloseable {
+        private final Kind kind;
+        private final String reason;
+        private final long retryAfterSeconds;
+        private final boolean holdsSlot;
+        private final long admittedAt;
+        private boolean closed;
+
+        private Ticket(Kind kind, String reason, long retryAfterSeconds, boolean holdsSlot) {
+            this.kind = kind;
+            this.reason = reason;
+            this.retryAfterSeconds = retryAfterSeconds;
+            this.holdsSlot = holdsSlot;
+            this.admittedAt = System.nanoTime();
+        }
+
+        public boolean isAdmitted() {
+            return reason == null;
+        }
+
+        /** {@code rate}, {@code queue} or {@code overload}; {@code null} when admitted. */
+        public String getReason() {
+            return reason;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!holdsSlot || closed) {
+                return;
+            }
+            closed = true;
+            release(kind, System.nanoTime() - admittedAt);
+        }
+    }
+
+    @Value("${admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${admission.max-concurrent:32}")
+    private int maxConcurrent;
+
+    @Value("${admission.max-wait-ms:2000}")
+    private long maxWaitMs;
+
+    @Value("${admission.preview.burst:10}")
+    private int previewBurst;
+
+    @Value("${admission.preview.per-minute:30}")
+    private double previewPerMinute;
+
+    @Value("${admission.download.burst:5}")
+    private int downloadBurst;
+
+    @Value("${admission.download.per-minute:12}")
+    private double downloadPerMinute;
+
+    @Value("${admission.download.max-queue-wait-seconds:120}")
+    private long maxQueueWaitSeconds;
+
+    @Value("${admission.download.default-job-seconds:60}")
+    private long defaultJobSeconds;
+
+    @Value("${admission.max-clients:10000}")
+    private int maxClients;
+
+    private final DownloadJobEngine jobEngine;
+    private final DownloadMetrics metrics;
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong admitted = new AtomicLong();
+    private final Map<String, AtomicLong> rejected = new ConcurrentHashMap<>();
+    private Semaphore slots;
+    /** Average time a slot is held, per kind, so long streams don't skew the preview estimate. Guarded by {@code this}. */
+    private final Map<Kind, Double> recentHoldNanos = new EnumMap<>(Kind.class);
+
+    public AdmissionControl(DownloadJobEngine jobEngine, DownloadMetrics metrics) {
+        this.jobEngine = jobEngine;
+        this.metrics = metrics;
+    }
+
+    @PostConstruct
+    void init() {
+        if (maxConcurrent <= 0) {
+            logger.warn("Invalid admission.max-concurrent ({}), defaulting to 32", maxConcurrent);
+            maxConcurrent = 32;
+        }
+        slots = new Semaphore(maxConcurrent);
+        // A bucket that never refills would answer with a Retry-After of centuries
+        if (!(previewPerMinute > 0)) {
+            logger.warn("Invalid admission.preview.per-minute ({}), defaulting to 30", previewPerMinute);
+            previewPerMinute = 30;
+        }
+        if (!(downloadPerMinute > 0)) {
+            logger.warn("Invalid admission.download.per-minute ({}), defaulting to 12", downloadPerMinute);
+            downloadPerMinute = 12;
+        }
+    }
+
+    /**
+     * @param client   who is asking, e.g. the remote address
+     * @param platform the platform whose download queue a download would join, or
+     *                 {@code null} for any (a batch)
+     */
+    public Ticket admit(String client, Kind kind, Platform platform) throws InterruptedException {
+        if (!enabled) {
+            return new Ticket(kind, null, 0, false);
+        }
+
+        TokenBucket bucket = bucket(client, kind);
+        long waitNanos = bucket.tryAcquire(System.nanoTime());
+        if (waitNanos > 0) {
+            return reject(kind, "rate", TimeUnit.NANOSECONDS.toMillis(waitNanos), client);
+        }
+
+        if (kind == Kind.DOWNLOAD) {
+            long queueWait = queueWaitMillis(platform);
+            long limit = TimeUnit.SECONDS.toMillis(maxQueueWaitSeconds);
+            if (queueWait > limit) {
+                bucket.refund();
+                return reject(kind, "queue", queueWait - limit, client);
+            }
+        }
+
+        long slotWait = slotWaitMillis(kind);
+        if (slotWait > maxWaitMs) {
+            bucket.refund();
+            return reject(kind, "overload", slotWait, client);
+        }
+        waiting.incrementAndGet();
+        try {
+            if (!slots.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS)) {
+                bucket.refund();
+                return reject(kind, "overload", maxWaitMs, client);
+            }
+        } finally {
+            waiting.decrementAndGet();
+        }
+        admitted.incrementAndGet();
+        return new Ticket(kind, null, 0, true);
+    }
+
+    private TokenBucket bucket(String client, Kind kind) {
+        if (buckets.size() > maxClients) {
+            // Full buckets belong to clients idle long enough to have nothing to remember
+            long now = System.nanoTime();
+            buckets.values().removeIf(b -> b.isFull(now));
+        }
+        return buckets.computeIfAbsent(kind.name() + "|" + client, k -> kind == Kind.PREVIEW
+                ? new TokenBucket(previewBurst, previewPerMinute / 60, System.nanoTime())
+                : new TokenBucket(downloadBurst, downloadPerMinute / 60, System.nanoTime()));
+    }
+
+    private long queueWaitMillis(Platform platform) {
+        long defaultJobMillis = TimeUnit.SECONDS.toMillis(defaultJobSeconds);
+        if (platform != null) {
+            return jobEngine.estimatedWaitMillis(platform, defaultJobMillis);
+        }
+        long max = 0;
+        for (Platform p : Platform.values()) {
+            max = Math.max(max, jobEngine.estimatedWaitMillis(p, defaultJobMillis));
+        }
+        return max;
+    }
+
+    /**
+     * Estimated wait for a global slot: the requests already waiting, each holding a slot for
+     * the recent average time of requests of this kind, spread over all slots.
+     */
+    private synchronized long slotWaitMillis(Kind kind) {
+        if (slots.availablePermits() > 0) {
+            return 0;
+        }
+        return (long) ((waiting.get() + 1) * recentHoldNanos.getOrDefault(kind, 0.0) / 1_000_000 / maxConcurrent);
+    }
+
+    private synchronized void release(Kind kind, long heldNanos) {
+        recentHoldNanos.merge(kind, (double) heldNanos, (recent, held) -> recent * 0.9 + held * 0.1);
+        slots.release();
+    }
+
+    private Ticket reject(Kind kind, String reason, long retryAfterMillis, String client) {
+        rejected.computeIfAbsent(reason, r -> new AtomicLong()).incrementAndGet();
+        metrics.recordAdmissionRejected(kind.name().toLowerCase(), reason);
+        long retryAfterSeconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(retryAfterMillis + 999));
+        logger.info("Rejected {} request from {} ({}), retry after {}s", kind, client, reason, retryAfterSeconds);
+        return new Ticket(kind, reason, retryAfterSeconds, false);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> rejections = new LinkedHashMap<>();
+        rejected.forEach((reason, count) -> rejections.put(reason, count.get()));
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("inFlight", maxConcurrent - slots.availablePermits());
+        stats.put("waiting", waiting.get());
+        Map<String, Object> holdMs = new LinkedHashMap<>();
+        synchronized (this) {
+            recentHoldNanos.forEach((kind, nanos) -> holdMs.put(kind.name().toLowerCase(), (long) (nanos / 1_000_000)));
+        }
+        stats.put("recentHoldMs", holdMs);
+        stats.put("clients", buckets.size());
+        stats.put("admitted", admitted.get());
+        stats.put("rejected", rejections);
+        return stats;
+    }
+}
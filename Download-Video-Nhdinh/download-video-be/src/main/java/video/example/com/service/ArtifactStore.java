@@ -0,0 +1,103 @@
+package video.example.com.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * Where finished downloads are published and served from. Artifacts are addressed by an
+ * opaque id derived from the video's {@link UrlCanonicalizer} key, so the same video has
+ * the same id on every node and clients never see a server path. {@code artifact.store}
+ * picks the implementation: {@code local} ({@link VideoFileCache}, the default) or
+ * {@code shared} ({@link SharedDirectoryArtifactStore}) for several nodes over one
+ * directory.
+ */
+public interface ArtifactStore {
+
+    Pattern ID = Pattern.compile("[0-9a-f]{32}");
+    String STAGING_FILE_PREFIX = "pipe-";
+    String STAGING_FILE_SUFFIX = ".part";
+
+    /**
+     * Artifact id of a video, from its {@link UrlCanonicalizer} key.
+     */
+    static String idOf(String videoKey) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(videoKey.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    static boolean isId(String id) {
+        return id != null && ID.matcher(id).matches();
+    }
+
+    /**
+     * Returns the stored file for the id, or {@code null} if there is none (or the id is
+     * not one {@link #idOf} could have produced).
+     */
+    Path lookup(String id);
+
+    /**
+     * Moves a finished download into the store and returns its new location.
+     */
+    default Path store(String id, Path downloaded) throws IOException {
+        return store(id, downloaded, downloaded.getFileName().toString());
+    }
+
+    /**
+     * Same as {@link #store(String, Path)} but stores the file under a different name,
+     * which is the one clients see in Content-Disposition.
+     */
+    Path store(String id, Path downloaded, String fileName) throws IOException;
+
+    /**
+     * A directory on the store's file system, for staging files that will be stored so
+     * the final move is a rename.
+     */
+    Path getRoot();
+
+    /**
+     * Creates an empty file in {@link #getRoot()} to stage a download in. The caller
+     * stores or deletes it; what a crash leaves behind is removed by the store, see
+     * {@link #deleteStagingFiles}.
+     */
+    default Path createStagingFile() throws IOException {
+        return Files.createTempFile(getRoot(), STAGING_FILE_PREFIX, STAGING_FILE_SUFFIX);
+    }
+
+    /**
+     * Deletes staging files in {@code root} last modified before {@code cutoffMillis}.
+     *
+     * @return how many were deleted
+     */
+    static int deleteStagingFiles(Path root, long cutoffMillis) throws IOException {
+        int deleted = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(root,
+                STAGING_FILE_PREFIX + "*" + STAGING_FILE_SUFFIX)) {
+            for (Path file : files) {
+                try {
+                    if (Files.getLastModifiedTime(file).toMillis() < cutoffMillis && Files.deleteIfExists(file)) {
+                        deleted++;
+                    }
+                } catch (IOException e) {
+                    // Stored or deleted by its writer meanwhile
+                }
+            }
+        }
+        return deleted;
+    }
+
+    long sizeBytes();
+
+    int entryCount();
+}
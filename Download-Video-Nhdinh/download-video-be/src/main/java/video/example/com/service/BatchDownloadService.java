@@ -0,0 +1,427 @@
+package video.example.com.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import video.example.com.util.FacebookVideoUtil;
+import video.example.com.util.InstagramVideoUtil;
+import video.example.com.util.ProgressEvent;
+import video.example.com.util.ProgressThrottle;
+import video.example.com.util.TiktokVideoUtil;
+import video.example.com.util.VideoMetadata;
+import video.example.com.util.YtDlpBatchRunner;
+
+/**
+ * Downloads a list of URLs with as few yt-dlp processes as possible. URLs are grouped by
+ * platform and split into chunks; each chunk is one yt-dlp run over a batch file and runs
+ * as a regular job on the platform's fetch stage, so batches share the same concurrency
+ * limits as single downloads. Per-item progress goes out on one event channel per batch.
+ */
+@Component
+public class BatchDownloadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchDownloadService.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String SERVER_BUSY = "Máy chủ đang quá tải. Vui lòng thử lại sau.";
+
+    public enum ItemStatus {
+        QUEUED,
+        RUNNING,
+        DONE,
+        FAILED
+    }
+
+    public static final class Item {
+        private final int index;
+        private final String url;
+        private final Platform platform;
+        private final ProgressThrottle throttle;
+        private volatile String key;
+        private volatile ItemStatus status = ItemStatus.QUEUED;
+        private volatile String title;
+        private volatile Path file;
+        private volatile String result;
+
+        Item(int index, String url, Platform platform, int maxProgressEventsPerSecond) {
+            this.index = index;
+            this.url = url;
+            this.platform = platform;
+            this.throttle = new ProgressThrottle(maxProgressEventsPerSecond);
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public Platform getPlatform() {
+            return platform;
+        }
+
+        public ItemStatus getStatus() {
+            return status;
+        }
+
+        /** Artifact id when done, error message when failed. */
+        public String getResult() {
+            return result;
+        }
+    }
+
+    public static final class Batch {
+        private final String id;
+        private final DownloadJob channel;
+        private final List<Item> items;
+        private final List<String> chunkJobIds = new ArrayList<>();
+        private int finishedItems;
+        private int succeededItems;
+        private volatile long finishedAt;
+
+        Batch(String id, DownloadJob channel, List<Item> items) {
+            this.id = id;
+            this.channel = channel;
+            this.items = items;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public DownloadJob getChannel() {
+            return channel;
+        }
+
+        public List<Item> getItems() {
+            return items;
+        }
+
+        public synchronized boolean isFinished() {
+            return finishedItems == items.size();
+        }
+    }
+
+    @Value("${batch.max-urls:50}")
+    private int maxUrls;
+
+    @Value("${batch.chunk-size:10}")
+    private int chunkSize;
+
+    @Value("${tiktok.yt.dlp.path:yt-dlp}")
+    private String ytDlpPath;
+
+    @Value("${download.progress.max-events-per-second:4}")
+    private int maxProgressEventsPerSecond;
+
+    @Value("${download.jobs.retention-seconds:600}")
+    private long retentionSeconds;
+
+    private final DownloadJobEngine jobEngine;
+    private final ArtifactStore artifacts;
+    private final TranscodePolicy transcodePolicy;
+    private final DownloadMetrics metrics;
+    private final UrlCanonicalizer canonicalizer;
+    private final ProxyPool proxyPool;
+    private final CircuitBreakers circuits;
+    private final Map<String, Batch> batches = new ConcurrentHashMap<>();
+
+    public BatchDownloadService(DownloadJobEngine jobEngine, ArtifactStore artifacts, TranscodePolicy transcodePolicy,
+                                DownloadMetrics metrics, UrlCanonicalizer canonicalizer, ProxyPool proxyPool,
+                                CircuitBreakers circuits) {
+        this.jobEngine = jobEngine;
+        this.artifacts = artifacts;
+        this.transcodePolicy = transcodePolicy;
+        this.metrics = metrics;
+        this.canonicalizer = canonicalizer;
+        this.proxyPool = proxyPool;
+        this.circuits = circuits;
+    }
+
+    /**
+     * Platform of a URL by host, or {@code null} if it is not one we download from.
+     */
+    public static Platform detectPlatform(String url) {
+        return VideoUrl.platformOf(url);
+    }
+
+    /**
+     * Starts a batch. Cached URLs complete straight away and unsupported URLs fail
+     * straight away; everything else is queued in chunks.
+     *
+     * @throws IllegalArgumentException when the list is empty or too long
+     */
+    public Batch start(List<String> urls) {
+        if (urls == null || urls.isEmpty()) {
+            throw new IllegalArgumentException("Danh sách URL trống.");
+        }
+        if (urls.size() > maxUrls) {
+            throw new IllegalArgumentException("Tối đa " + maxUrls + " URL mỗi lần.");
+        }
+        purgeFinished();
+
+        String id = UUID.randomUUID().toString();
+        List<Item> items = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            String url = urls.get(i) == null ? "" : urls.get(i).trim();
+            items.add(new Item(i, url, detectPlatform(url), maxProgressEventsPerSecond));
+        }
+        // Room for every item's status changes plus a few progress ticks, so late subscribers miss little
+        DownloadJob channel = new DownloadJob(id, null, "batch", null, maxProgressEventsPerSecond, 8 * items.size() + 8);
+        Batch batch = new Batch(id, channel, items);
+        batches.put(id, batch);
+
+        // Short links are resolved concurrently, so a list of them costs one lookup round trip
+        Map<Item, CompletableFuture<String>> keys = new HashMap<>();
+        for (Item item : items) {
+            if (item.platform != null) {
+                keys.put(item, canonicalizer.keyAsync(item.platform, item.url));
+            }
+        }
+
+        Map<Platform, List<Item>> pending = new EnumMap<>(Platform.class);
+        Set<String> seen = new HashSet<>();
+        for (Item item : items) {
+            if (item.platform == null) {
+                finishItem(batch, item, null, "URL không hợp lệ.");
+                continue;
+            }
+            item.key = keys.get(item).join();
+            if (!seen.add(item.key)) {
+                finishItem(batch, item, null, "URL bị trùng trong danh sách.");
+                continue;
+            }
+            String artifactId = ArtifactStore.idOf(item.key);
+            if (artifacts.lookup(artifactId) != null) {
+                finishItem(batch, item, artifactId, null);
+            } else {
+                pending.computeIfAbsent(item.platform, p -> new ArrayList<>()).add(item);
+            }
+        }
+
+        int size = Math.max(1, chunkSize);
+        for (Map.Entry<Platform, List<Item>> entry : pending.entrySet()) {
+            List<Item> platformItems = entry.getValue();
+            for (int from = 0; from < platformItems.size(); from += size) {
+                submitChunk(batch, entry.getKey(), platformItems.subList(from, Math.min(from + size, platformItems.size())));
+            }
+        }
+        logger.info("Started batch {} with {} URLs ({} to download)", id, items.size(),
+                pending.values().stream().mapToInt(List::size).sum());
+        return batch;
+    }
+
+    public Batch getBatch(String id) {
+        return batches.get(id);
+    }
+
+    /**
+     * Cancels the batch's running chunks; unfinished items fail.
+     *
+     * @return {@code false} if the batch is unknown or already finished
+     */
+    public boolean cancel(String id) {
+        Batch batch = batches.get(id);
+        if (batch == null || batch.isFinished()) {
+            return false;
+        }
+        List<String> jobIds;
+        synchronized (batch) {
+            jobIds = new ArrayList<>(batch.chunkJobIds);
+        }
+        jobIds.forEach(jobId -> jobEngine.cancel(jobId, "batch cancelled"));
+        for (Item item : batch.items) {
+            finishItem(batch, item, null, "Tải xuống đã bị hủy.");
+        }
+        return true;
+    }
+
+    private void submitChunk(Batch batch, Platform platform, List<Item> chunk) {
+        Map<String, Item> byUrl = new LinkedHashMap<>();
+        chunk.forEach(item -> byUrl.put(item.url, item));
+        try {
+            DownloadJob job = jobEngine.submit(platform, "batch " + batch.id, null,
+                    (j, input) -> fetchChunk(batch, platform, byUrl, j),
+                    platform == Platform.TIKTOK ? (j, dir) -> transcodeChunk(batch, byUrl, j, dir) : null,
+                    (j, dir) -> publishChunk(batch, byUrl, j, dir), false);
+            synchronized (batch) {
+                batch.chunkJobIds.add(job.getId());
+            }
+        } catch (RejectedExecutionException e) {
+            chunk.forEach(item -> finishItem(batch, item, null, SERVER_BUSY));
+        }
+    }
+
+    private Path fetchChunk(Batch batch, Platform platform, Map<String, Item> byUrl, DownloadJob job) throws Exception {
+        Path dir = Files.createTempDirectory("batch-");
+        ProxyPool.Lease lease = proxyPool.lease(job);
+        long startedAt = System.nanoTime();
+        try {
+            circuits.acquire(platform, CircuitBreakers.Upstream.EXTRACTOR);
+            int exitCode = YtDlpBatchRunner.run(commandFor(platform, lease.proxy()), new ArrayList<>(byUrl.keySet()), dir,
+                    new YtDlpBatchRunner.Listener() {
+                        @Override
+                        public void started(String url, VideoMetadata metadata) {
+                            Item item = byUrl.get(url);
+                            if (item != null) {
+                                item.title = metadata.title();
+                                item.status = ItemStatus.RUNNING;
+                                publishItem(batch, item, null);
+                            }
+                        }
+
+                        @Override
+                        public void progress(String url, ProgressEvent progress) {
+                            Item item = byUrl.get(url);
+                            if (item != null && item.throttle.shouldEmit(progress)) {
+                                publishItem(batch, item, progress);
+                            }
+                        }
+
+                        @Override
+                        public void downloaded(String url, Path file) {
+                            Item item = byUrl.get(url);
+                            if (item != null) {
+                                item.file = file;
+                                metrics.recordDownloadedFile(platform, "yt-dlp", file);
+                            }
+                        }
+                    }, job.getProcessWatcher());
+            // A chunk that got some items through reached upstream fine; failures are then about the videos
+            if (exitCode == 0 || byUrl.values().stream().anyMatch(item -> item.file != null)) {
+                lease.succeeded(System.nanoTime() - startedAt);
+            } else {
+                lease.failed(String.join("\n", job.getOutput().tail()), System.nanoTime() - startedAt);
+            }
+            if (exitCode != 0) {
+                logger.warn("Batch {} chunk {} exited with code {}", batch.id, job.getId(), exitCode);
+            }
+            return dir;
+        } catch (Exception e) {
+            byUrl.values().forEach(item -> finishItem(batch, item, null, e.getMessage()));
+            FileSystemUtils.deleteRecursively(dir.toFile());
+            throw e;
+        }
+    }
+
+    private Path transcodeChunk(Batch batch, Map<String, Item> byUrl, DownloadJob job, Path dir) throws InterruptedException {
+        for (Item item : byUrl.values()) {
+            if (item.file == null) {
+                continue;
+            }
+            try {
+                item.file = transcodePolicy.apply(item.file, job.getProcessWatcher());
+            } catch (IOException e) {
+                logger.warn("Transcode failed for batch {} item {}: {}", batch.id, item.index, e.getMessage());
+                finishItem(batch, item, null, e.getMessage());
+            }
+        }
+        return dir;
+    }
+
+    private Path publishChunk(Batch batch, Map<String, Item> byUrl, DownloadJob job, Path dir) {
+        try {
+            for (Item item : byUrl.values()) {
+                if (item.file == null) {
+                    finishItem(batch, item, null, "Không thể tải video.");
+                    continue;
+                }
+                try {
+                    String fileName = item.platform == Platform.FACEBOOK
+                            ? FacebookVideoUtil.sanitizeFileName(item.title) + ".mp4"
+                            : item.file.getFileName().toString();
+                    String artifactId = ArtifactStore.idOf(item.key);
+                    artifacts.store(artifactId, item.file, fileName);
+                    finishItem(batch, item, artifactId, null);
+                } catch (IOException e) {
+                    finishItem(batch, item, null, e.getMessage());
+                }
+            }
+        } finally {
+            FileSystemUtils.deleteRecursively(dir.toFile());
+        }
+        job.complete("DONE_" + batch.id);
+        return dir;
+    }
+
+    private List<String> commandFor(Platform platform, String proxy) {
+        return switch (platform) {
+            case TIKTOK -> TiktokVideoUtil.buildDownloadCommand(ytDlpPath, proxy);
+            case FACEBOOK -> FacebookVideoUtil.buildDownloadCommand(proxy);
+            case INSTAGRAM -> InstagramVideoUtil.buildDownloadCommand(proxy);
+        };
+    }
+
+    private void finishItem(Batch batch, Item item, String artifactId, String error) {
+        boolean batchDone;
+        synchronized (batch) {
+            if (item.status == ItemStatus.DONE || item.status == ItemStatus.FAILED) {
+                return;
+            }
+            item.status = artifactId != null ? ItemStatus.DONE : ItemStatus.FAILED;
+            item.result = artifactId != null ? artifactId : error;
+            batch.finishedItems++;
+            if (artifactId != null) {
+                batch.succeededItems++;
+            }
+            batchDone = batch.finishedItems == batch.items.size();
+        }
+        publishItem(batch, item, null);
+        if (batchDone) {
+            batch.finishedAt = System.currentTimeMillis();
+            logger.info("Batch {} finished: {}/{} downloaded", batch.id, batch.succeededItems, batch.items.size());
+            batch.channel.complete("DONE_" + batch.succeededItems + "/" + batch.items.size());
+        }
+    }
+
+    private void publishItem(Batch batch, Item item, ProgressEvent progress) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("index", item.index);
+        event.put("url", item.url);
+        event.put("status", item.status.name());
+        if (item.title != null) {
+            event.put("title", item.title);
+        }
+        if (progress != null) {
+            event.put("percent", Math.round(progress.getPercent() * 10) / 10.0);
+        }
+        if (item.status == ItemStatus.DONE) {
+            event.put("artifact", item.result);
+        } else if (item.status == ItemStatus.FAILED) {
+            event.put("error", item.result);
+        }
+        try {
+            batch.channel.publish("item", MAPPER.writeValueAsString(event));
+        } catch (JsonProcessingException e) {
+            logger.warn("Could not serialise batch event: {}", e.getMessage());
+        }
+    }
+
+    private void purgeFinished() {
+        long cutoff = System.currentTimeMillis() - retentionSeconds * 1000;
+        batches.values().removeIf(b -> b.finishedAt > 0 && b.finishedAt < cutoff);
+    }
+}
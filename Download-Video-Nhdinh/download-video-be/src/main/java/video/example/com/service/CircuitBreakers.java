@@ -0,0 +1,192 @@
+package video.example.com.service;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import video.example.com.util.CircuitBreaker;
+import video.example.com.util.CircuitOpenException;
+import video.example.com.util.FailureClass;
+
+/**
+ * One {@link CircuitBreaker} per platform and upstream, so a platform that starts
+ * blocking us costs one quick refusal per request instead of yt-dlp runs and timeouts.
+ * Only failures that say something about the upstream count: a private video is a
+ * successful answer, a dead proxy is the proxy's problem ({@link ProxyPool}).
+ */
+@Component
+public class CircuitBreakers {
+
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreakers.class);
+    private static final Map<Platform, String> NAMES = Map.of(
+            Platform.TIKTOK, "TikTok",
+            Platform.FACEBOOK, "Facebook",
+            Platform.INSTAGRAM, "Instagram");
+    private static final String UNAVAILABLE = "%s đang tạm thời chặn hoặc không phản hồi. Vui lòng thử lại sau %d giây.";
+
+    public enum Upstream {
+        /** The platform's oEmbed endpoint, called in-process. */
+        OEMBED,
+        /** yt-dlp's extractor: previews, downloads and batches. */
+        EXTRACTOR;
+
+        String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    @Value("${circuit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${circuit.window-size:20}")
+    private int windowSize;
+
+    @Value("${circuit.min-calls:10}")
+    private int minCalls;
+
+    @Value("${circuit.failure-rate:0.5}")
+    private double failureRate;
+
+    @Value("${circuit.open-seconds:30}")
+    private long openSeconds;
+
+    @Value("${circuit.max-open-seconds:300}")
+    private long maxOpenSeconds;
+
+    @Value("${circuit.half-open-probes:2}")
+    private int halfOpenProbes;
+
+    private final DownloadMetrics metrics;
+    private final Map<Platform, Map<Upstream, CircuitBreaker>> breakers = new EnumMap<>(Platform.class);
+
+    public CircuitBreakers(DownloadMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @PostConstruct
+    void init() {
+        for (Platform platform : Platform.values()) {
+            Map<Upstream, CircuitBreaker> byUpstream = new EnumMap<>(Upstream.class);
+            for (Upstream upstream : Upstream.values()) {
+                CircuitBreaker breaker = new CircuitBreaker(windowSize, minCalls, failureRate,
+                        TimeUnit.SECONDS.toNanos(openSeconds), TimeUnit.SECONDS.toNanos(maxOpenSeconds), halfOpenProbes);
+                byUpstream.put(upstream, breaker);
+                metrics.registerCircuit(platform, upstream.key(), breaker);
+            }
+            breakers.put(platform, byUpstream);
+        }
+    }
+
+    /**
+     * Call before going to the upstream; report the result with {@link #record}.
+     *
+     * @throws CircuitOpenException while the circuit is open, or half-open with all probe
+     *                              slots taken
+     */
+    public void acquire(Platform platform, Upstream upstream) throws CircuitOpenException {
+        if (!enabled) {
+            return;
+        }
+        CircuitBreaker breaker = breaker(platform, upstream);
+        CircuitBreaker.State before = breaker.getState();
+        long now = System.nanoTime();
+        boolean allowed = breaker.tryAcquire(now);
+        transitioned(platform, upstream, before, breaker.getState());
+        if (!allowed) {
+            throw unavailable(platform, breaker.retryAfterNanos(now));
+        }
+    }
+
+    /**
+     * Whether the upstream is refusing calls right now, for callers that cannot report a
+     * result and so must not take a probe slot.
+     */
+    public boolean isOpen(Platform platform, Upstream upstream) {
+        return enabled && breaker(platform, upstream).isOpen(System.nanoTime());
+    }
+
+    /**
+     * @param failure how the call failed, or {@code null} if it succeeded
+     */
+    public void record(Platform platform, Upstream upstream, FailureClass failure) {
+        if (!enabled) {
+            return;
+        }
+        CircuitBreaker breaker = breaker(platform, upstream);
+        CircuitBreaker.State before = breaker.getState();
+        if (failure == null || failure == FailureClass.PERMANENT) {
+            breaker.onSuccess();
+        } else if (failure != FailureClass.CANCELLED && failure != FailureClass.CIRCUIT_OPEN) {
+            breaker.onFailure(System.nanoTime());
+        }
+        transitioned(platform, upstream, before, breaker.getState());
+    }
+
+    public long retryAfterSeconds(Platform platform, Upstream upstream) {
+        return seconds(breaker(platform, upstream).retryAfterNanos(System.nanoTime()));
+    }
+
+    /**
+     * The exception {@link #acquire} throws, for callers that check {@link #isOpen} instead.
+     */
+    public CircuitOpenException unavailable(Platform platform, Upstream upstream) {
+        return unavailable(platform, breaker(platform, upstream).retryAfterNanos(System.nanoTime()));
+    }
+
+    private CircuitOpenException unavailable(Platform platform, long retryAfterNanos) {
+        long seconds = seconds(retryAfterNanos);
+        return new CircuitOpenException(String.format(UNAVAILABLE, NAMES.get(platform), seconds), seconds);
+    }
+
+    /** Whether any circuit is not closed. */
+    public boolean isDegraded() {
+        return breakers.values().stream().flatMap(m -> m.values().stream())
+                .anyMatch(b -> b.getState() != CircuitBreaker.State.CLOSED);
+    }
+
+    private CircuitBreaker breaker(Platform platform, Upstream upstream) {
+        return breakers.get(platform).get(upstream);
+    }
+
+    private void transitioned(Platform platform, Upstream upstream, CircuitBreaker.State before, CircuitBreaker.State after) {
+        if (before == after) {
+            return;
+        }
+        metrics.recordCircuitTransition(platform, upstream.key(), after);
+        if (after == CircuitBreaker.State.OPEN) {
+            logger.warn("{} {} circuit opened for {}s", platform, upstream, retryAfterSeconds(platform, upstream));
+        } else {
+            logger.info("{} {} circuit is {}", platform, upstream, after);
+        }
+    }
+
+    private static long seconds(long nanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(nanos + 999_999_999));
+    }
+
+    public Map<String, Object> stats() {
+        long now = System.nanoTime();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        breakers.forEach((platform, byUpstream) -> {
+            Map<String, Object> entries = new LinkedHashMap<>();
+            byUpstream.forEach((upstream, breaker) -> {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("state", breaker.getState().name());
+                entry.put("failureRate", Math.round(breaker.failureRate() * 100) / 100.0);
+                entry.put("retryAfterSeconds", TimeUnit.NANOSECONDS.toSeconds(breaker.retryAfterNanos(now)));
+                entries.put(upstream.key(), entry);
+            });
+            stats.put(platform.key(), entries);
+        });
+        return stats;
+    }
+}
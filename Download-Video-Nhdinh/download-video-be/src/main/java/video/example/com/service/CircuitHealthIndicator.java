@@ -0,0 +1,28 @@
+package video.example.com.service;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the circuit breakers under {@code /actuator/health/circuits}. {@code DEGRADED}
+ * while any circuit is open or half-open: previews are then served from what was last
+ * known and new downloads for that platform are refused.
+ */
+@Component("circuits")
+public class CircuitHealthIndicator implements HealthIndicator {
+
+    private static final String DEGRADED = "DEGRADED";
+
+    private final CircuitBreakers circuits;
+
+    public CircuitHealthIndicator(CircuitBreakers circuits) {
+        this.circuits = circuits;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder = circuits.isDegraded() ? Health.status(DEGRADED) : Health.up();
+        return builder.withDetails(circuits.stats()).build();
+    }
+}
@@ -0,0 +1,100 @@
+package video.example.com.service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import video.example.com.util.ConsistentHashRing;
+
+/**
+ * Decides which node of a cluster handles a video, by consistent hashing of its
+ * {@link UrlCanonicalizer} key over {@code cluster.nodes}. Download streams for a video
+ * are sent to the same node, so its in-flight job (and, with the local store, its cached
+ * file) stays in one place. Previews are not routed: they carry the URL in a POST body
+ * and are served by whichever node receives them, each with its own preview cache.
+ * Off (every node handles everything) unless at least two nodes are listed and
+ * {@code cluster.self} is one of them.
+ */
+@Component
+public class ClusterRouting {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterRouting.class);
+
+    /** Base URLs of all nodes as clients reach them, e.g. {@code http://10.0.0.5:8081}. */
+    @Value("${cluster.nodes:}")
+    private List<String> nodes;
+
+    @Value("${cluster.self:}")
+    private String self;
+
+    @Value("${cluster.virtual-nodes:128}")
+    private int virtualNodes;
+
+    private final UrlCanonicalizer canonicalizer;
+    private final AtomicLong routedAway = new AtomicLong();
+    private ConsistentHashRing ring;
+
+    public ClusterRouting(UrlCanonicalizer canonicalizer) {
+        this.canonicalizer = canonicalizer;
+    }
+
+    @PostConstruct
+    void init() {
+        List<String> members = nodes == null ? List.of() : nodes.stream()
+                .map(ClusterRouting::normalize)
+                .filter(node -> !node.isEmpty())
+                .distinct()
+                .toList();
+        self = normalize(self);
+        if (members.size() < 2) {
+            return;
+        }
+        if (!members.contains(self)) {
+            logger.warn("cluster.self '{}' is not in cluster.nodes {}, routing disabled", self, members);
+            return;
+        }
+        ring = new ConsistentHashRing(members, virtualNodes);
+        logger.info("Cluster routing over {} nodes, this node is {}", members.size(), self);
+    }
+
+    public boolean isEnabled() {
+        return ring != null;
+    }
+
+    /**
+     * Base URL of the node that should handle the video, or {@code null} if it is this
+     * node or routing is off.
+     */
+    public String ownerOf(Platform platform, String url) {
+        if (ring == null) {
+            return null;
+        }
+        String owner = ring.nodeFor(canonicalizer.key(platform, url));
+        if (owner == null || owner.equals(self)) {
+            return null;
+        }
+        routedAway.incrementAndGet();
+        return owner;
+    }
+
+    private static String normalize(String node) {
+        String trimmed = node == null ? "" : node.trim();
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("self", self);
+        stats.put("nodes", ring != null ? ring.getNodes() : List.of());
+        stats.put("routedAway", routedAway.get());
+        return stats;
+    }
+}
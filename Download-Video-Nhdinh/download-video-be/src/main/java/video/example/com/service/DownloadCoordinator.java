@@ -0,0 +1,231 @@
+package video.example.com.service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import video.example.com.util.FacebookVideoUtil;
+
+/**
+ * Front door for the {@code /download/stream} endpoints. Serves finished files straight
+ * from the {@link ArtifactStore}, joins an in-flight job for the same video when there is
+ * one, and otherwise queues a new job on {@link DownloadJobEngine}. Jobs whose media URL
+ * is still fresh from a preview are fetched by {@link SegmentedDownloader} instead of
+ * yt-dlp. Progress reaches the client through {@link ProgressHub}. Jobs are journaled by
+ * {@link JobJournal}, and the ones a restart interrupted are submitted again on startup
+ * from the {@link DownloadFactory} their platform's controller registered.
+ */
+@Component
+public class DownloadCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(DownloadCoordinator.class);
+    private static final String SERVER_BUSY = "Máy chủ đang quá tải. Vui lòng thử lại sau.";
+    private static final Map<Platform, String> REFERERS = Map.of(
+            Platform.TIKTOK, "https://www.tiktok.com/",
+            Platform.FACEBOOK, "https://www.facebook.com/",
+            Platform.INSTAGRAM, "https://www.instagram.com/");
+
+    /**
+     * Builds a platform's download step from the request. Controllers register one per
+     * platform, so a job can be rebuilt from its journal entry without the request.
+     */
+    @FunctionalInterface
+    public interface DownloadFactory {
+        /**
+         * @param title the title the client passed, or {@code null}
+         */
+        DownloadTask create(String url, String title);
+    }
+
+    private record Registration(DownloadFactory factory, StageTask postprocess) {
+    }
+
+    /** Restarts a job may live through before it is given up, in case it is what brings the process down. */
+    @Value("${download.journal.max-resumes:3}")
+    private int maxResumes;
+
+    private final DownloadJobEngine jobEngine;
+    private final ArtifactStore artifacts;
+    private final ProgressHub progressHub;
+    private final PreviewCache previewCache;
+    private final SegmentedDownloader segmentedDownloader;
+    private final DownloadMetrics metrics;
+    private final UrlCanonicalizer canonicalizer;
+    private final CircuitBreakers circuits;
+    private final JobJournal journal;
+    private final Map<Platform, Registration> registrations = new EnumMap<>(Platform.class);
+
+    public DownloadCoordinator(DownloadJobEngine jobEngine, ArtifactStore artifacts, ProgressHub progressHub,
+                               PreviewCache previewCache, SegmentedDownloader segmentedDownloader,
+                               DownloadMetrics metrics, UrlCanonicalizer canonicalizer, CircuitBreakers circuits,
+                               JobJournal journal) {
+        this.jobEngine = jobEngine;
+        this.artifacts = artifacts;
+        this.progressHub = progressHub;
+        this.previewCache = previewCache;
+        this.segmentedDownloader = segmentedDownloader;
+        this.metrics = metrics;
+        this.canonicalizer = canonicalizer;
+        this.circuits = circuits;
+        this.journal = journal;
+    }
+
+    /**
+     * @param postprocess CPU-bound step run on the post-process stage after the download,
+     *                    or {@code null} when the downloaded file is final
+     */
+    public synchronized void register(Platform platform, DownloadFactory factory, StageTask postprocess) {
+        registrations.put(platform, new Registration(factory, postprocess));
+    }
+
+    /**
+     * @param title       passed to the platform's {@link DownloadFactory}, may be {@code null}
+     * @param lastEventId the client's {@code Last-Event-ID} when an EventSource reconnects;
+     *                    the client re-joins the running job and gets the missed events
+     */
+    public SseEmitter stream(Platform platform, String url, String title, String lastEventId, long timeoutMillis) {
+        String key = ArtifactStore.idOf(canonicalizer.key(platform, url));
+        if (artifacts.lookup(key) != null) {
+            logger.info("Cache hit for {} URL: {}", platform, url);
+            return singleEvent("DONE_" + key);
+        }
+
+        DownloadJob job;
+        try {
+            job = submit(JobJournal.Entry.create(platform, url, title, key));
+        } catch (RejectedExecutionException e) {
+            return singleEvent("ERROR_" + SERVER_BUSY);
+        }
+
+        return progressHub.attach(job, lastEventId, timeoutMillis);
+    }
+
+    private DownloadJob submit(JobJournal.Entry entry) {
+        Registration registration;
+        synchronized (this) {
+            registration = registrations.get(entry.platform());
+        }
+        if (registration == null) {
+            throw new IllegalStateException("No download registered for " + entry.platform());
+        }
+        Platform platform = entry.platform();
+        String url = entry.url();
+        DownloadTask task = registration.factory().create(url, entry.title());
+        return jobEngine.submit(entry, (j, input) -> fetch(j, platform, url, task), registration.postprocess(),
+                (j, file) -> publish(j, entry.key(), file), true);
+    }
+
+    /**
+     * Submits the jobs the last run left unfinished. They run without a client; one that
+     * reconnects joins the job by its video, and a finished one finds the artifact.
+     * yt-dlp picks up the partial file in the job's work file, so a resumed download
+     * continues rather than starts over.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterrupted() {
+        for (JobJournal.Entry entry : journal.interrupted()) {
+            if (artifacts.lookup(entry.key()) != null) {
+                // Published just before the process stopped
+                journal.record(entry, JobJournal.State.DONE);
+                jobEngine.discardWorkFiles(entry.key());
+                continue;
+            }
+            if (entry.resumes() >= maxResumes) {
+                logger.warn("Giving up {} job {} after {} restarts: {}", entry.platform(), entry.job(), entry.resumes(), entry.url());
+                journal.record(entry, JobJournal.State.FAILED);
+                jobEngine.discardWorkFiles(entry.key());
+                continue;
+            }
+            try {
+                DownloadJob job = submit(entry.resumed());
+                if (!job.getId().equals(entry.job())) {
+                    // A reconnecting client got in first, the journal already has its job
+                    journal.record(entry, JobJournal.State.CANCELLED);
+                }
+                metrics.recordJobResumed(entry.platform());
+                logger.info("Resumed {} job {} from {} for URL: {}", entry.platform(), job.getId(), entry.stage(), entry.url());
+            } catch (RuntimeException e) {
+                logger.warn("Cannot resume {} job {}: {}", entry.platform(), entry.job(), e.getMessage());
+                journal.record(entry, JobJournal.State.FAILED);
+                jobEngine.discardWorkFiles(entry.key());
+            }
+        }
+    }
+
+    private Path fetch(DownloadJob job, Platform platform, String url, DownloadTask task) throws Exception {
+        Path direct = fetchDirect(job, platform, url);
+        if (direct != null) {
+            return direct;
+        }
+        // Refused without a retry while the platform is failing; the job gives up with the message
+        circuits.acquire(platform, CircuitBreakers.Upstream.EXTRACTOR);
+        String filename = task.download(job);
+        if (filename == null) {
+            return null;
+        }
+        Path file = Paths.get(filename);
+        metrics.recordDownloadedFile(platform, "yt-dlp", file);
+        return file;
+    }
+
+    /**
+     * Downloads the media URL a recent preview resolved, skipping yt-dlp. Returns
+     * {@code null} when there is no such URL or it no longer works.
+     */
+    private Path fetchDirect(DownloadJob job, Platform platform, String url) throws InterruptedException {
+        Map<String, String> preview = segmentedDownloader.isEnabled() ? previewCache.peek(platform, url) : null;
+        String videoUrl = preview != null ? preview.get("videoUrl") : null;
+        if (videoUrl == null || videoUrl.isEmpty()) {
+            return null;
+        }
+        try {
+            // The job's own file: other jobs may well be downloading a video with the same title
+            Path file = segmentedDownloader.download(URI.create(videoUrl), job.getWorkFile(), REFERERS.get(platform),
+                    job::reportProgress);
+            job.setFileName(FacebookVideoUtil.sanitizeFileName(preview.get("title")) + ".mp4");
+            logger.info("Job {} downloaded directly from the preview URL", job.getId());
+            metrics.recordDownloadedFile(platform, "direct", file);
+            return file;
+        } catch (SegmentedDownloader.UrlExpiredException e) {
+            logger.info("Preview URL for job {} is no longer valid ({}), using yt-dlp", job.getId(), e.getMessage());
+            previewCache.invalidate(platform, url);
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("Direct download failed for job {}, using yt-dlp: {}", job.getId(), e.getMessage());
+        }
+        segmentedDownloader.recordFallback();
+        metrics.recordFallback(platform, "direct-to-yt-dlp");
+        return null;
+    }
+
+    private Path publish(DownloadJob job, String key, Path file) throws IOException {
+        Path stored = job.getFileName() != null ? artifacts.store(key, file, job.getFileName()) : artifacts.store(key, file);
+        logger.info("Download completed for job {}: {}", job.getId(), stored);
+        // The artifact id, not the path: the client may fetch it from another node
+        job.complete("DONE_" + key);
+        return stored;
+    }
+
+    private static SseEmitter singleEvent(String data) {
+        SseEmitter emitter = new SseEmitter(0L);
+        try {
+            emitter.send(SseEmitter.event().data(data));
+        } catch (IOException e) {
+            logger.error("Failed to send message: {}", e.getMessage(), e);
+        } finally {
+            emitter.complete();
+        }
+        return emitter;
+    }
+}
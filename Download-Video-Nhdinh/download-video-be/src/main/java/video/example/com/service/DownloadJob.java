@@ -0,0 +1,533 @@
+package video.example.com.service;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import video.example.com.util.ProcessWatcher;
+import video.example.com.util.ProgressEvent;
+import video.example.com.util.ProgressThrottle;
+
+public class DownloadJob {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        DONE,
+        FAILED,
+        CANCELLED
+    }
+
+    /**
+     * One SSE payload. {@code name} is {@code null} for the default message event that
+     * carries the {@code PROGRESS_/DONE_/ERROR_} protocol.
+     */
+    public record Event(long seq, String name, String data) {
+    }
+
+    /**
+     * Receives the events of a job. Any number of subscribers may attach to one job, and
+     * a subscriber that throws is dropped. Calls come from the executor the subscriber was
+     * attached with, never from the job's worker, and are in order for each subscriber.
+     */
+    public interface Subscriber {
+        void onEvent(Event event);
+
+        void onFinished();
+    }
+
+    private final String id;
+    private final Platform platform;
+    private final String url;
+    private final String dedupeKey;
+    private final long createdAt;
+    /** Progress events queued per subscriber before older ones are dropped. */
+    static final int DELIVERY_QUEUE_SIZE = 16;
+
+    private final List<Delivery> subscribers = new CopyOnWriteArrayList<>();
+    private final ProgressThrottle progressThrottle;
+    private final ArrayDeque<Event> recentEvents;
+    private final int replaySize;
+    private long nextSeq = 1;
+    private volatile Status status = Status.QUEUED;
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    private volatile Future<?> future;
+    private volatile ProcessWatcher processWatcher = ProcessWatcher.NONE;
+    private volatile JobOutput output;
+    private volatile boolean cancelRequested;
+    private volatile long unwatchedSince;
+    private volatile String stage;
+    private volatile boolean stageQueued = true;
+    private volatile String fallbackEvent;
+    private volatile Path workFile;
+    private volatile String fileName;
+    private volatile JobJournal.Entry journalEntry;
+    private volatile boolean checkpointed;
+    /** Guarded by {@code this}. */
+    private ProxyPool.Lease proxyLease;
+    private Event terminalEvent;
+    private boolean succeeded;
+
+    public DownloadJob(String id, Platform platform, String url, String dedupeKey,
+                       int maxProgressEventsPerSecond, int replaySize) {
+        this.id = id;
+        this.platform = platform;
+        this.url = url;
+        this.dedupeKey = dedupeKey;
+        this.progressThrottle = new ProgressThrottle(maxProgressEventsPerSecond);
+        this.replaySize = Math.max(1, replaySize);
+        this.recentEvents = new ArrayDeque<>(this.replaySize);
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * The job's platform, or {@code null} for the aggregate event channel of a batch.
+     */
+    public Platform getPlatform() {
+        return platform;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getDedupeKey() {
+        return dedupeKey;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Watcher to hand to the utils so every process this job starts is supervised.
+     */
+    public ProcessWatcher getProcessWatcher() {
+        return processWatcher;
+    }
+
+    void setProcessWatcher(ProcessWatcher processWatcher) {
+        this.processWatcher = processWatcher;
+    }
+
+    /**
+     * What the job's processes printed, or {@code null} for a batch's event channel.
+     */
+    public JobOutput getOutput() {
+        return output;
+    }
+
+    void setOutput(JobOutput output) {
+        this.output = output;
+    }
+
+    /**
+     * Where the download step writes. Named after the video rather than the job, so a job
+     * resumed after a restart finds what yt-dlp left behind and continues from it.
+     */
+    public Path getWorkFile() {
+        return workFile;
+    }
+
+    void setWorkFile(Path workFile) {
+        this.workFile = workFile;
+    }
+
+    /**
+     * Name the finished file is stored under, which clients see in Content-Disposition, or
+     * {@code null} to keep the downloaded file's own name.
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    /**
+     * What the journal records about the job, or {@code null} if it is not journaled.
+     */
+    JobJournal.Entry getJournalEntry() {
+        return journalEntry;
+    }
+
+    void setJournalEntry(JobJournal.Entry journalEntry) {
+        this.journalEntry = journalEntry;
+    }
+
+    /**
+     * The route all attempts of this job go through, taken from {@code create} on first use.
+     */
+    synchronized ProxyPool.Lease proxyLease(Supplier<ProxyPool.Lease> create) {
+        if (proxyLease == null) {
+            proxyLease = create.get();
+        }
+        return proxyLease;
+    }
+
+    boolean isCheckpointed() {
+        return checkpointed;
+    }
+
+    /**
+     * Stops the job for a shutdown so it can be resumed later. Subscribers are let go
+     * without a terminal event, so their clients reconnect rather than give up, and
+     * nothing more is delivered.
+     */
+    void checkpoint() {
+        List<Delivery> due = new ArrayList<>();
+        synchronized (this) {
+            checkpointed = true;
+            cancelRequested = true;
+            for (Delivery delivery : subscribers) {
+                if (delivery.finish()) {
+                    due.add(delivery);
+                }
+            }
+            subscribers.clear();
+        }
+        due.forEach(Delivery::schedule);
+    }
+
+    public boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    void requestCancel() {
+        cancelRequested = true;
+    }
+
+    /**
+     * When the last subscriber left, or 0 while someone is watching (or nobody ever was).
+     */
+    public long getUnwatchedSince() {
+        return subscribers.isEmpty() ? unwatchedSince : 0;
+    }
+
+    public boolean isFinished() {
+        Status s = status;
+        return s == Status.DONE || s == Status.FAILED || s == Status.CANCELLED;
+    }
+
+    public synchronized boolean hasTerminalEvent() {
+        return terminalEvent != null;
+    }
+
+    synchronized boolean isSucceeded() {
+        return succeeded;
+    }
+
+    /**
+     * Sends an intermediate event (progress, retry notice) to every subscriber.
+     */
+    public void publish(String data) {
+        publish(null, data);
+    }
+
+    public void publish(String name, String data) {
+        List<Delivery> due = new ArrayList<>();
+        synchronized (this) {
+            if (terminalEvent != null) {
+                return;
+            }
+            Event event = record(name, data);
+            for (Delivery delivery : subscribers) {
+                if (delivery.offer(event)) {
+                    due.add(delivery);
+                }
+            }
+        }
+        // Sending happens outside the lock, so a slow client holds up neither the job nor the others
+        due.forEach(Delivery::schedule);
+    }
+
+    /**
+     * Forwards a parsed yt-dlp progress tick, coalesced to the configured maximum rate.
+     * Sends the legacy {@code PROGRESS_<percent>} message plus a structured {@code progress}
+     * event with sizes, speed and ETA.
+     */
+    public void reportProgress(ProgressEvent progress) {
+        if (!progressThrottle.shouldEmit(progress)) {
+            return;
+        }
+        publish("PROGRESS_" + (int) progress.getPercent());
+        publish("progress", progress.toJson());
+    }
+
+    /**
+     * Terminal event sent instead of the error once the download step has failed for
+     * good, e.g. {@code FALLBACK_<url>} so the client tries on its own.
+     */
+    public void setFallbackEvent(String data) {
+        fallbackEvent = data;
+    }
+
+    String getFallbackEvent() {
+        return fallbackEvent;
+    }
+
+    public void complete(String data) {
+        finish(data, true);
+    }
+
+    public void fail(String data) {
+        finish(data, false);
+    }
+
+    private void finish(String data, boolean success) {
+        List<Delivery> due = new ArrayList<>();
+        synchronized (this) {
+            if (terminalEvent != null) {
+                return;
+            }
+            terminalEvent = record(null, data);
+            succeeded = success;
+            for (Delivery delivery : subscribers) {
+                boolean offered = delivery.offer(terminalEvent);
+                if (delivery.finish() || offered) {
+                    due.add(delivery);
+                }
+            }
+            subscribers.clear();
+        }
+        due.forEach(Delivery::schedule);
+    }
+
+    private Event record(String name, String data) {
+        Event event = new Event(nextSeq++, name, data);
+        if (recentEvents.size() == replaySize) {
+            recentEvents.removeFirst();
+        }
+        recentEvents.addLast(event);
+        return event;
+    }
+
+    /**
+     * Attaches a subscriber, first replaying buffered events newer than {@code lastSeq}
+     * (pass 0 for a fresh subscriber). If the job already finished, the subscriber gets the
+     * replay and is finished straight after.
+     *
+     * @param executor runs the subscriber's callbacks
+     */
+    public void subscribe(Subscriber subscriber, long lastSeq, Executor executor) {
+        Delivery delivery = new Delivery(subscriber, executor);
+        boolean due = false;
+        synchronized (this) {
+            for (Event event : recentEvents) {
+                if (event.seq() > lastSeq) {
+                    due |= delivery.offer(event);
+                }
+            }
+            if (terminalEvent != null) {
+                due |= delivery.finish();
+            } else {
+                subscribers.add(delivery);
+            }
+        }
+        if (due) {
+            delivery.schedule();
+        }
+    }
+
+    public void unsubscribe(Subscriber subscriber) {
+        Delivery delivery = subscribers.stream().filter(d -> d.subscriber == subscriber).findFirst().orElse(null);
+        if (delivery == null) {
+            return;
+        }
+        delivery.close();
+        if (subscribers.remove(delivery) && subscribers.isEmpty()) {
+            unwatchedSince = System.currentTimeMillis();
+        }
+    }
+
+    private static boolean isProgress(Event event) {
+        return event.name() == null ? event.data().startsWith("PROGRESS_") : "progress".equals(event.name());
+    }
+
+    /**
+     * Events waiting to be sent to one subscriber, drained by one task at a time on the
+     * subscriber's executor. When a client falls behind, its oldest queued progress event
+     * of the same kind is dropped to make room; other events, and the end of the stream,
+     * are never dropped.
+     */
+    private final class Delivery implements Runnable {
+
+        private final Subscriber subscriber;
+        private final Executor executor;
+        private final ArrayDeque<Event> queue = new ArrayDeque<>();
+        private int progressQueued;
+        private boolean finishPending;
+        private boolean running;
+        private boolean closed;
+
+        Delivery(Subscriber subscriber, Executor executor) {
+            this.subscriber = subscriber;
+            this.executor = executor;
+        }
+
+        /**
+         * @return {@code true} if the caller must {@link #schedule} a drain
+         */
+        synchronized boolean offer(Event event) {
+            if (closed) {
+                return false;
+            }
+            if (isProgress(event)) {
+                if (progressQueued >= DELIVERY_QUEUE_SIZE) {
+                    dropOldestLike(event);
+                }
+                progressQueued++;
+            }
+            queue.addLast(event);
+            return claim();
+        }
+
+        /**
+         * Ends the stream after the queued events.
+         */
+        synchronized boolean finish() {
+            if (closed || finishPending) {
+                return false;
+            }
+            finishPending = true;
+            return claim();
+        }
+
+        synchronized void close() {
+            closed = true;
+            queue.clear();
+        }
+
+        private void dropOldestLike(Event event) {
+            for (Iterator<Event> it = queue.iterator(); it.hasNext(); ) {
+                Event queued = it.next();
+                if (isProgress(queued) && Objects.equals(queued.name(), event.name())) {
+                    it.remove();
+                    progressQueued--;
+                    return;
+                }
+            }
+        }
+
+        private boolean claim() {
+            if (running) {
+                return false;
+            }
+            running = true;
+            return true;
+        }
+
+        void schedule() {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                close();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Event event;
+                synchronized (this) {
+                    event = closed ? null : queue.pollFirst();
+                    if (event == null) {
+                        boolean end = finishPending && !closed;
+                        running = false;
+                        if (!end) {
+                            return;
+                        }
+                        closed = true;
+                    } else if (isProgress(event)) {
+                        progressQueued--;
+                    }
+                }
+                if (event == null) {
+                    subscriber.onFinished();
+                    return;
+                }
+                try {
+                    subscriber.onEvent(event);
+                } catch (RuntimeException e) {
+                    unsubscribe(subscriber);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Name of the pipeline stage the job is queued in or running in.
+     */
+    public String getStage() {
+        return stage;
+    }
+
+    boolean isStageQueued() {
+        return stageQueued;
+    }
+
+    void markQueued(String stageName) {
+        stage = stageName;
+        stageQueued = true;
+    }
+
+    void markRunning(String stageName) {
+        stage = stageName;
+        stageQueued = false;
+        if (status == Status.QUEUED) {
+            startedAt = System.currentTimeMillis();
+            status = Status.RUNNING;
+        }
+    }
+
+    /**
+     * @return {@code false} if the job had already finished
+     */
+    synchronized boolean markFinished(Status finalStatus) {
+        if (isFinished()) {
+            return false;
+        }
+        finishedAt = System.currentTimeMillis();
+        status = finalStatus;
+        return true;
+    }
+
+    Future<?> getFuture() {
+        return future;
+    }
+
+    void setFuture(Future<?> future) {
+        this.future = future;
+    }
+}
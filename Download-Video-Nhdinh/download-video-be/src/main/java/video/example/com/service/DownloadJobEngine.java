@@ -0,0 +1,623 @@
+package video.example.com.service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs download jobs as a pipeline: fetch, then an optional post-process step, then
+ * publish. Each stage has its own bounded pool so network-bound fetches and CPU-bound
+ * transcodes do not compete for the same workers. Fetch pools are per platform so a
+ * burst on one site cannot starve the others; a full fetch queue rejects new jobs, while
+ * a full downstream stage makes the stage before it wait. A failed fetch or post-process
+ * step is retried as {@link RetryPolicy} decides, after a delay spent on a scheduler
+ * rather than on the stage's worker. Jobs submitted with a {@link JobJournal} entry have
+ * their transitions journaled, and on shutdown the pipeline drains: jobs get a short
+ * grace period to finish and the rest are checkpointed, to be resumed on the next start.
+ */
+@Component
+public class DownloadJobEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(DownloadJobEngine.class);
+    /** How long a due retry waits for another try when its stage is full. */
+    private static final long REQUEUE_DELAY_MS = 1000;
+
+    @Value("${tiktok.thread.pool.size:10}")
+    private int tiktokConcurrency;
+
+    @Value("${download.jobs.facebook.concurrency:4}")
+    private int facebookConcurrency;
+
+    @Value("${download.jobs.instagram.concurrency:4}")
+    private int instagramConcurrency;
+
+    @Value("${download.jobs.queue.capacity:100}")
+    private int queueCapacity;
+
+    /** 0 means one worker per physical core (assumed to be half the logical CPUs). */
+    @Value("${download.pipeline.postprocess.concurrency:0}")
+    private int postprocessConcurrency;
+
+    @Value("${download.pipeline.postprocess.queue-capacity:8}")
+    private int postprocessQueueCapacity;
+
+    @Value("${download.pipeline.publish.concurrency:2}")
+    private int publishConcurrency;
+
+    @Value("${download.pipeline.publish.queue-capacity:16}")
+    private int publishQueueCapacity;
+
+    @Value("${download.progress.max-events-per-second:4}")
+    private int maxProgressEventsPerSecond;
+
+    @Value("${download.progress.replay-size:32}")
+    private int replaySize;
+
+    @Value("${download.jobs.retention-seconds:600}")
+    private long retentionSeconds;
+
+    @Value("${download.jobs.abandon-after-seconds:120}")
+    private long abandonAfterSeconds;
+
+    @Value("${process.output.tail-kb:64}")
+    private int outputTailKb;
+
+    /** Keep the complete process output of each job on disk while the job is retained. */
+    @Value("${process.output.spill:true}")
+    private boolean spillOutput;
+
+    @Value("${process.output.dir:}")
+    private String outputDir;
+
+    @Value("${process.output.log-lines-per-second:10}")
+    private int outputLogLinesPerSecond;
+
+    @Value("${download.work-dir:}")
+    private String workDir;
+
+    /** How long a shutdown waits for running jobs before checkpointing them. */
+    @Value("${download.shutdown.drain-seconds:10}")
+    private long drainSeconds;
+
+    private final ProcessSupervisor processSupervisor;
+    private final DownloadMetrics metrics;
+    private final RetryPolicy retryPolicy;
+    private final JobJournal journal;
+    private Path outputRoot;
+    private Path workRoot;
+    private volatile boolean draining;
+
+    private final Map<Platform, PipelineStage> fetchStages = new EnumMap<>(Platform.class);
+    private PipelineStage postprocessStage;
+    private PipelineStage publishStage;
+    private final Map<String, DownloadJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, DownloadJob> inflight = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService janitor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "dl-job-janitor");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ScheduledThreadPoolExecutor retryScheduler = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread t = new Thread(r, "dl-retry");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public DownloadJobEngine(ProcessSupervisor processSupervisor, DownloadMetrics metrics, RetryPolicy retryPolicy,
+                             JobJournal journal) {
+        this.processSupervisor = processSupervisor;
+        this.metrics = metrics;
+        this.retryPolicy = retryPolicy;
+        this.journal = journal;
+        // Cancelled retries leave the queue right away, so its size is the number of jobs waiting
+        retryScheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    @PostConstruct
+    void init() {
+        fetchStages.put(Platform.TIKTOK, newFetchStage(Platform.TIKTOK, tiktokConcurrency));
+        fetchStages.put(Platform.FACEBOOK, newFetchStage(Platform.FACEBOOK, facebookConcurrency));
+        fetchStages.put(Platform.INSTAGRAM, newFetchStage(Platform.INSTAGRAM, instagramConcurrency));
+        int cores = postprocessConcurrency > 0 ? postprocessConcurrency
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        postprocessStage = new PipelineStage("postprocess", "dl-postprocess", cores, Math.max(1, postprocessQueueCapacity));
+        publishStage = new PipelineStage("publish", "dl-publish", Math.max(1, publishConcurrency), Math.max(1, publishQueueCapacity));
+        logger.info("Pipeline stages: postprocess {} workers, publish {} workers", cores, publishStage.concurrency());
+        allStages().forEach(metrics::registerStage);
+        if (spillOutput) {
+            outputRoot = initOutputRoot();
+        }
+        workRoot = initWorkRoot();
+        if (abandonAfterSeconds > 0) {
+            janitor.scheduleWithFixedDelay(this::cancelAbandoned, 10, 10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Directory for full job output; files from a previous run are removed since their
+     * jobs are gone. Returns {@code null} (tail only) if it cannot be created.
+     */
+    private Path initOutputRoot() {
+        Path root = outputDir == null || outputDir.isBlank()
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "job-output")
+                : Paths.get(outputDir);
+        try {
+            Files.createDirectories(root);
+            try (DirectoryStream<Path> stale = Files.newDirectoryStream(root, "*.log")) {
+                for (Path file : stale) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            return root;
+        } catch (IOException e) {
+            logger.warn("Cannot use {} for job output, keeping only the last {} KB: {}", root, outputTailKb, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Directory for in-progress downloads. Leftovers of jobs the journal will resume are
+     * kept, everything else is from jobs that are gone. Falls back to the temp directory,
+     * without cleaning it, if it cannot be created.
+     */
+    private Path initWorkRoot() {
+        Path root = workDir == null || workDir.isBlank()
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "video-work")
+                : Paths.get(workDir);
+        Set<String> resumable = journal.interrupted().stream()
+                .map(JobJournal.Entry::key)
+                .collect(Collectors.toSet());
+        try {
+            Files.createDirectories(root);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(root)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    int dot = name.indexOf('.');
+                    if (!resumable.contains(dot > 0 ? name.substring(0, dot) : name)) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+            return root;
+        } catch (IOException e) {
+            logger.warn("Cannot use {} for downloads, using the temp directory: {}", root, e.getMessage());
+            return Paths.get(System.getProperty("java.io.tmpdir"));
+        }
+    }
+
+    private PipelineStage newFetchStage(Platform platform, int size) {
+        if (size <= 0) {
+            logger.warn("Invalid concurrency for {} ({}), defaulting to 4", platform, size);
+            size = 4;
+        }
+        int capacity = queueCapacity > 0 ? queueCapacity : 100;
+        logger.info("Download pool for {}: {} workers, queue {}", platform, size, capacity);
+        return new PipelineStage("fetch-" + platform.key(), "dl-" + platform.key(), size, capacity);
+    }
+
+    /**
+     * Queues a job on the platform's fetch stage. If {@code dedupeKey} is non-null and a
+     * job with the same key is still queued or running, that job is returned instead so
+     * callers can subscribe to it rather than starting an identical download.
+     *
+     * @param fetch       downloads the file; gets a {@code null} input
+     * @param postprocess CPU-bound step such as a transcode, or {@code null} to skip it
+     * @param publish     hands the final file over, e.g. stores it and completes the job
+     * @param retry       whether a fetch or post-process step that throws may run again;
+     *                    only for steps that leave nothing behind when they fail
+     * @throws RejectedExecutionException when the platform queue is full
+     */
+    public DownloadJob submit(Platform platform, String url, String dedupeKey,
+                              StageTask fetch, StageTask postprocess, StageTask publish, boolean retry) {
+        return submit(UUID.randomUUID().toString(), platform, url, dedupeKey, null, fetch, postprocess, publish, retry);
+    }
+
+    /**
+     * Same as {@link #submit(Platform, String, String, StageTask, StageTask, StageTask, boolean)}
+     * for a job described by a journal entry: the job gets the entry's id and artifact id
+     * (as its dedupe key), and its transitions are journaled so it is resumed if the
+     * process stops before it finishes.
+     */
+    public DownloadJob submit(JobJournal.Entry entry, StageTask fetch, StageTask postprocess, StageTask publish,
+                              boolean retry) {
+        return submit(entry.job(), entry.platform(), entry.url(), entry.key(), entry, fetch, postprocess, publish, retry);
+    }
+
+    private DownloadJob submit(String id, Platform platform, String url, String dedupeKey, JobJournal.Entry entry,
+                               StageTask fetch, StageTask postprocess, StageTask publish, boolean retry) {
+        List<Step> steps = new ArrayList<>(3);
+        steps.add(new Step(fetchStages.get(platform), fetch, "download", retry));
+        if (postprocess != null) {
+            steps.add(new Step(postprocessStage, postprocess, "postprocess", retry));
+        }
+        steps.add(new Step(publishStage, publish, "publish", false));
+
+        DownloadJob job;
+        synchronized (inflight) {
+            if (dedupeKey != null) {
+                DownloadJob existing = inflight.get(dedupeKey);
+                if (existing != null && !existing.isFinished()) {
+                    logger.info("Joined in-flight {} job {} for URL: {}", platform, existing.getId(), url);
+                    return existing;
+                }
+            }
+            job = new DownloadJob(id, platform, url, dedupeKey, maxProgressEventsPerSecond, replaySize);
+            job.setWorkFile(workRoot.resolve((dedupeKey != null ? dedupeKey : id) + ".mp4"));
+            job.setJournalEntry(entry);
+            job.setOutput(new JobOutput(job.getId(), Math.max(1, outputTailKb) * 1024,
+                    outputRoot != null ? outputRoot.resolve(job.getId() + ".log") : null, outputLogLinesPerSecond));
+            job.setProcessWatcher(processSupervisor.watcherFor(job));
+            jobs.put(job.getId(), job);
+            if (dedupeKey != null) {
+                inflight.put(dedupeKey, job);
+            }
+            PipelineStage first = steps.get(0).stage();
+            job.markQueued(first.getName());
+            journal.record(job, JobJournal.State.QUEUED, null);
+            try {
+                job.setFuture(first.trySubmit(() -> runStep(job, steps, 0, null, 1)));
+            } catch (RejectedExecutionException e) {
+                journal.record(job, JobJournal.State.FAILED, null);
+                forget(job);
+                logger.warn("Rejected {} job, queue full ({} queued)", platform, first.queueDepth());
+                throw e;
+            }
+        }
+        logger.info("Queued {} job {} for URL: {}", platform, job.getId(), url);
+        return job;
+    }
+
+    /** {@code metric} names the stage timer, see {@link DownloadMetrics#recordStage}. */
+    private record Step(PipelineStage stage, StageTask task, String metric, boolean retryable) {
+    }
+
+    /**
+     * @param attempt how often this step has been tried so far, including this run
+     */
+    private void runStep(DownloadJob job, List<Step> steps, int index, Path input, int attempt) {
+        MDC.put("jobId", job.getId());
+        try {
+            executeStep(job, steps, index, input, attempt);
+        } finally {
+            MDC.remove("jobId");
+        }
+    }
+
+    private void executeStep(DownloadJob job, List<Step> steps, int index, Path input, int attempt) {
+        Step step = steps.get(index);
+        if (job.isCancelRequested()) {
+            finished(job);
+            return;
+        }
+        job.markRunning(step.stage().getName());
+        journal.record(job, JobJournal.State.RUNNING, input != null ? input : job.getWorkFile());
+        long startedAt = System.nanoTime();
+        Path output;
+        try {
+            output = step.task().run(job, input);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            metrics.recordStage(step.metric(), job.getPlatform(), "cancelled", System.nanoTime() - startedAt);
+            job.fail("ERROR_Interrupted");
+            finished(job);
+            return;
+        } catch (Exception e) {
+            if (job.isCheckpointed()) {
+                // Its process was stopped by the drain, not by a fault
+                metrics.recordStage(step.metric(), job.getPlatform(), "cancelled", System.nanoTime() - startedAt);
+                finished(job);
+                return;
+            }
+            metrics.recordStage(step.metric(), job.getPlatform(), DownloadMetrics.FAILURE, System.nanoTime() - startedAt);
+            if (step.retryable() && !job.isCancelRequested()) {
+                RetryPolicy.Decision decision = retryPolicy.onFailure(job.getPlatform(), step.metric(), attempt, e);
+                if (decision.retry()) {
+                    logger.warn("Job {} attempt {} failed in {}: {}", job.getId(), attempt, step.stage().getName(), e.getMessage());
+                    scheduleRetry(job, steps, index, input, attempt + 1, decision.delayMillis());
+                    return;
+                }
+            }
+            logger.error("Job {} failed in {}: {}", job.getId(), step.stage().getName(), e.getMessage(), e);
+            if (index == 0 && job.getFallbackEvent() != null) {
+                metrics.recordFallback(job.getPlatform(), "client-direct");
+                job.fail(job.getFallbackEvent());
+            } else {
+                job.fail("ERROR_" + e.getMessage());
+            }
+            finished(job);
+            return;
+        }
+        metrics.recordStage(step.metric(), job.getPlatform(),
+                output != null ? DownloadMetrics.SUCCESS : DownloadMetrics.FAILURE, System.nanoTime() - startedAt);
+
+        if (output == null || index + 1 == steps.size()) {
+            finished(job);
+            return;
+        }
+        PipelineStage next = steps.get(index + 1).stage();
+        job.markQueued(next.getName());
+        try {
+            // Blocks while the next stage is saturated, which holds this worker back as well
+            job.setFuture(next.submit(() -> runStep(job, steps, index + 1, output, 1)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.fail("ERROR_Interrupted");
+            finished(job);
+        } catch (RejectedExecutionException e) {
+            job.fail("ERROR_" + e.getMessage());
+            finished(job);
+        }
+    }
+
+    /**
+     * Runs the step again after {@code delayMillis}. The job gives its worker back while it
+     * waits and then queues on its stage again; cancelling it in between just drops it.
+     */
+    private void scheduleRetry(DownloadJob job, List<Step> steps, int index, Path input, int attempt, long delayMillis) {
+        job.markQueued(steps.get(index).stage().getName() + "-retry");
+        try {
+            job.setFuture(retryScheduler.schedule(() -> requeue(job, steps, index, input, attempt),
+                    delayMillis, TimeUnit.MILLISECONDS));
+        } catch (RejectedExecutionException e) {
+            if (draining) {
+                // Left unfinished, so the drain checkpoints it and the next start retries it
+                return;
+            }
+            job.fail("ERROR_" + e.getMessage());
+            finished(job);
+        }
+    }
+
+    private void requeue(DownloadJob job, List<Step> steps, int index, Path input, int attempt) {
+        if (job.isCancelRequested()) {
+            finished(job);
+            return;
+        }
+        PipelineStage stage = steps.get(index).stage();
+        job.markQueued(stage.getName());
+        try {
+            job.setFuture(stage.trySubmit(() -> runStep(job, steps, index, input, attempt)));
+        } catch (RejectedExecutionException e) {
+            // The client is still waiting for this job, so keep it rather than fail it for a busy queue
+            logger.info("Stage {} is full, job {} retries again in {} ms", stage.getName(), job.getId(), REQUEUE_DELAY_MS);
+            scheduleRetry(job, steps, index, input, attempt, REQUEUE_DELAY_MS);
+        }
+    }
+
+    private void finished(DownloadJob job) {
+        if (job.isCheckpointed()) {
+            // Neither failed nor journaled as finished: the next start resumes it
+            if (job.markFinished(DownloadJob.Status.CANCELLED)) {
+                job.getOutput().close();
+            }
+            return;
+        }
+        if (!job.hasTerminalEvent()) {
+            job.fail("ERROR_Không thể tải video.");
+        }
+        DownloadJob.Status status = job.isCancelRequested() ? DownloadJob.Status.CANCELLED
+                : job.isSucceeded() ? DownloadJob.Status.DONE : DownloadJob.Status.FAILED;
+        if (!job.markFinished(status)) {
+            return;
+        }
+        metrics.recordJobFinished(job.getPlatform(), status);
+        journal.record(job, JobJournal.State.of(status), null);
+        job.getOutput().close();
+        deleteWorkFiles(job.getWorkFile());
+        if (job.getDedupeKey() != null) {
+            inflight.remove(job.getDedupeKey(), job);
+        }
+        // Keep finished jobs around for a while so reconnecting clients still get the result
+        janitor.schedule(() -> {
+            jobs.remove(job.getId());
+            job.getOutput().delete();
+        }, retentionSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Removes what a download left in the work directory, such as yt-dlp's {@code .part}
+     * and fragment files. The finished file itself has been moved away by then.
+     */
+    private void deleteWorkFiles(Path workFile) {
+        if (workFile == null || !workFile.startsWith(workRoot)) {
+            return;
+        }
+        String name = workFile.getFileName().toString();
+        String prefix = name.substring(0, name.indexOf('.') + 1);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(workFile.getParent(), prefix + "*")) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            logger.debug("Could not clean up {}: {}", workFile, e.getMessage());
+        }
+    }
+
+    /**
+     * Removes the partial download of a journaled job that will not be resumed.
+     */
+    public void discardWorkFiles(String dedupeKey) {
+        if (dedupeKey != null) {
+            deleteWorkFiles(workRoot.resolve(dedupeKey + ".mp4"));
+        }
+    }
+
+    private void forget(DownloadJob job) {
+        jobs.remove(job.getId());
+        job.getOutput().delete();
+        if (job.getDedupeKey() != null) {
+            inflight.remove(job.getDedupeKey(), job);
+        }
+    }
+
+    /**
+     * Cancels a queued or running job: subscribers get an error event, its process tree is
+     * killed and the worker thread is interrupted.
+     *
+     * @return {@code false} if the job is unknown or already finished
+     */
+    public boolean cancel(String id, String reason) {
+        DownloadJob job = jobs.get(id);
+        if (job == null || job.isFinished()) {
+            return false;
+        }
+        logger.info("Cancelling {} job {}: {}", job.getPlatform(), id, reason);
+        job.requestCancel();
+        job.fail("ERROR_Tải xuống đã bị hủy (" + reason + ").");
+        processSupervisor.killJob(id);
+        Future<?> future = job.getFuture();
+        if (future != null) {
+            future.cancel(true);
+        }
+        // A job waiting in a stage queue never runs again, so nothing else would finish it
+        if (job.isStageQueued()) {
+            finished(job);
+        }
+        return true;
+    }
+
+    private void cancelAbandoned() {
+        long cutoff = System.currentTimeMillis() - abandonAfterSeconds * 1000;
+        for (DownloadJob job : jobs.values()) {
+            long unwatchedSince = job.getUnwatchedSince();
+            if (!job.isFinished() && unwatchedSince > 0 && unwatchedSince < cutoff) {
+                cancel(job.getId(), "no clients for " + abandonAfterSeconds + "s");
+            }
+        }
+    }
+
+    public DownloadJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    public int queueDepth(Platform platform) {
+        return fetchStages.get(platform).queueDepth();
+    }
+
+    public int activeCount(Platform platform) {
+        return fetchStages.get(platform).activeCount();
+    }
+
+    /**
+     * Estimated queue wait of a new job on the platform's download stage, see
+     * {@link PipelineStage#estimatedWaitMillis}.
+     */
+    public long estimatedWaitMillis(Platform platform, long defaultJobMillis) {
+        return fetchStages.get(platform).estimatedWaitMillis(defaultJobMillis);
+    }
+
+    public int concurrency(Platform platform) {
+        return fetchStages.get(platform).concurrency();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (Platform platform : Platform.values()) {
+            PipelineStage stage = fetchStages.get(platform);
+            stats.put(platform.key(), Map.of(
+                    "concurrency", stage.concurrency(),
+                    "active", stage.activeCount(),
+                    "queued", stage.queueDepth(),
+                    "completed", stage.completedCount()
+            ));
+        }
+        Map<String, Object> stages = new LinkedHashMap<>();
+        for (PipelineStage stage : allStages()) {
+            stages.put(stage.getName(), stage.stats());
+        }
+        stats.put("stages", stages);
+        stats.put("retryWaiting", retryScheduler.getQueue().size());
+        stats.put("trackedJobs", jobs.size());
+        stats.put("journal", journal.stats());
+        return stats;
+    }
+
+    private List<PipelineStage> allStages() {
+        List<PipelineStage> stages = new ArrayList<>(fetchStages.values());
+        stages.add(postprocessStage);
+        stages.add(publishStage);
+        return stages;
+    }
+
+    /**
+     * Drains the pipeline as soon as the application starts to close, before the web
+     * server waits for open streams: no new work is taken, running jobs get
+     * {@code download.shutdown.drain-seconds} to finish, and the rest are checkpointed.
+     * Checkpointed jobs have their processes stopped but keep their partial files, and
+     * their clients are disconnected so they reconnect once the next instance resumes them.
+     */
+    @EventListener(ContextClosedEvent.class)
+    public synchronized void drain() {
+        if (draining) {
+            return;
+        }
+        draining = true;
+        janitor.shutdownNow();
+        // Jobs waiting for a retry stay unfinished and are checkpointed below
+        retryScheduler.shutdownNow();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(Math.max(0, drainSeconds));
+        // Upstream stages first, so their last hand-offs still find the later stages running
+        for (PipelineStage stage : allStages()) {
+            stage.shutdown();
+            try {
+                stage.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.error("Drain interrupted: {}", e.getMessage(), e);
+                break;
+            }
+        }
+        int checkpointed = 0;
+        for (DownloadJob job : jobs.values()) {
+            if (job.isFinished()) {
+                continue;
+            }
+            if (job.getJournalEntry() == null) {
+                // Nothing would resume it, so tell its clients rather than leave them waiting
+                cancel(job.getId(), "server shutting down");
+                continue;
+            }
+            job.checkpoint();
+            journal.record(job, JobJournal.State.CHECKPOINTED, null);
+            processSupervisor.killJob(job.getId());
+            checkpointed++;
+        }
+        if (checkpointed > 0) {
+            logger.info("Checkpointed {} unfinished jobs for the next start", checkpointed);
+        }
+        allStages().forEach(PipelineStage::shutdownNow);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        drain();
+    }
+}
@@ -0,0 +1,273 @@
+package video.example.com.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import video.example.com.util.CircuitBreaker;
+
+/**
+ * Micrometer instrumentation for the download path, exported through Actuator
+ * ({@code /actuator/prometheus}). Timers and counters are tagged by platform and outcome;
+ * components report through the methods here so meter names and tags stay in one place.
+ */
+@Component
+public class DownloadMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(DownloadMetrics.class);
+    private static final long DISK_USAGE_REFRESH_MILLIS = 30_000;
+
+    public static final String SUCCESS = "success";
+    public static final String FAILURE = "failure";
+
+    private final MeterRegistry registry;
+    private final Counter servedBytes;
+    private final Path tempDir = Paths.get(System.getProperty("java.io.tmpdir"));
+    private long tempUsageBytes;
+    private long tempUsageMeasuredAt;
+
+    public DownloadMetrics(MeterRegistry registry, ArtifactStore artifacts) {
+        this.registry = registry;
+        this.servedBytes = Counter.builder("video.served.bytes")
+                .description("Bytes of video sent to clients")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("video.disk.usage", artifacts, ArtifactStore::sizeBytes)
+                .description("Bytes on disk")
+                .baseUnit("bytes")
+                .tag("dir", "cache")
+                .register(registry);
+        Gauge.builder("video.disk.usage", this, m -> m.tempUsageBytes(artifacts.getRoot()))
+                .description("Bytes on disk")
+                .baseUnit("bytes")
+                .tag("dir", "temp")
+                .register(registry);
+    }
+
+    /**
+     * Preview lookup, outcome {@code hit}, {@code negative_hit}, {@code success}, {@code failure} or
+     * {@code brownout} (circuit open, last known preview or 503 served).
+     */
+    public void recordPreview(Platform platform, String outcome, long nanos) {
+        Timer.builder("video.preview")
+                .description("Preview resolution latency")
+                .tag("platform", platform.key())
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Time a job spent running in one pipeline stage ({@code download}, {@code postprocess}
+     * or {@code publish}).
+     */
+    public void recordStage(String stage, Platform platform, String outcome, long nanos) {
+        Timer.builder("video." + stage)
+                .description("Time spent in the " + stage + " stage of a download job")
+                .tag("platform", platform.key())
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordJobFinished(Platform platform, DownloadJob.Status status) {
+        Counter.builder("video.jobs.finished")
+                .tag("platform", platform.key())
+                .tag("status", status.name().toLowerCase())
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * A job from the journal submitted again after a restart.
+     */
+    public void recordJobResumed(Platform platform) {
+        Counter.builder("video.jobs.resumed")
+                .tag("platform", platform.key())
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Lifetime of a yt-dlp / ffmpeg child process, from spawn to exit.
+     */
+    public void recordProcess(String phase, String outcome, long nanos) {
+        Timer.builder("video.process")
+                .description("Child process lifetime")
+                .tag("phase", phase)
+                .tag("outcome", outcome)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param source {@code direct} (in-JVM ranged download), {@code yt-dlp} or {@code pipe}
+     */
+    public void recordDownloadedBytes(Platform platform, String source, long bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        Counter.builder("video.download.bytes")
+                .description("Bytes fetched from upstream")
+                .baseUnit("bytes")
+                .tag("platform", platform.key())
+                .tag("source", source)
+                .register(registry)
+                .increment(bytes);
+    }
+
+    public void recordDownloadedFile(Platform platform, String source, Path file) {
+        try {
+            recordDownloadedBytes(platform, source, Files.size(file));
+        } catch (IOException e) {
+            logger.debug("Cannot size downloaded file {}: {}", file, e.getMessage());
+        }
+    }
+
+    public void recordServedBytes(long bytes) {
+        if (bytes > 0) {
+            servedBytes.increment(bytes);
+        }
+    }
+
+    /**
+     * @param operation what was retried, e.g. {@code download} or {@code preview}
+     */
+    public void recordRetry(Platform platform, String operation) {
+        Counter.builder("video.retries")
+                .tag("platform", platform.key())
+                .tag("operation", operation)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * @param failure  how the failure was classified, see {@link video.example.com.util.FailureClass}
+     * @param decision {@code retry} or {@code give-up}
+     */
+    public void recordFailure(Platform platform, String operation, String failure, String decision) {
+        Counter.builder("video.failures")
+                .tag("platform", platform.key())
+                .tag("operation", operation)
+                .tag("class", failure)
+                .tag("decision", decision)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * @param kind which fallback was taken, e.g. {@code direct-to-yt-dlp}
+     */
+    public void recordFallback(Platform platform, String kind) {
+        Counter.builder("video.fallbacks")
+                .tag("platform", platform.key())
+                .tag("kind", kind)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * @param reason why {@link AdmissionControl} turned the request away: {@code rate},
+     *               {@code queue} or {@code overload}
+     */
+    public void recordAdmissionRejected(String kind, String reason) {
+        Counter.builder("video.admission.rejected")
+                .tag("kind", kind)
+                .tag("reason", reason)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * @param route proxy as {@code scheme://host:port} (no credentials), or {@code direct}
+     */
+    public void recordProxyOutcome(Platform platform, String route, String outcome) {
+        Counter.builder("video.proxy.attempts")
+                .tag("platform", platform.key())
+                .tag("route", route)
+                .tag("outcome", outcome)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Active and queued gauges for a pipeline stage.
+     */
+    void registerStage(PipelineStage stage) {
+        Gauge.builder("video.jobs.active", stage, PipelineStage::activeCount)
+                .description("Jobs running in a pipeline stage")
+                .tag("stage", stage.getName())
+                .register(registry);
+        Gauge.builder("video.jobs.queued", stage, PipelineStage::queueDepth)
+                .description("Jobs waiting for a pipeline stage")
+                .tag("stage", stage.getName())
+                .register(registry);
+    }
+
+    /**
+     * 0 closed, 1 half-open, 2 open.
+     */
+    void registerCircuit(Platform platform, String upstream, CircuitBreaker breaker) {
+        Gauge.builder("video.circuit.state", breaker, b -> switch (b.getState()) {
+                    case CLOSED -> 0;
+                    case HALF_OPEN -> 1;
+                    case OPEN -> 2;
+                })
+                .description("Circuit breaker state per upstream")
+                .tag("platform", platform.key())
+                .tag("upstream", upstream)
+                .register(registry);
+    }
+
+    public void recordCircuitTransition(Platform platform, String upstream, CircuitBreaker.State state) {
+        Counter.builder("video.circuit.transitions")
+                .tag("platform", platform.key())
+                .tag("upstream", upstream)
+                .tag("state", state.name().toLowerCase())
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Size of the temp directory where downloads land before they are cached, excluding
+     * the cache itself when it lives there. Walking the tree is not free, so the value is
+     * refreshed at most every 30 seconds.
+     */
+    private synchronized long tempUsageBytes(Path cacheRoot) {
+        long now = System.currentTimeMillis();
+        if (now - tempUsageMeasuredAt < DISK_USAGE_REFRESH_MILLIS) {
+            return tempUsageBytes;
+        }
+        tempUsageMeasuredAt = now;
+        try (Stream<Path> files = Files.walk(tempDir, 2)) {
+            tempUsageBytes = files
+                    .filter(p -> !p.startsWith(cacheRoot))
+                    .filter(Files::isRegularFile)
+                    .mapToLong(p -> {
+                        try {
+                            return Files.size(p);
+                        } catch (IOException e) {
+                            return 0;
+                        }
+                    })
+                    .sum();
+        } catch (IOException | UncheckedIOException e) {
+            logger.debug("Cannot measure temp dir {}: {}", tempDir, e.getMessage());
+        }
+        return tempUsageBytes;
+    }
+}
@@ -0,0 +1,11 @@
+package video.example.com.service;
+
+/**
+ * Platform-specific download body run inside a {@link DownloadJob}. Returns the path of
+ * the downloaded file, or {@code null} if the task already reported its own failure
+ * through {@link DownloadJob#fail(String)}.
+ */
+@FunctionalInterface
+public interface DownloadTask {
+    String download(DownloadJob job) throws Exception;
+}
@@ -0,0 +1,290 @@
+package video.example.com.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Append-only log of download job state changes, one JSON line per transition, so jobs
+ * that were queued or running when the process stopped (or crashed) can be resumed on the
+ * next start. Only the last line of a job counts; a line torn by a crash is skipped. The
+ * file is rewritten with just the open jobs at startup and whenever finished jobs make up
+ * most of it.
+ */
+@Component
+public class JobJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobJournal.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private static final String FILE_NAME = "jobs.journal";
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        /** Stopped by a shutdown with its partial files kept, to be resumed. */
+        CHECKPOINTED,
+        DONE,
+        FAILED,
+        CANCELLED;
+
+        public boolean isTerminal() {
+            return this == DONE || this == FAILED || this == CANCELLED;
+        }
+
+        static State of(DownloadJob.Status status) {
+            return switch (status) {
+                case QUEUED -> QUEUED;
+                case RUNNING -> RUNNING;
+                case DONE -> DONE;
+                case FAILED -> FAILED;
+                case CANCELLED -> CANCELLED;
+            };
+        }
+    }
+
+    /**
+     * One journal line: what is needed to submit the job again, plus where it got to.
+     *
+     * @param key     the job's artifact id, which also names its work file
+     * @param resumes how often the job has been resumed after a restart
+     * @param file    the file the current stage works on
+     */
+    public record Entry(String job, Platform platform, String url, String title, String key, int resumes,
+                        State state, String stage, String file, long at) {
+
+        public static Entry create(Platform platform, String url, String title, String key) {
+            return new Entry(UUID.randomUUID().toString(), platform, url, title, key, 0, State.QUEUED, null, null,
+                    System.currentTimeMillis());
+        }
+
+        public Entry resumed() {
+            return new Entry(job, platform, url, title, key, resumes + 1, State.QUEUED, null, file,
+                    System.currentTimeMillis());
+        }
+
+        Entry with(State newState, String newStage, Path newFile) {
+            return new Entry(job, platform, url, title, key, resumes, newState, newStage,
+                    newFile != null ? newFile.toString() : file, System.currentTimeMillis());
+        }
+    }
+
+    @Value("${download.journal.enabled:true}")
+    private boolean enabled;
+
+    @Value("${download.journal.dir:}")
+    private String dir;
+
+    /** Flush every line to the disk before going on; off trades the last few lines for speed. */
+    @Value("${download.journal.fsync:true}")
+    private boolean fsync;
+
+    /** Lines written before the file is compacted, if finished jobs are the majority. */
+    @Value("${download.journal.compact-after:1000}")
+    private int compactAfter;
+
+    private Path file;
+    private FileChannel channel;
+    private final Map<String, Entry> open = new LinkedHashMap<>();
+    private List<Entry> interrupted = List.of();
+    private int linesSinceCompaction;
+    private long written;
+    private long compactions;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        Path root = dir == null || dir.isBlank()
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "video-jobs")
+                : Paths.get(dir);
+        try {
+            Files.createDirectories(root);
+            file = root.resolve(FILE_NAME);
+            interrupted = List.copyOf(replay(file));
+            interrupted.forEach(entry -> open.put(entry.job(), entry));
+            compact();
+        } catch (IOException e) {
+            logger.warn("Cannot use {} for the job journal, jobs will not survive a restart: {}", root, e.getMessage());
+            closeChannel();
+            channel = null;
+            return;
+        }
+        logger.info("Job journal at {}: {} interrupted jobs to resume", file, interrupted.size());
+    }
+
+    /**
+     * Last entry of every job that had not finished when the journal was last written.
+     */
+    static List<Entry> replay(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return List.of();
+        }
+        Map<String, Entry> latest = new LinkedHashMap<>();
+        int skipped = 0;
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                Entry entry = MAPPER.readValue(line, Entry.class);
+                latest.remove(entry.job());
+                latest.put(entry.job(), entry);
+            } catch (JsonProcessingException e) {
+                skipped++;
+            }
+        }
+        if (skipped > 0) {
+            logger.warn("Skipped {} unreadable journal lines in {}", skipped, file);
+        }
+        List<Entry> unfinished = new ArrayList<>();
+        for (Entry entry : latest.values()) {
+            if (entry.state() != null && !entry.state().isTerminal()) {
+                unfinished.add(entry);
+            }
+        }
+        return unfinished;
+    }
+
+    public boolean isEnabled() {
+        return channel != null;
+    }
+
+    /**
+     * Jobs found unfinished at startup, oldest first. Each stays open in the journal until
+     * it is resumed or closed with {@link #record(Entry, State)}.
+     */
+    public List<Entry> interrupted() {
+        return interrupted;
+    }
+
+    /**
+     * Journals a transition of a job submitted with a journal entry; other jobs are ignored.
+     *
+     * @param file the file the job now works on, or {@code null} to keep the last one
+     */
+    public void record(DownloadJob job, State state, Path file) {
+        Entry entry = job.getJournalEntry();
+        if (entry != null) {
+            Entry next = entry.with(state, job.getStage(), file);
+            job.setJournalEntry(next);
+            append(next);
+        }
+    }
+
+    public void record(Entry entry, State state) {
+        append(entry.with(state, entry.stage(), null));
+    }
+
+    private synchronized void append(Entry entry) {
+        if (channel == null) {
+            return;
+        }
+        if (entry.state().isTerminal()) {
+            open.remove(entry.job());
+        } else {
+            open.put(entry.job(), entry);
+        }
+        try {
+            write(channel, entry);
+            written++;
+            if (++linesSinceCompaction >= compactAfter && linesSinceCompaction > 2 * open.size()) {
+                compact();
+            }
+        } catch (IOException e) {
+            logger.error("Cannot write job journal {}, jobs will not survive a restart: {}", file, e.getMessage(), e);
+            closeChannel();
+            channel = null;
+        }
+    }
+
+    private void write(FileChannel target, Entry entry) throws IOException {
+        ByteBuffer line = ByteBuffer.wrap((MAPPER.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8));
+        while (line.hasRemaining()) {
+            target.write(line);
+        }
+        if (fsync) {
+            target.force(false);
+        }
+    }
+
+    /**
+     * Rewrites the journal with only the open jobs, via a temporary file renamed over it
+     * so a crash leaves either the old or the new journal.
+     */
+    private void compact() throws IOException {
+        Path tmp = file.resolveSibling(FILE_NAME + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Entry entry : open.values()) {
+                ByteBuffer line = ByteBuffer.wrap((MAPPER.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8));
+                while (line.hasRemaining()) {
+                    out.write(line);
+                }
+            }
+            out.force(true);
+        }
+        closeChannel();
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        linesSinceCompaction = 0;
+        compactions++;
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.debug("Closing job journal: {}", e.getMessage());
+        }
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("file", file != null ? file.toString() : null);
+        stats.put("openJobs", open.size());
+        stats.put("interruptedAtStartup", interrupted.size());
+        stats.put("written", written);
+        stats.put("compactions", compactions);
+        return stats;
+    }
+
+    @PreDestroy
+    synchronized void close() {
+        closeChannel();
+        channel = null;
+    }
+}
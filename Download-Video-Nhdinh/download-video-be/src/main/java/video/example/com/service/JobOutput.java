@@ -0,0 +1,144 @@
+package video.example.com.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import video.example.com.util.OutputRingBuffer;
+
+/**
+ * Output of every process a job ran. The last few KB stay in memory for the diagnostics
+ * endpoint; the full output, if enabled, is spilled to a file instead of the heap. Lines
+ * are logged at DEBUG with a per-job rate limit, so one {@code --verbose} job cannot
+ * flood the log.
+ */
+public class JobOutput {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobOutput.class);
+
+    private final String jobId;
+    private final OutputRingBuffer tail;
+    private final Path spillFile;
+    private final int logLinesPerSecond;
+    private Writer spill;
+    private boolean spillFailed;
+    private boolean closed;
+    private long lines;
+    private long chars;
+    private long windowStart;
+    private int windowLines;
+    private long suppressedLines;
+
+    /**
+     * @param spillFile where the full output goes, or {@code null} to keep only the tail
+     */
+    JobOutput(String jobId, int tailChars, Path spillFile, int logLinesPerSecond) {
+        this.jobId = jobId;
+        this.tail = new OutputRingBuffer(tailChars);
+        this.spillFile = spillFile;
+        this.logLinesPerSecond = logLinesPerSecond;
+    }
+
+    synchronized void append(String line) {
+        lines++;
+        chars += line.length() + 1;
+        tail.append(line);
+        spill(line);
+        if (logger.isDebugEnabled()) {
+            log(line);
+        }
+    }
+
+    private void spill(String line) {
+        if (spillFile == null || spillFailed || closed) {
+            return;
+        }
+        try {
+            if (spill == null) {
+                spill = new BufferedWriter(Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8), 16 * 1024);
+            }
+            spill.write(line);
+            spill.write('\n');
+        } catch (IOException e) {
+            spillFailed = true;
+            logger.warn("Job {}: cannot write full output to {}: {}", jobId, spillFile, e.getMessage());
+        }
+    }
+
+    private void log(String line) {
+        long now = System.currentTimeMillis();
+        if (now - windowStart >= 1000) {
+            if (suppressedLines > 0) {
+                logger.debug("Job {}: {} output lines not logged (rate limit), see /api/jobs/{}/diagnostics",
+                        jobId, suppressedLines, jobId);
+            }
+            windowStart = now;
+            windowLines = 0;
+            suppressedLines = 0;
+        }
+        if (windowLines < logLinesPerSecond) {
+            windowLines++;
+            logger.debug("[job {}] {}", jobId, line);
+        } else {
+            suppressedLines++;
+        }
+    }
+
+    public List<String> tail() {
+        return tail.lines();
+    }
+
+    /**
+     * File holding the complete output, or {@code null} if it was not kept.
+     */
+    public synchronized Path getSpillFile() {
+        if (spill != null && !closed) {
+            try {
+                spill.flush();
+            } catch (IOException e) {
+                logger.debug("Job {}: flush failed: {}", jobId, e.getMessage());
+            }
+        }
+        return spill != null && !spillFailed ? spillFile : null;
+    }
+
+    synchronized void close() {
+        if (spill != null && !closed) {
+            try {
+                spill.close();
+            } catch (IOException e) {
+                logger.debug("Job {}: close failed: {}", jobId, e.getMessage());
+            }
+        }
+        closed = true;
+    }
+
+    synchronized void delete() {
+        close();
+        if (spillFile != null) {
+            try {
+                Files.deleteIfExists(spillFile);
+            } catch (IOException e) {
+                logger.debug("Job {}: cannot delete {}: {}", jobId, spillFile, e.getMessage());
+            }
+        }
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("lines", lines);
+        stats.put("bytes", chars);
+        stats.put("tailDroppedLines", tail.droppedLines());
+        stats.put("fullOutput", spill != null && !spillFailed);
+        return stats;
+    }
+}
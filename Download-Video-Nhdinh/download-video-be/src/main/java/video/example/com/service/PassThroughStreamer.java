@@ -0,0 +1,209 @@
+package video.example.com.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import video.example.com.util.OutputRingBuffer;
+import video.example.com.util.ProcessWatcher;
+
+/**
+ * Pipes yt-dlp's stdout straight to the HTTP response for single-file formats, so the
+ * client receives bytes while the download is still running instead of waiting for
+ * a {@code DONE_} event. The stream can be teed into the {@link ArtifactStore} so the next
+ * request for the same video is served from disk.
+ */
+@Component
+public class PassThroughStreamer {
+
+    private static final Logger logger = LoggerFactory.getLogger(PassThroughStreamer.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int STDERR_TAIL_CHARS = 4 * 1024;
+
+    @Value("${download.stream.max-concurrent:16}")
+    private int maxConcurrent;
+
+    @Value("${download.stream.tee:true}")
+    private boolean tee;
+
+    private final ArtifactStore artifacts;
+    private final VideoFileServer fileServer;
+    private final ProcessSupervisor processSupervisor;
+    private final DownloadMetrics metrics;
+    private final UrlCanonicalizer canonicalizer;
+    private final CircuitBreakers circuits;
+    private final ExecutorService stderrReaders = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "yt-dlp-stderr");
+        t.setDaemon(true);
+        return t;
+    });
+    private Semaphore slots;
+
+    public PassThroughStreamer(ArtifactStore artifacts, VideoFileServer fileServer, ProcessSupervisor processSupervisor,
+                               DownloadMetrics metrics, UrlCanonicalizer canonicalizer, CircuitBreakers circuits) {
+        this.artifacts = artifacts;
+        this.fileServer = fileServer;
+        this.processSupervisor = processSupervisor;
+        this.metrics = metrics;
+        this.canonicalizer = canonicalizer;
+        this.circuits = circuits;
+    }
+
+    @PostConstruct
+    void init() {
+        slots = new Semaphore(maxConcurrent > 0 ? maxConcurrent : 16);
+    }
+
+    /**
+     * @param lease the route {@code command} goes through; told whether yt-dlp got the
+     *              video out of it
+     */
+    public void stream(Platform platform, String url, ProxyPool.Lease lease, List<String> command, String fileName,
+                       HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String key = ArtifactStore.idOf(canonicalizer.key(platform, url));
+        Path cached = artifacts.lookup(key);
+        if (cached != null) {
+            logger.info("Cache hit for {} pass-through URL: {}", platform, url);
+            fileServer.serve(cached.toFile(), request, response);
+            return;
+        }
+        // An aborted stream has no outcome to report, so it only checks the circuit and never takes the probe
+        if (circuits.isOpen(platform, CircuitBreakers.Upstream.EXTRACTOR)) {
+            logger.warn("{} circuit open, rejecting pass-through URL: {}", platform, url);
+            response.setHeader(HttpHeaders.RETRY_AFTER,
+                    Long.toString(circuits.retryAfterSeconds(platform, CircuitBreakers.Upstream.EXTRACTOR)));
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+        if (!slots.tryAcquire()) {
+            logger.warn("Pass-through streams exhausted, rejecting URL: {}", url);
+            response.setHeader(HttpHeaders.RETRY_AFTER, "5");
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+
+        Process process = null;
+        Path teeFile = null;
+        boolean stored = false;
+        long streamed = 0;
+        long startedAt = System.nanoTime();
+        OutputRingBuffer stderr = new OutputRingBuffer(STDERR_TAIL_CHARS);
+        try {
+            ProcessBuilder pb = new ProcessBuilder(command);
+            logger.debug("Executing yt-dlp command: {}", pb.command());
+            process = pb.start();
+            processSupervisor.track(process, ProcessWatcher.PHASE_DOWNLOAD, null);
+            Future<?> stderrDrained = drainStderr(process, url, stderr);
+            if (tee) {
+                teeFile = artifacts.createStagingFile();
+            }
+
+            try (InputStream in = process.getInputStream();
+                 OutputStream teeOut = teeFile != null ? Files.newOutputStream(teeFile) : OutputStream.nullOutputStream()) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int n = in.read(buffer);
+                if (n < 0) {
+                    int exit = process.waitFor();
+                    logger.error("yt-dlp produced no output for URL: {} (exit {})", url, exit);
+                    lease.failed(stderrTail(stderrDrained, stderr), System.nanoTime() - startedAt);
+                    response.setStatus(HttpServletResponse.SC_BAD_GATEWAY);
+                    return;
+                }
+                response.setContentType("video/mp4");
+                response.setHeader(HttpHeaders.CONTENT_DISPOSITION, VideoFileServer.contentDisposition(fileName));
+                OutputStream out = response.getOutputStream();
+                while (n >= 0) {
+                    out.write(buffer, 0, n);
+                    teeOut.write(buffer, 0, n);
+                    streamed += n;
+                    n = in.read(buffer);
+                }
+                out.flush();
+            }
+
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                logger.warn("yt-dlp did not exit after closing stdout for URL: {}", url);
+            } else if (process.exitValue() != 0) {
+                logger.error("yt-dlp exited with code {} while streaming URL: {}", process.exitValue(), url);
+                lease.failed(stderrTail(stderrDrained, stderr), System.nanoTime() - startedAt);
+            } else {
+                lease.succeeded(System.nanoTime() - startedAt);
+                if (teeFile != null) {
+                    artifacts.store(key, teeFile, fileName);
+                    stored = true;
+                }
+            }
+        } catch (IOException e) {
+            // Mostly the client going away, which says nothing about the route
+            logger.warn("Pass-through stream aborted for URL: {}: {}", url, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (process != null) {
+                processSupervisor.killTree(process, "stream finished");
+            }
+            if (teeFile != null && !stored) {
+                Files.deleteIfExists(teeFile);
+            }
+            slots.release();
+            metrics.recordDownloadedBytes(platform, "pipe", streamed);
+            metrics.recordServedBytes(streamed);
+        }
+    }
+
+    /**
+     * yt-dlp's last stderr lines, once the reader has caught up with the exited process.
+     */
+    private static String stderrTail(Future<?> drained, OutputRingBuffer stderr) {
+        try {
+            drained.get(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // Classify what has been read so far
+        }
+        return stderr.toString();
+    }
+
+    private Future<?> drainStderr(Process process, String url, OutputRingBuffer stderr) {
+        return stderrReaders.submit(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    logger.debug("[yt-dlp] {}", line);
+                    stderr.append(line);
+                }
+            } catch (IOException e) {
+                logger.debug("stderr closed for URL: {}", url);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stderrReaders.shutdownNow();
+    }
+}
@@ -0,0 +1,174 @@
+package video.example.com.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One stage of the download pipeline: a fixed pool of workers plus a bounded queue.
+ * {@link #trySubmit} rejects when the stage is full (used at the front door), while
+ * {@link #submit} blocks the caller, so an upstream stage that outruns this one slows
+ * down instead of piling up work.
+ */
+class PipelineStage {
+
+    private final String name;
+    private final int concurrency;
+    private final int queueCapacity;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore permits;
+    private final AtomicInteger blockedProducers = new AtomicInteger();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final LongAdder serviceNanos = new LongAdder();
+    private double recentServiceNanos;
+
+    PipelineStage(String name, String threadPrefix, int concurrency, int queueCapacity) {
+        this.name = name;
+        this.concurrency = concurrency;
+        this.queueCapacity = queueCapacity;
+        this.permits = new Semaphore(concurrency + queueCapacity);
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = r -> {
+            Thread t = new Thread(r, threadPrefix + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        // Capacity is enforced by the permits; cancelled tasks may linger in the queue briefly
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), factory);
+    }
+
+    /**
+     * @throws RejectedExecutionException when all workers are busy and the queue is full
+     */
+    Future<?> trySubmit(Runnable task) {
+        if (!permits.tryAcquire()) {
+            rejected.increment();
+            throw new RejectedExecutionException("Stage " + name + " is full");
+        }
+        return enqueue(task);
+    }
+
+    /**
+     * Waits for room in the stage, then queues the task.
+     */
+    Future<?> submit(Runnable task) throws InterruptedException {
+        if (!permits.tryAcquire()) {
+            blockedProducers.incrementAndGet();
+            try {
+                permits.acquire();
+            } finally {
+                blockedProducers.decrementAndGet();
+            }
+        }
+        return enqueue(task);
+    }
+
+    private Future<?> enqueue(Runnable task) {
+        long queuedAt = System.nanoTime();
+        FutureTask<Void> future = new FutureTask<>(() -> {
+            long startedAt = System.nanoTime();
+            queueWaitNanos.add(startedAt - queuedAt);
+            try {
+                task.run();
+            } finally {
+                recordService(System.nanoTime() - startedAt);
+                completed.increment();
+            }
+        }, null) {
+            @Override
+            protected void done() {
+                // Runs on completion and on cancellation, so a task cancelled in the queue frees its slot too
+                permits.release();
+            }
+        };
+        submitted.increment();
+        try {
+            executor.execute(future);
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+        return future;
+    }
+
+    private synchronized void recordService(long nanos) {
+        serviceNanos.add(nanos);
+        // Moving average over roughly the last ten tasks, so the estimate follows the current upstream speed
+        recentServiceNanos = recentServiceNanos == 0 ? nanos : recentServiceNanos * 0.9 + nanos * 0.1;
+    }
+
+    /**
+     * How long a task submitted now would wait for a worker: 0 while one is idle, otherwise
+     * the tasks ahead of it spread over the workers, at the recent average service time
+     * ({@code defaultServiceMillis} until a task has completed).
+     */
+    synchronized long estimatedWaitMillis(long defaultServiceMillis) {
+        int queued = queueDepth();
+        if (queued == 0 && activeCount() < concurrency) {
+            return 0;
+        }
+        double serviceMillis = recentServiceNanos == 0 ? defaultServiceMillis : recentServiceNanos / 1_000_000;
+        return (long) ((queued + 1) * serviceMillis / concurrency);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    int concurrency() {
+        return concurrency;
+    }
+
+    int activeCount() {
+        return executor.getActiveCount();
+    }
+
+    int queueDepth() {
+        return Math.max(0, concurrency + queueCapacity - permits.availablePermits() - executor.getActiveCount());
+    }
+
+    long completedCount() {
+        return completed.sum();
+    }
+
+    Map<String, Object> stats() {
+        long done = completed.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("concurrency", concurrency);
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("active", activeCount());
+        stats.put("queued", queueDepth());
+        stats.put("blockedProducers", blockedProducers.get());
+        stats.put("submitted", submitted.sum());
+        stats.put("completed", done);
+        stats.put("rejected", rejected.sum());
+        stats.put("avgQueueWaitMs", done == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(queueWaitNanos.sum() / done));
+        stats.put("avgServiceMs", done == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(serviceNanos.sum() / done));
+        return stats;
+    }
+
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    void shutdownNow() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,11 @@
+package video.example.com.service;
+
+public enum Platform {
+    TIKTOK,
+    FACEBOOK,
+    INSTAGRAM;
+
+    public String key() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,280 @@
+package video.example.com.service;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import video.example.com.util.CircuitOpenException;
+
+/**
+ * In-process cache for {@code /preview} responses. Successful previews are kept for the
+ * metadata TTL, or for the shorter media TTL when they carry a direct CDN {@code videoUrl}
+ * that will expire upstream. Failed lookups (private, removed, blocked) are cached briefly
+ * so repeated clicks don't fork yt-dlp again. Entries are keyed by video, not by URL
+ * spelling, see {@link UrlCanonicalizer}.
+ * <p>
+ * When a loader is refused by an open circuit ({@link CircuitBreakers}) the last known
+ * preview for the video is served instead, marked {@code "degraded": "true"} and without
+ * its expired media URL; with nothing known the answer is a 503 with {@code Retry-After}.
+ */
+@Component
+public class PreviewCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(PreviewCache.class);
+    private static final String DEGRADED_NOTICE = "Nền tảng đang tạm thời gián đoạn, đây là thông tin đã lưu trước đó.";
+
+    @FunctionalInterface
+    public interface Loader {
+        ResponseEntity<Map<String, String>> load() throws IOException;
+    }
+
+    @Value("${preview.cache.ttl-seconds:1800}")
+    private long ttlSeconds;
+
+    @Value("${preview.cache.media-url-ttl-seconds:300}")
+    private long mediaUrlTtlSeconds;
+
+    @Value("${preview.cache.negative-ttl-seconds:60}")
+    private long negativeTtlSeconds;
+
+    @Value("${preview.cache.max-entries:5000}")
+    private int maxEntries;
+
+    @Value("${preview.cache.last-known-max-entries:20000}")
+    private int lastKnownMaxEntries;
+
+    private final DownloadMetrics metrics;
+    private final UrlCanonicalizer canonicalizer;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    /** Last successful body per video, kept past its TTL for brownouts. Guarded by {@code this}. */
+    private final LinkedHashMap<String, Map<String, String>> lastKnown = new LinkedHashMap<>(256, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong negativeHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong brownouts = new AtomicLong();
+
+    private record Entry(int status, Map<String, String> body, long expiresAt) {
+        boolean negative() {
+            return status >= 400;
+        }
+    }
+
+    public PreviewCache(DownloadMetrics metrics, UrlCanonicalizer canonicalizer) {
+        this.metrics = metrics;
+        this.canonicalizer = canonicalizer;
+    }
+
+    /**
+     * Like {@link Loader}, for loaders that resolve off the calling thread.
+     */
+    @FunctionalInterface
+    public interface AsyncLoader {
+        CompletableFuture<ResponseEntity<Map<String, String>>> load();
+    }
+
+    public ResponseEntity<Map<String, String>> get(Platform platform, String url, Loader loader) throws IOException {
+        String key = key(platform, url);
+        long startedAt = System.nanoTime();
+        ResponseEntity<Map<String, String>> cached = cached(platform, url, key, startedAt);
+        if (cached != null) {
+            return cached;
+        }
+
+        misses.incrementAndGet();
+        ResponseEntity<Map<String, String>> response;
+        try {
+            response = loader.load();
+        } catch (CircuitOpenException e) {
+            return brownout(platform, key, e, startedAt);
+        } catch (IOException | RuntimeException e) {
+            metrics.recordPreview(platform, DownloadMetrics.FAILURE, System.nanoTime() - startedAt);
+            throw e;
+        }
+        return loaded(platform, key, response, startedAt);
+    }
+
+    /**
+     * {@link #get} for a loader that does not block; the cache is consulted on the calling
+     * thread and the response recorded on whichever thread the loader completes on.
+     */
+    public CompletableFuture<ResponseEntity<Map<String, String>>> getAsync(Platform platform, String url,
+                                                                           AsyncLoader loader) {
+        String key = key(platform, url);
+        long startedAt = System.nanoTime();
+        ResponseEntity<Map<String, String>> cached = cached(platform, url, key, startedAt);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        misses.incrementAndGet();
+        CompletableFuture<ResponseEntity<Map<String, String>>> loading;
+        try {
+            loading = loader.load();
+        } catch (RuntimeException e) {
+            loading = CompletableFuture.failedFuture(e);
+        }
+        return loading.handle((response, failure) -> {
+            if (failure == null) {
+                return CompletableFuture.completedFuture(loaded(platform, key, response, startedAt));
+            }
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                    ? failure.getCause() : failure;
+            if (cause instanceof CircuitOpenException e) {
+                return CompletableFuture.completedFuture(brownout(platform, key, e, startedAt));
+            }
+            metrics.recordPreview(platform, DownloadMetrics.FAILURE, System.nanoTime() - startedAt);
+            return CompletableFuture.<ResponseEntity<Map<String, String>>>failedFuture(cause);
+        }).thenCompose(result -> result);
+    }
+
+    private ResponseEntity<Map<String, String>> cached(Platform platform, String url, String key, long startedAt) {
+        long now = System.currentTimeMillis();
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && entry.expiresAt() <= now) {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            return null;
+        }
+        (entry.negative() ? negativeHits : hits).incrementAndGet();
+        metrics.recordPreview(platform, entry.negative() ? "negative_hit" : "hit", System.nanoTime() - startedAt);
+        logger.debug("Preview cache hit for {} URL: {}", platform, url);
+        return ResponseEntity.status(entry.status()).body(entry.body());
+    }
+
+    private ResponseEntity<Map<String, String>> loaded(Platform platform, String key,
+                                                       ResponseEntity<Map<String, String>> response, long startedAt) {
+        metrics.recordPreview(platform, response.getStatusCode().is2xxSuccessful() ? DownloadMetrics.SUCCESS
+                : DownloadMetrics.FAILURE, System.nanoTime() - startedAt);
+        put(key, response);
+        return response;
+    }
+
+    private ResponseEntity<Map<String, String>> brownout(Platform platform, String key, CircuitOpenException e,
+                                                         long startedAt) {
+        brownouts.incrementAndGet();
+        metrics.recordPreview(platform, "brownout", System.nanoTime() - startedAt);
+        Map<String, String> known;
+        synchronized (this) {
+            known = lastKnown.get(key);
+        }
+        if (known != null) {
+            Map<String, String> body = new HashMap<>(known);
+            body.put("degraded", "true");
+            body.put("notice", DEGRADED_NOTICE);
+            return ResponseEntity.ok(body);
+        }
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+                .body(Map.of("error", e.getMessage(), "degraded", "true"));
+    }
+
+    /**
+     * Returns the cached successful preview without loading one, or {@code null}. Media URLs
+     * in it are at most {@code preview.cache.media-url-ttl-seconds} old.
+     */
+    public Map<String, String> peek(Platform platform, String url) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Entry entry = entries.get(key(platform, url));
+            if (entry == null || entry.negative() || entry.expiresAt() <= now) {
+                return null;
+            }
+            return entry.body();
+        }
+    }
+
+    private void put(String key, ResponseEntity<Map<String, String>> response) {
+        int status = response.getStatusCode().value();
+        Map<String, String> body = response.getBody();
+        long ttl;
+        if (status >= 200 && status < 300) {
+            boolean hasMediaUrl = body != null && body.get("videoUrl") != null && !body.get("videoUrl").isEmpty();
+            ttl = hasMediaUrl ? Math.min(mediaUrlTtlSeconds, ttlSeconds) : ttlSeconds;
+            remember(key, body);
+        } else if (status >= 500) {
+            ttl = negativeTtlSeconds;
+        } else {
+            return;
+        }
+        if (ttl <= 0) {
+            return;
+        }
+        Entry entry = new Entry(status, body, System.currentTimeMillis() + ttl * 1000);
+        synchronized (this) {
+            entries.put(key, entry);
+            Iterator<Entry> it = entries.values().iterator();
+            while (entries.size() > maxEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private void remember(String key, Map<String, String> body) {
+        if (body == null || lastKnownMaxEntries <= 0) {
+            return;
+        }
+        Map<String, String> known = new HashMap<>(body);
+        // CDN links expire long before a brownout ends
+        known.put("videoUrl", "");
+        synchronized (this) {
+            lastKnown.put(key, known);
+            Iterator<Map<String, String>> it = lastKnown.values().iterator();
+            while (lastKnown.size() > lastKnownMaxEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void invalidate(Platform platform, String url) {
+        entries.remove(key(platform, url));
+    }
+
+    public Map<String, Object> stats() {
+        long hitCount = hits.get();
+        long negativeHitCount = negativeHits.get();
+        long missCount = misses.get();
+        long lookups = hitCount + negativeHitCount + missCount;
+        int size;
+        int lastKnownSize;
+        synchronized (this) {
+            size = entries.size();
+            lastKnownSize = lastKnown.size();
+        }
+        return Map.of(
+                "size", size,
+                "lastKnown", lastKnownSize,
+                "brownouts", brownouts.get(),
+                "hits", hitCount,
+                "negativeHits", negativeHitCount,
+                "misses", missCount,
+                "evictions", evictions.get(),
+                "hitRatio", lookups == 0 ? 0.0 : (double) (hitCount + negativeHitCount) / lookups
+        );
+    }
+
+    private String key(Platform platform, String url) {
+        return canonicalizer.key(platform, url);
+    }
+}
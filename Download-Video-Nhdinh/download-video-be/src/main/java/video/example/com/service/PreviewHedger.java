@@ -0,0 +1,231 @@
+package video.example.com.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import video.example.com.util.LatencyWindow;
+
+/**
+ * Hedged preview resolution: the cheap primary lookup (oEmbed) starts first, and if it
+ * has not answered within the configured percentile of its recent latencies the backup
+ * (yt-dlp) starts alongside it. The first usable answer wins and the other attempt is
+ * cancelled, so a stalled oEmbed call costs about one p95 instead of a full timeout.
+ */
+@Component
+public class PreviewHedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(PreviewHedger.class);
+    private static final int WINDOW_SIZE = 256;
+    private static final int MIN_SAMPLES = 20;
+
+    /**
+     * One way of resolving a preview. {@link #cancel()} is called when the other attempt
+     * won; the running thread is interrupted as well, but work that does not react to
+     * interrupts (a child process) has to be stopped here.
+     */
+    public interface Attempt<T> extends Callable<T> {
+        default void cancel() {
+        }
+
+        static <T> Attempt<T> of(Callable<T> call) {
+            return call::call;
+        }
+
+        static <T> Attempt<T> of(Callable<T> call, Runnable onCancel) {
+            return new Attempt<>() {
+                @Override
+                public T call() throws Exception {
+                    return call.call();
+                }
+
+                @Override
+                public void cancel() {
+                    onCancel.run();
+                }
+            };
+        }
+    }
+
+    @Value("${preview.hedge.enabled:true}")
+    private boolean enabled;
+
+    @Value("${preview.hedge.percentile:0.95}")
+    private double percentile;
+
+    @Value("${preview.hedge.default-delay-ms:1500}")
+    private long defaultDelayMs;
+
+    @Value("${preview.hedge.min-delay-ms:200}")
+    private long minDelayMs;
+
+    @Value("${preview.hedge.max-delay-ms:5000}")
+    private long maxDelayMs;
+
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong hedged = new AtomicLong();
+    private final AtomicLong primaryWins = new AtomicLong();
+    private final AtomicLong backupWins = new AtomicLong();
+    private final AtomicInteger threads = new AtomicInteger();
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "preview-hedge-" + threads.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Resolves with {@code primary}, hedging with {@code backup} when the primary is slow.
+     * Returns the first result accepted by {@code usable}; if neither is usable, the
+     * backup's result, or {@code null} if the backup threw.
+     *
+     * @param name identifies the primary's latency history, e.g. {@code tiktok-oembed}
+     */
+    public <T> T resolve(String name, Attempt<T> primary, Attempt<T> backup, Predicate<T> usable)
+            throws InterruptedException {
+        calls.incrementAndGet();
+        LatencyWindow window = latencies.computeIfAbsent(name, k -> new LatencyWindow(WINDOW_SIZE));
+        Callable<T> timedPrimary = () -> {
+            long startedAt = System.nanoTime();
+            T result = primary.call();
+            if (usable.test(result)) {
+                window.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+            }
+            return result;
+        };
+
+        if (!enabled) {
+            T result = attempt(timedPrimary);
+            return usable.test(result) ? result : attempt(backup);
+        }
+
+        CompletionService<T> completion = new ExecutorCompletionService<>(executor);
+        Future<T> primaryFuture = completion.submit(timedPrimary);
+        long delay = hedgeDelayMs(window);
+        Future<T> first;
+        try {
+            first = completion.poll(delay, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            cancel(primary, primaryFuture);
+            throw e;
+        }
+        if (first != null) {
+            T result = result(first);
+            if (usable.test(result)) {
+                primaryWins.incrementAndGet();
+                return result;
+            }
+            // Primary answered but failed: plain fallback, nothing to race against
+            return attempt(backup);
+        }
+
+        hedged.incrementAndGet();
+        logger.info("{} still pending after {} ms, starting backup", name, delay);
+        Future<T> backupFuture = completion.submit(backup);
+        T backupResult = null;
+        try {
+            for (int pending = 2; pending > 0; pending--) {
+                Future<T> done = completion.take();
+                T result = result(done);
+                if (done == primaryFuture) {
+                    if (usable.test(result)) {
+                        primaryWins.incrementAndGet();
+                        cancel(backup, backupFuture);
+                        return result;
+                    }
+                } else {
+                    backupResult = result;
+                    if (usable.test(result)) {
+                        backupWins.incrementAndGet();
+                        cancel(primary, primaryFuture);
+                        return result;
+                    }
+                }
+            }
+            return backupResult;
+        } catch (InterruptedException e) {
+            cancel(primary, primaryFuture);
+            cancel(backup, backupFuture);
+            throw e;
+        }
+    }
+
+    private long hedgeDelayMs(LatencyWindow window) {
+        if (window.size() < MIN_SAMPLES) {
+            return defaultDelayMs;
+        }
+        return Math.max(minDelayMs, Math.min(maxDelayMs, window.percentile(percentile)));
+    }
+
+    private static <T> T attempt(Callable<T> call) {
+        try {
+            return call.call();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            logger.warn("Preview attempt failed: {}", e.toString());
+            return null;
+        }
+    }
+
+    private static <T> T result(Future<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            logger.warn("Preview attempt failed: {}", e.getCause().toString());
+            return null;
+        }
+    }
+
+    private static void cancel(Attempt<?> attempt, Future<?> future) {
+        if (future.isDone()) {
+            return;
+        }
+        future.cancel(true);
+        attempt.cancel();
+    }
+
+    /**
+     * The pool attempts run on, for callers that resolve a preview off their own thread.
+     */
+    public Executor executor() {
+        return executor;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> delays = new LinkedHashMap<>();
+        latencies.forEach((name, window) -> delays.put(name, hedgeDelayMs(window)));
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("calls", calls.get());
+        stats.put("hedged", hedged.get());
+        stats.put("primaryWins", primaryWins.get());
+        stats.put("backupWins", backupWins.get());
+        stats.put("hedgeDelayMs", delays);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
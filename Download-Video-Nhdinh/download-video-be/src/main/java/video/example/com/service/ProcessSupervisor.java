@@ -0,0 +1,152 @@
+package video.example.com.service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import video.example.com.util.ProcessWatcher;
+
+/**
+ * Tracks every yt-dlp / ffmpeg process we spawn. Each process gets a wall-clock limit for
+ * its phase, and killing a process always takes its descendants with it (yt-dlp runs
+ * ffmpeg as a child), first politely and then forcibly after a grace period.
+ */
+@Component
+public class ProcessSupervisor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessSupervisor.class);
+
+    @Value("${process.timeout.metadata-seconds:60}")
+    private long metadataTimeoutSeconds;
+
+    @Value("${process.timeout.download-seconds:1800}")
+    private long downloadTimeoutSeconds;
+
+    @Value("${process.timeout.postprocess-seconds:1800}")
+    private long postprocessTimeoutSeconds;
+
+    @Value("${process.kill-grace-seconds:3}")
+    private long killGraceSeconds;
+
+    private record Tracked(Process process, String phase, String jobId, long startedAt, ScheduledFuture<?> deadline) {
+    }
+
+    private final DownloadMetrics metrics;
+    private final Map<Long, Tracked> processes = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "process-supervisor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public ProcessSupervisor(DownloadMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Watcher that registers the job's processes and records their output in
+     * {@link DownloadJob#getOutput()}; processes started after the job was cancelled are
+     * killed straight away.
+     */
+    public ProcessWatcher watcherFor(DownloadJob job) {
+        return new ProcessWatcher() {
+            @Override
+            public void started(Process process, String phase) {
+                track(process, phase, job.getId());
+                if (job.isCancelRequested()) {
+                    killTree(process, "job cancelled");
+                }
+            }
+
+            @Override
+            public void output(String line) {
+                JobOutput output = job.getOutput();
+                if (output != null) {
+                    output.append(line);
+                }
+            }
+        };
+    }
+
+    public void track(Process process, String phase, String jobId) {
+        long timeout = timeoutSeconds(phase);
+        ScheduledFuture<?> deadline = scheduler.schedule(() -> {
+            logger.warn("{} process {} exceeded {}s (job {}), killing", phase, process.pid(), timeout, jobId);
+            killTree(process, "timeout");
+        }, timeout, TimeUnit.SECONDS);
+        long spawnedAt = System.nanoTime();
+        processes.put(process.pid(), new Tracked(process, phase, jobId, System.currentTimeMillis(), deadline));
+        process.onExit().thenRun(() -> {
+            deadline.cancel(false);
+            processes.remove(process.pid());
+            metrics.recordProcess(phase, process.exitValue() == 0 ? DownloadMetrics.SUCCESS : DownloadMetrics.FAILURE,
+                    System.nanoTime() - spawnedAt);
+        });
+    }
+
+    /**
+     * Kills every process belonging to the job. Returns how many were found.
+     */
+    public int killJob(String jobId) {
+        int killed = 0;
+        for (Tracked tracked : processes.values()) {
+            if (jobId.equals(tracked.jobId())) {
+                killTree(tracked.process(), "job " + jobId + " cancelled");
+                killed++;
+            }
+        }
+        return killed;
+    }
+
+    public void killTree(Process process, String reason) {
+        if (!process.isAlive()) {
+            return;
+        }
+        List<ProcessHandle> descendants = process.descendants().toList();
+        logger.info("Killing process {} and {} descendants: {}", process.pid(), descendants.size(), reason);
+        descendants.forEach(ProcessHandle::destroy);
+        process.destroy();
+        scheduler.schedule(() -> {
+            descendants.stream().filter(ProcessHandle::isAlive).forEach(ProcessHandle::destroyForcibly);
+            if (process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }, killGraceSeconds, TimeUnit.SECONDS);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Integer> byPhase = new LinkedHashMap<>();
+        for (Tracked tracked : processes.values()) {
+            byPhase.merge(tracked.phase(), 1, Integer::sum);
+        }
+        return Map.of("running", processes.size(), "byPhase", byPhase);
+    }
+
+    private long timeoutSeconds(String phase) {
+        return switch (phase) {
+            case ProcessWatcher.PHASE_METADATA -> metadataTimeoutSeconds;
+            case ProcessWatcher.PHASE_POSTPROCESS -> postprocessTimeoutSeconds;
+            default -> downloadTimeoutSeconds;
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Tracked tracked : processes.values()) {
+            tracked.process().descendants().forEach(ProcessHandle::destroyForcibly);
+            tracked.process().destroyForcibly();
+        }
+        scheduler.shutdownNow();
+    }
+}
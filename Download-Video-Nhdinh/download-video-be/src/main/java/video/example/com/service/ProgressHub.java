@@ -0,0 +1,175 @@
+package video.example.com.service;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Connects SSE clients to download jobs. A job keeps running when its clients go away;
+ * clients can re-attach at any time and, with {@code Last-Event-ID}, receive the events
+ * they missed from the job's replay buffer. Idle connections get periodic heartbeat
+ * comments so proxies don't time them out. Events are sent on a small pool of delivery
+ * threads rather than the job's worker, so a client that reads slowly only falls behind
+ * on its own progress updates.
+ */
+@Component
+public class ProgressHub {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProgressHub.class);
+
+    @Value("${download.sse.heartbeat-seconds:15}")
+    private long heartbeatSeconds;
+
+    @Value("${download.sse.delivery-threads:8}")
+    private int deliveryThreads;
+
+    private final Set<SseEmitter> emitters = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService heartbeat;
+    private ExecutorService delivery;
+
+    @PostConstruct
+    void init() {
+        delivery = Executors.newFixedThreadPool(Math.max(1, deliveryThreads), r -> {
+            Thread t = new Thread(r, "sse-delivery");
+            t.setDaemon(true);
+            return t;
+        });
+        if (heartbeatSeconds > 0) {
+            heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "sse-heartbeat");
+                t.setDaemon(true);
+                return t;
+            });
+            heartbeat.scheduleAtFixedRate(this::sendHeartbeats, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Opens an SSE stream on the job. {@code lastEventId} is the client's
+     * {@code Last-Event-ID} header, or {@code null} on a first connection.
+     */
+    public SseEmitter attach(DownloadJob job, String lastEventId, long timeoutMillis) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        long lastSeq = lastSeq(job, lastEventId);
+        if (lastSeq == 0) {
+            try {
+                emitter.send(SseEmitter.event().name("job").data(job.getId()));
+            } catch (IOException e) {
+                logger.warn("Client disconnected before job id was sent: {}", e.getMessage());
+            }
+        } else {
+            logger.info("Client resumed job {} after event {}", job.getId(), lastSeq);
+        }
+
+        EmitterSubscriber subscriber = new EmitterSubscriber(job, emitter);
+        emitters.add(emitter);
+        emitter.onCompletion(() -> {
+            emitters.remove(emitter);
+            job.unsubscribe(subscriber);
+        });
+        emitter.onTimeout(() -> {
+            logger.warn("SSE timeout for {} job {}", job.getPlatform(), job.getId());
+            emitters.remove(emitter);
+            job.unsubscribe(subscriber);
+            emitter.complete();
+        });
+        emitter.onError(e -> {
+            emitters.remove(emitter);
+            job.unsubscribe(subscriber);
+        });
+        job.subscribe(subscriber, lastSeq, delivery);
+        return emitter;
+    }
+
+    public int subscriberCount() {
+        return emitters.size();
+    }
+
+    static String eventId(DownloadJob job, long seq) {
+        return job.getId() + ":" + seq;
+    }
+
+    /**
+     * Event ids are {@code <jobId>:<seq>}. An id from another job (e.g. the client was
+     * joined to a newer run of the same URL) replays the whole buffer.
+     */
+    private static long lastSeq(DownloadJob job, String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return 0;
+        }
+        int colon = lastEventId.lastIndexOf(':');
+        if (colon < 0 || !lastEventId.substring(0, colon).equals(job.getId())) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(lastEventId.substring(colon + 1));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private void sendHeartbeats() {
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event().comment("heartbeat"));
+            } catch (IOException | IllegalStateException e) {
+                emitters.remove(emitter);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        delivery.shutdownNow();
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
+        }
+    }
+
+    private final class EmitterSubscriber implements DownloadJob.Subscriber {
+
+        private final DownloadJob job;
+        private final SseEmitter emitter;
+
+        EmitterSubscriber(DownloadJob job, SseEmitter emitter) {
+            this.job = job;
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void onEvent(DownloadJob.Event event) {
+            SseEmitter.SseEventBuilder builder = SseEmitter.event()
+                    .id(eventId(job, event.seq()))
+                    .data(event.data());
+            if (event.name() != null) {
+                builder.name(event.name());
+            }
+            try {
+                emitter.send(builder);
+            } catch (IOException | IllegalStateException e) {
+                logger.warn("Client disconnected from job {}: {}", job.getId(), e.getMessage());
+                emitters.remove(emitter);
+                throw new IllegalStateException("Subscriber gone", e);
+            }
+        }
+
+        @Override
+        public void onFinished() {
+            emitters.remove(emitter);
+            emitter.complete();
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package video.example.com.service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import video.example.com.util.FailureClass;
+
+/**
+ * Outbound routes for yt-dlp, per platform: the configured proxies plus, optionally, the
+ * direct connection. Each route is scored passively from the outcome of the runs that used
+ * it (success rate, run time, 429 / 403 answers). Routes are picked at random weighted by
+ * that score; a rate-limited or blocked route cools down with exponential backoff, and one
+ * that keeps failing to connect is ejected for a while, so one throttled exit IP no longer
+ * takes the whole platform down with it.
+ *
+ * A {@link Lease} keeps a job on the same route for all its attempts, moving it only when
+ * the route itself was at fault.
+ */
+@Component
+public class ProxyPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProxyPool.class);
+    private static final Set<String> SCHEMES = Set.of("http", "https", "socks4", "socks4a", "socks5", "socks5h");
+    private static final String DIRECT = "direct";
+
+    public enum Outcome {
+        SUCCESS,
+        /** HTTP 429 from upstream: this exit IP is being throttled. */
+        RATE_LIMITED,
+        /** HTTP 403 from upstream: this exit IP is blocked or flagged. */
+        FORBIDDEN,
+        /** The proxy itself could not be reached or timed out. */
+        ROUTE_ERROR,
+        /** Failed for a reason unrelated to the route (removed video, bad URL, ...). */
+        FAILURE
+    }
+
+    @Value("${proxy.pool.tiktok:}")
+    private List<String> tiktokProxies;
+
+    @Value("${proxy.pool.facebook:}")
+    private List<String> facebookProxies;
+
+    @Value("${proxy.pool.instagram:}")
+    private List<String> instagramProxies;
+
+    @Value("${tiktok.proxy:}")
+    private String legacyTiktokProxy;
+
+    @Value("${proxy.pool.include-direct:true}")
+    private boolean includeDirect;
+
+    @Value("${proxy.pool.direct-weight:1}")
+    private int directWeight;
+
+    @Value("${proxy.pool.cooldown-seconds:30}")
+    private long cooldownSeconds;
+
+    @Value("${proxy.pool.max-cooldown-seconds:600}")
+    private long maxCooldownSeconds;
+
+    @Value("${proxy.pool.eject-after-failures:3}")
+    private int ejectAfterFailures;
+
+    @Value("${proxy.pool.eject-seconds:300}")
+    private long ejectSeconds;
+
+    @Value("${proxy.pool.latency-reference-ms:30000}")
+    private long latencyReferenceMs;
+
+    private final DownloadMetrics metrics;
+    private final CircuitBreakers circuits;
+    private final Map<Platform, List<Route>> routes = new EnumMap<>(Platform.class);
+    private final Random random = new Random();
+
+    public ProxyPool(DownloadMetrics metrics, CircuitBreakers circuits) {
+        this.metrics = metrics;
+        this.circuits = circuits;
+    }
+
+    @PostConstruct
+    void init() {
+        List<String> tiktok = new ArrayList<>(tiktokProxies == null ? List.of() : tiktokProxies);
+        if (legacyTiktokProxy != null && !legacyTiktokProxy.isBlank() && !tiktok.contains(legacyTiktokProxy.trim())) {
+            tiktok.add(legacyTiktokProxy.trim());
+        }
+        routes.put(Platform.TIKTOK, parse(Platform.TIKTOK, tiktok));
+        routes.put(Platform.FACEBOOK, parse(Platform.FACEBOOK, facebookProxies));
+        routes.put(Platform.INSTAGRAM, parse(Platform.INSTAGRAM, instagramProxies));
+    }
+
+    /**
+     * Entries are {@code scheme://[user:pass@]host:port}, optionally followed by
+     * {@code #weight}. Invalid entries are skipped.
+     */
+    private List<Route> parse(Platform platform, List<String> entries) {
+        List<Route> parsed = new ArrayList<>();
+        for (String entry : entries == null ? List.<String>of() : entries) {
+            if (entry == null || entry.isBlank()) {
+                continue;
+            }
+            String url = entry.trim();
+            int weight = 1;
+            int hash = url.lastIndexOf('#');
+            if (hash > 0) {
+                try {
+                    weight = Integer.parseInt(url.substring(hash + 1).trim());
+                } catch (NumberFormatException e) {
+                    logger.warn("Invalid weight in proxy entry {}, using 1", redact(url));
+                }
+                url = url.substring(0, hash).trim();
+            }
+            try {
+                URI uri = new URI(url);
+                if (uri.getScheme() == null || !SCHEMES.contains(uri.getScheme().toLowerCase(Locale.ROOT)) || uri.getHost() == null) {
+                    throw new IllegalArgumentException("unsupported proxy URL");
+                }
+            } catch (Exception e) {
+                logger.warn("Ignoring invalid {} proxy {}: {}", platform, redact(url), e.getMessage());
+                continue;
+            }
+            parsed.add(new Route(url, redact(url), Math.max(1, weight)));
+        }
+        if (parsed.isEmpty() || includeDirect) {
+            parsed.add(new Route("", DIRECT, Math.max(1, directWeight)));
+        }
+        logger.info("Routes for {}: {}", platform, parsed.stream().map(r -> r.name + " x" + r.weight).toList());
+        return Collections.unmodifiableList(parsed);
+    }
+
+    /**
+     * Picks a route for one preview or pass-through stream.
+     *
+     * @param jobId for logging, may be {@code null}
+     */
+    public Lease lease(Platform platform, String jobId) {
+        return new Lease(platform, jobId, select(platform, null));
+    }
+
+    /**
+     * The job's lease: picked on its first attempt and reused for every retry, so the job
+     * only changes route when {@link Lease#failed} moves it.
+     */
+    public Lease lease(DownloadJob job) {
+        return job.proxyLease(() -> lease(job.getPlatform(), job.getId()));
+    }
+
+    private synchronized Route select(Platform platform, Route avoid) {
+        List<Route> candidates = routes.get(platform);
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        long now = System.nanoTime();
+        double total = 0;
+        double[] scores = new double[candidates.size()];
+        for (int i = 0; i < scores.length; i++) {
+            Route route = candidates.get(i);
+            scores[i] = route == avoid ? 0 : route.score(now, latencyReferenceMs);
+            total += scores[i];
+        }
+        if (total <= 0) {
+            // Everything is cooling down: take the route that becomes available first
+            Route soonest = null;
+            for (Route route : candidates) {
+                if (route != avoid && (soonest == null || route.availableAt - soonest.availableAt < 0)) {
+                    soonest = route;
+                }
+            }
+            return soonest != null ? soonest : avoid;
+        }
+        double pick = random.nextDouble() * total;
+        Route chosen = null;
+        for (int i = 0; i < scores.length; i++) {
+            if (scores[i] > 0) {
+                chosen = candidates.get(i);
+                pick -= scores[i];
+                if (pick < 0) {
+                    break;
+                }
+            }
+        }
+        return chosen;
+    }
+
+    private synchronized void record(Platform platform, Route route, Outcome outcome, long nanos) {
+        long now = System.nanoTime();
+        route.attempts++;
+        switch (outcome) {
+            case SUCCESS -> {
+                route.successRate = route.successRate * 0.8 + 0.2;
+                double millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+                route.latencyMs = route.latencyMs == 0 ? millis : route.latencyMs * 0.8 + millis * 0.2;
+                route.consecutiveFailures = 0;
+                route.blockStreak = 0;
+            }
+            case RATE_LIMITED, FORBIDDEN -> {
+                if (outcome == Outcome.RATE_LIMITED) {
+                    route.rateLimited++;
+                } else {
+                    route.forbidden++;
+                }
+                route.successRate *= 0.8;
+                route.blockStreak++;
+                long cooldown = Math.min(maxCooldownSeconds, cooldownSeconds << Math.min(20, route.blockStreak - 1));
+                route.availableAt = now + TimeUnit.SECONDS.toNanos(cooldown);
+                logger.warn("{} route {} got {}, cooling down for {}s", platform, route.name, outcome, cooldown);
+            }
+            case ROUTE_ERROR -> {
+                route.routeErrors++;
+                route.successRate *= 0.8;
+                if (++route.consecutiveFailures >= ejectAfterFailures) {
+                    route.availableAt = now + TimeUnit.SECONDS.toNanos(ejectSeconds);
+                    route.ejections++;
+                    route.consecutiveFailures = 0;
+                    logger.warn("{} route {} ejected for {}s after {} connection failures", platform, route.name,
+                            ejectSeconds, ejectAfterFailures);
+                }
+            }
+            case FAILURE -> route.failures++;
+        }
+        metrics.recordProxyOutcome(platform, route.name, outcome.name().toLowerCase());
+    }
+
+    /**
+     * Reads yt-dlp output (or an exception message carrying it) for signs of why a run failed.
+     */
+    public static Outcome classify(String output) {
+        return outcomeOf(FailureClass.classify(output, -1));
+    }
+
+    private static Outcome outcomeOf(FailureClass failure) {
+        return switch (failure) {
+            case RATE_LIMITED -> Outcome.RATE_LIMITED;
+            case FORBIDDEN -> Outcome.FORBIDDEN;
+            case ROUTE_ERROR -> Outcome.ROUTE_ERROR;
+            default -> Outcome.FAILURE;
+        };
+    }
+
+    private static String redact(String url) {
+        try {
+            URI uri = new URI(url);
+            return uri.getScheme() + "://" + uri.getHost() + (uri.getPort() > 0 ? ":" + uri.getPort() : "");
+        } catch (Exception e) {
+            return "invalid";
+        }
+    }
+
+    public synchronized Map<String, Object> stats() {
+        long now = System.nanoTime();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        routes.forEach((platform, list) -> {
+            List<Map<String, Object>> entries = new ArrayList<>();
+            for (Route route : list) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("route", route.name);
+                entry.put("weight", route.weight);
+                entry.put("score", Math.round(route.score(now, latencyReferenceMs) * 100) / 100.0);
+                entry.put("successRate", Math.round(route.successRate * 100) / 100.0);
+                entry.put("avgRunMs", Math.round(route.latencyMs));
+                entry.put("attempts", route.attempts);
+                entry.put("rateLimited", route.rateLimited);
+                entry.put("forbidden", route.forbidden);
+                entry.put("routeErrors", route.routeErrors);
+                entry.put("ejections", route.ejections);
+                entry.put("coolingDownSeconds", route.availableAt == 0 ? 0
+                        : Math.max(0, TimeUnit.NANOSECONDS.toSeconds(route.availableAt - now)));
+                entries.add(entry);
+            }
+            stats.put(platform.key(), entries);
+        });
+        return stats;
+    }
+
+    private static final class Route {
+        private final String url;
+        private final String name;
+        private final int weight;
+        private double successRate = 1.0;
+        private double latencyMs;
+        private int consecutiveFailures;
+        private int blockStreak;
+        /** {@code System.nanoTime()} when a cool-down or ejection ends, 0 if none was ever set. */
+        private long availableAt;
+        private long attempts;
+        private long failures;
+        private long rateLimited;
+        private long forbidden;
+        private long routeErrors;
+        private long ejections;
+
+        Route(String url, String name, int weight) {
+            this.url = url;
+            this.name = name;
+            this.weight = weight;
+        }
+
+        double score(long now, long latencyReferenceMs) {
+            if (availableAt != 0 && now - availableAt < 0) {
+                return 0;
+            }
+            return weight * Math.max(0.05, successRate) * latencyReferenceMs / (latencyReferenceMs + latencyMs);
+        }
+    }
+
+    /**
+     * A job's route. Report every attempt; a failure the route is to blame for moves the
+     * lease to another route for the next attempt. Outcomes also feed the platform's
+     * extractor circuit, except a proxy that could not be reached, which says nothing about
+     * the platform.
+     */
+    public final class Lease {
+        private final Platform platform;
+        private final String jobId;
+        private Route route;
+
+        private Lease(Platform platform, String jobId, Route route) {
+            this.platform = platform;
+            this.jobId = jobId;
+            this.route = route;
+        }
+
+        /** Proxy URL for {@code --proxy}, empty for a direct connection. */
+        public String proxy() {
+            return route.url;
+        }
+
+        /** {@code --proxy <url>}, or nothing for a direct connection. */
+        public List<String> args() {
+            return route.url.isEmpty() ? List.of() : List.of("--proxy", route.url);
+        }
+
+        public String routeName() {
+            return route.name;
+        }
+
+        public void succeeded(long nanos) {
+            record(platform, route, Outcome.SUCCESS, nanos);
+            circuits.record(platform, CircuitBreakers.Upstream.EXTRACTOR, null);
+        }
+
+        /**
+         * @return the outcome the failure was classified as
+         */
+        public Outcome failed(IOException e, long nanos) {
+            return failed(FailureClass.of(e), nanos);
+        }
+
+        /**
+         * @param output yt-dlp output or the exception message carrying it
+         * @return the outcome it was classified as
+         */
+        public Outcome failed(String output, long nanos) {
+            return failed(FailureClass.classify(output, -1), nanos);
+        }
+
+        private Outcome failed(FailureClass failure, long nanos) {
+            if (failure != FailureClass.ROUTE_ERROR || route.url.isEmpty()) {
+                circuits.record(platform, CircuitBreakers.Upstream.EXTRACTOR, failure);
+            }
+            Outcome outcome = outcomeOf(failure);
+            record(platform, route, outcome, nanos);
+            if (outcome != Outcome.FAILURE) {
+                Route next = select(platform, route);
+                if (next != route) {
+                    logger.info("Job {} moves from {} route {} to {} after {}", jobId, platform, route.name, next.name, outcome);
+                    route = next;
+                }
+            }
+            return outcome;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package video.example.com.service;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import video.example.com.util.FailureClass;
+import video.example.com.util.TokenBucket;
+
+/**
+ * Decides whether a failed download, transcode or preview is tried again, and when.
+ * Failures are classified from the tool's output ({@link FailureClass}): permanent ones
+ * give up at once, retryable ones back off exponentially with jitter (longer after a
+ * 429). Each platform has its own attempt limit and a retry budget, a token bucket that
+ * keeps an upstream outage from turning every request into several.
+ *
+ * <p>The delay is computed here. Download jobs schedule their next attempt themselves;
+ * callers without a scheduler of their own use {@link #retryAfter}, so nobody sleeps
+ * through the delay.
+ */
+@Component
+public class RetryPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetryPolicy.class);
+
+    /**
+     * @param delayMillis how long to wait before the next attempt, or -1 to give up
+     */
+    public record Decision(FailureClass failure, long delayMillis) {
+        public boolean retry() {
+            return delayMillis >= 0;
+        }
+    }
+
+    @Value("${retry.tiktok.max-attempts:3}")
+    private int tiktokMaxAttempts;
+
+    @Value("${retry.facebook.max-attempts:2}")
+    private int facebookMaxAttempts;
+
+    @Value("${retry.instagram.max-attempts:2}")
+    private int instagramMaxAttempts;
+
+    @Value("${retry.tiktok.budget-per-minute:30}")
+    private double tiktokBudgetPerMinute;
+
+    @Value("${retry.facebook.budget-per-minute:20}")
+    private double facebookBudgetPerMinute;
+
+    @Value("${retry.instagram.budget-per-minute:20}")
+    private double instagramBudgetPerMinute;
+
+    @Value("${retry.base-delay-ms:1000}")
+    private long baseDelayMs;
+
+    @Value("${retry.max-delay-ms:30000}")
+    private long maxDelayMs;
+
+    /** Lower bound of the delay after a 429, which rarely clears within a second. */
+    @Value("${retry.rate-limited-delay-ms:5000}")
+    private long rateLimitedDelayMs;
+
+    private final DownloadMetrics metrics;
+    private final Map<Platform, Integer> maxAttempts = new EnumMap<>(Platform.class);
+    private final Map<Platform, TokenBucket> budgets = new EnumMap<>(Platform.class);
+    private final Map<String, AtomicLong> counts = new ConcurrentHashMap<>();
+    private final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread t = new Thread(r, "retry-scheduler");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public RetryPolicy(DownloadMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @PostConstruct
+    void init() {
+        scheduler.setRemoveOnCancelPolicy(true);
+        configure(Platform.TIKTOK, tiktokMaxAttempts, tiktokBudgetPerMinute);
+        configure(Platform.FACEBOOK, facebookMaxAttempts, facebookBudgetPerMinute);
+        configure(Platform.INSTAGRAM, instagramMaxAttempts, instagramBudgetPerMinute);
+    }
+
+    private void configure(Platform platform, int attempts, double budgetPerMinute) {
+        maxAttempts.put(platform, Math.max(1, attempts));
+        // A minute's worth of retries can be spent at once, then they come back at the configured rate
+        budgets.put(platform, new TokenBucket((int) Math.max(1, budgetPerMinute), budgetPerMinute / 60, System.nanoTime()));
+        logger.info("Retries for {}: up to {} attempts, budget {}/min", platform, maxAttempts.get(platform), budgetPerMinute);
+    }
+
+    /**
+     * @param operation what failed, e.g. {@code download}, {@code postprocess} or {@code preview}
+     * @param attempt   the attempt that just failed, starting at 1
+     */
+    public Decision onFailure(Platform platform, String operation, int attempt, Throwable error) {
+        return decide(platform, operation, attempt, FailureClass.of(error));
+    }
+
+    /**
+     * Same as {@link #onFailure} for a run whose output and exit code are at hand.
+     */
+    public Decision onFailure(Platform platform, String operation, int attempt, String output, int exitCode) {
+        return decide(platform, operation, attempt, FailureClass.classify(output, exitCode));
+    }
+
+    private Decision decide(Platform platform, String operation, int attempt, FailureClass failure) {
+        String giveUp = null;
+        if (!failure.isRetryable()) {
+            giveUp = "not retryable";
+        } else if (attempt >= maxAttempts.get(platform)) {
+            giveUp = "out of attempts";
+        } else if (budgets.get(platform).tryAcquire(System.nanoTime()) > 0) {
+            giveUp = "retry budget exhausted";
+        }
+
+        String failureName = failure.name().toLowerCase(Locale.ROOT);
+        if (giveUp != null) {
+            count(platform, "gaveUp");
+            metrics.recordFailure(platform, operation, failureName, "give-up");
+            logger.info("{} {} attempt {} failed ({}), giving up: {}", platform, operation, attempt, failure, giveUp);
+            return new Decision(failure, -1);
+        }
+        long delay = delayMillis(attempt, failure);
+        count(platform, "retried");
+        metrics.recordFailure(platform, operation, failureName, "retry");
+        metrics.recordRetry(platform, operation);
+        logger.info("{} {} attempt {} failed ({}), retrying in {} ms", platform, operation, attempt, failure, delay);
+        return new Decision(failure, delay);
+    }
+
+    /**
+     * Exponential backoff with "equal jitter": half of the delay is fixed, the other half
+     * random, so retries of jobs that failed together spread out but never fire at once.
+     */
+    long delayMillis(int attempt, FailureClass failure) {
+        long delay = Math.min(maxDelayMs, baseDelayMs << Math.min(20, Math.max(0, attempt - 1)));
+        if (failure == FailureClass.RATE_LIMITED) {
+            delay = Math.max(delay, rateLimitedDelayMs);
+        }
+        long half = delay / 2;
+        return half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+
+    public int maxAttempts(Platform platform) {
+        return maxAttempts.get(platform);
+    }
+
+    /**
+     * Runs the next attempt on {@code executor} once {@code delayMillis} have passed. The
+     * wait is kept by the scheduler, not by a sleeping thread.
+     */
+    public <T> CompletableFuture<T> retryAfter(long delayMillis, Executor executor, Callable<T> attempt) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable run = () -> {
+            try {
+                result.complete(attempt.call());
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        };
+        try {
+            scheduler.schedule(() -> {
+                try {
+                    executor.execute(run);
+                } catch (RejectedExecutionException e) {
+                    result.completeExceptionally(e);
+                }
+            }, Math.max(0, delayMillis), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private void count(Platform platform, String what) {
+        counts.computeIfAbsent(platform.key() + "." + what, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (Platform platform : Platform.values()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("maxAttempts", maxAttempts.get(platform));
+            entry.put("retried", counts.getOrDefault(platform.key() + ".retried", new AtomicLong()).get());
+            entry.put("gaveUp", counts.getOrDefault(platform.key() + ".gaveUp", new AtomicLong()).get());
+            stats.put(platform.key(), entry);
+        }
+        stats.put("waiting", scheduler.getQueue().size());
+        return stats;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
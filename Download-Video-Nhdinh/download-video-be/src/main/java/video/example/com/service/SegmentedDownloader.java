@@ -0,0 +1,300 @@
+package video.example.com.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import video.example.com.util.ProgressEvent;
+
+/**
+ * Downloads a direct media URL inside the JVM with several parallel {@code Range}
+ * requests, each written at its offset into a preallocated file. Used when a preview
+ * already resolved a fresh CDN URL, so no yt-dlp process or extractor run is needed.
+ * Servers without range support get a single plain GET.
+ */
+@Component
+public class SegmentedDownloader {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentedDownloader.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The URL is no longer usable (403/404/410 or past its expiry); the caller should
+     * resolve it again, e.g. with yt-dlp.
+     */
+    public static class UrlExpiredException extends IOException {
+        public UrlExpiredException(String message) {
+            super(message);
+        }
+    }
+
+    @Value("${download.direct.enabled:true}")
+    private boolean enabled;
+
+    @Value("${download.direct.segments:4}")
+    private int segments;
+
+    @Value("${download.direct.min-segment-bytes:1048576}")
+    private long minSegmentBytes;
+
+    @Value("${download.direct.request-timeout-seconds:120}")
+    private long requestTimeoutSeconds;
+
+    private final SharedHttpClient sharedHttpClient;
+    private final HttpClient httpClient;
+    private final AtomicInteger segmentThreads = new AtomicInteger();
+    private final ExecutorService segmentPool = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "dl-segment-" + segmentThreads.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final AtomicLong downloads = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    public SegmentedDownloader(SharedHttpClient sharedHttpClient) {
+        this.sharedHttpClient = sharedHttpClient;
+        this.httpClient = sharedHttpClient.client();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Downloads {@code uri} to {@code target}.
+     *
+     * @param referer sent as {@code Referer}; CDNs such as TikTok's refuse requests without it
+     * @throws UrlExpiredException when the URL has expired or is refused
+     */
+    public Path download(URI uri, Path target, String referer, Consumer<ProgressEvent> progressCallback)
+            throws IOException, InterruptedException {
+        if (isExpired(uri, System.currentTimeMillis() / 1000)) {
+            throw new UrlExpiredException("Direct URL expired");
+        }
+        long startedAt = System.nanoTime();
+        // The open-ended probe doubles as the first segment, so splitting costs no extra request
+        HttpResponse<InputStream> first = send(uri, referer, "bytes=0-");
+        int status = first.statusCode();
+        try {
+            checkStatus(status);
+        } catch (IOException e) {
+            first.body().close();
+            throw e;
+        }
+        long total = status == 206 ? contentRangeTotal(first)
+                : first.headers().firstValueAsLong("Content-Length").orElse(-1);
+        int parts = status == 206 && total > 0
+                ? (int) Math.max(1, Math.min(segments, total / Math.max(1, minSegmentBytes))) : 1;
+        long segmentSize = parts == 1 ? (total > 0 ? total : Long.MAX_VALUE) : (total + parts - 1) / parts;
+
+        AtomicLong done = new AtomicLong();
+        List<Future<?>> futures = new ArrayList<>(parts);
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (parts > 1) {
+                // Preallocate so every segment can write at its own offset
+                channel.write(ByteBuffer.wrap(new byte[1]), total - 1);
+            }
+            for (int i = 1; i < parts; i++) {
+                long start = i * segmentSize;
+                long end = Math.min(total, start + segmentSize) - 1;
+                futures.add(segmentPool.submit(() -> {
+                    HttpResponse<InputStream> response = send(uri, referer, "bytes=" + start + "-" + end);
+                    try {
+                        checkStatus(response.statusCode());
+                        if (response.statusCode() != 206) {
+                            throw new IOException("Server ignored Range for bytes " + start + "-" + end);
+                        }
+                    } catch (IOException e) {
+                        response.body().close();
+                        throw e;
+                    }
+                    copy(response.body(), channel, start, end - start + 1, done);
+                    return null;
+                }));
+            }
+            futures.add(0, segmentPool.submit(() -> {
+                copy(first.body(), channel, 0, segmentSize, done);
+                return null;
+            }));
+
+            ProgressEvent progress = new ProgressEvent();
+            for (Future<?> future : futures) {
+                while (true) {
+                    try {
+                        future.get(250, TimeUnit.MILLISECONDS);
+                        break;
+                    } catch (TimeoutException e) {
+                        if (progressCallback != null) {
+                            report(progress, done.get(), total, startedAt);
+                            progressCallback.accept(progress);
+                        }
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            first.body().close();
+            Files.deleteIfExists(target);
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException io ? io : new IOException(cause);
+        } catch (InterruptedException | IOException | RuntimeException e) {
+            futures.forEach(f -> f.cancel(true));
+            first.body().close();
+            Files.deleteIfExists(target);
+            throw e;
+        }
+
+        if (total > 0 && done.get() != total) {
+            Files.deleteIfExists(target);
+            throw new IOException("Incomplete download: " + done.get() + " of " + total + " bytes");
+        }
+        downloads.incrementAndGet();
+        bytes.addAndGet(done.get());
+        logger.info("Direct download from {} finished: {} bytes, {} segments, {} ms", uri.getHost(), done.get(), parts,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        return target;
+    }
+
+    private HttpResponse<InputStream> send(URI uri, String referer, String range) throws IOException, InterruptedException {
+        HttpRequest.Builder request = sharedHttpClient.request(uri)
+                .timeout(Duration.ofSeconds(requestTimeoutSeconds))
+                .header("Range", range);
+        if (referer != null) {
+            request.header("Referer", referer);
+        }
+        return httpClient.send(request.GET().build(), HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    private static void checkStatus(int status) throws IOException {
+        if (status == 403 || status == 404 || status == 410) {
+            throw new UrlExpiredException("Direct URL returned HTTP " + status);
+        }
+        if (status != 200 && status != 206) {
+            throw new IOException("Direct URL returned HTTP " + status);
+        }
+    }
+
+    private static void copy(InputStream in, FileChannel channel, long position, long length, AtomicLong done)
+            throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+        long remaining = length;
+        try (in) {
+            int read;
+            while (remaining > 0 && (read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+                wrapped.clear().limit(read);
+                while (wrapped.hasRemaining()) {
+                    position += channel.write(wrapped, position);
+                }
+                remaining -= read;
+                done.addAndGet(read);
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new IOException("Interrupted");
+                }
+            }
+        }
+    }
+
+    private static void report(ProgressEvent progress, long done, long total, long startedAt) {
+        double seconds = Math.max(0.001, (System.nanoTime() - startedAt) / 1e9);
+        long speed = (long) (done / seconds);
+        progress.update(total > 0 ? Math.min(100.0, done * 100.0 / total) : 0, done, total, speed,
+                total > 0 && speed > 0 ? (total - done) / speed : -1);
+    }
+
+    public void recordFallback() {
+        fallbacks.incrementAndGet();
+    }
+
+    public Map<String, Object> stats() {
+        return Map.of(
+                "enabled", enabled,
+                "downloads", downloads.get(),
+                "fallbacks", fallbacks.get(),
+                "bytes", bytes.get()
+        );
+    }
+
+    private static long contentRangeTotal(HttpResponse<?> response) {
+        // Content-Range: bytes 0-1023/4096
+        String value = response.headers().firstValue("Content-Range").orElse("");
+        int slash = value.lastIndexOf('/');
+        if (slash < 0 || slash == value.length() - 1 || value.charAt(slash + 1) == '*') {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Checks the expiry that CDNs put in signed URLs: {@code expire} / {@code x-expires}
+     * (epoch seconds) and Facebook's {@code oe} (hex epoch seconds). URLs expiring within
+     * 30 seconds count as expired.
+     */
+    static boolean isExpired(URI uri, long nowSeconds) {
+        String query = uri.getRawQuery();
+        if (query == null) {
+            return false;
+        }
+        for (String param : query.split("&")) {
+            int eq = param.indexOf('=');
+            if (eq <= 0) {
+                continue;
+            }
+            String name = param.substring(0, eq);
+            String value = param.substring(eq + 1);
+            try {
+                long expiresAt;
+                if (name.equals("expire") || name.equals("x-expires")) {
+                    expiresAt = Long.parseLong(value);
+                } else if (name.equals("oe")) {
+                    expiresAt = Long.parseLong(value, 16);
+                } else {
+                    continue;
+                }
+                return expiresAt < nowSeconds + 30;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        segmentPool.shutdownNow();
+    }
+}
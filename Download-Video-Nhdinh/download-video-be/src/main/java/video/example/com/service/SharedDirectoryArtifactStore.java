@@ -0,0 +1,207 @@
+package video.example.com.service;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * {@link ArtifactStore} over a directory every node mounts (NFS, a shared volume, or just
+ * the same path when several instances run on one machine), so a file published by one
+ * node can be downloaded from any other. Same layout as {@link VideoFileCache}, but
+ * nothing is indexed in memory: lookups go to the directory, files are staged under a
+ * hidden name and renamed into place so other nodes never see half a file, and the size
+ * cap is enforced by a periodic scan that removes the oldest artifacts first.
+ */
+@Component
+@ConditionalOnProperty(name = "artifact.store", havingValue = "shared")
+public class SharedDirectoryArtifactStore implements ArtifactStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedDirectoryArtifactStore.class);
+    private static final String STAGING_PREFIX = ".";
+    /** Staged files older than this were left by a node that died mid-store. */
+    private static final long STALE_STAGING_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    @Value("${artifact.shared.dir:}")
+    private String dir;
+
+    @Value("${artifact.shared.max-size-mb:20480}")
+    private long maxSizeMb;
+
+    @Value("${artifact.shared.trim-interval-seconds:60}")
+    private long trimIntervalSeconds;
+
+    private Path root;
+    private volatile long totalBytes;
+    private volatile int entries;
+    private long trimmedAt;
+
+    private record Artifact(Path file, long size, long modified) {
+    }
+
+    @PostConstruct
+    void init() throws IOException {
+        if (dir == null || dir.isBlank()) {
+            throw new IllegalStateException("artifact.shared.dir must be set when artifact.store=shared");
+        }
+        root = Paths.get(dir);
+        Files.createDirectories(root);
+        trim();
+        logger.info("Shared artifact store at {}: {} entries, {} MB", root, entries, totalBytes / (1024 * 1024));
+    }
+
+    @Override
+    public Path getRoot() {
+        return root;
+    }
+
+    @Override
+    public Path lookup(String id) {
+        if (!ArtifactStore.isId(id)) {
+            return null;
+        }
+        try {
+            return visibleFile(root.resolve(id));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public Path store(String id, Path downloaded, String fileName) throws IOException {
+        if (!ArtifactStore.isId(id)) {
+            throw new IllegalArgumentException("Not an artifact id: " + id);
+        }
+        Path artifactDir = root.resolve(id);
+        Files.createDirectories(artifactDir);
+        // May be a copy when the download sits on another file system; the rename below is not
+        Path staged = artifactDir.resolve(STAGING_PREFIX + UUID.randomUUID() + ".tmp");
+        Files.move(downloaded, staged, StandardCopyOption.REPLACE_EXISTING);
+        Path target = artifactDir.resolve(fileName);
+        try {
+            Files.move(staged, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(staged, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        // Another node may have stored the same video under a different name meanwhile
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(artifactDir, SharedDirectoryArtifactStore::isVisibleFile)) {
+            for (Path file : files) {
+                if (!file.equals(target)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        maybeTrim();
+        return target;
+    }
+
+    @Override
+    public long sizeBytes() {
+        return totalBytes;
+    }
+
+    /** As of the last trim scan. */
+    @Override
+    public int entryCount() {
+        return entries;
+    }
+
+    private synchronized void maybeTrim() {
+        if (System.currentTimeMillis() - trimmedAt >= TimeUnit.SECONDS.toMillis(trimIntervalSeconds)) {
+            trim();
+        }
+    }
+
+    /**
+     * Scans the directory, removes stale staging files (in the artifact directories and
+     * {@link #createStagingFile()}'s) and the oldest artifacts over the size cap. Every node trims, so two may race on the same file; deleting is idempotent.
+     */
+    private synchronized void trim() {
+        trimmedAt = System.currentTimeMillis();
+        try {
+            // Other nodes may still be writing theirs, so only the old ones go
+            int staged = ArtifactStore.deleteStagingFiles(root, trimmedAt - STALE_STAGING_MILLIS);
+            if (staged > 0) {
+                logger.info("Removed {} stale staging files from {}", staged, root);
+            }
+        } catch (IOException e) {
+            logger.debug("Cannot sweep staging files in {}: {}", root, e.getMessage());
+        }
+        List<Artifact> artifacts = new ArrayList<>();
+        long total = 0;
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path artifactDir : dirs) {
+                try (Stream<Path> files = Files.list(artifactDir)) {
+                    for (Path file : (Iterable<Path>) files::iterator) {
+                        long modified = Files.getLastModifiedTime(file).toMillis();
+                        if (!isVisibleFile(file)) {
+                            if (trimmedAt - modified > STALE_STAGING_MILLIS) {
+                                Files.deleteIfExists(file);
+                            }
+                            continue;
+                        }
+                        long size = Files.size(file);
+                        artifacts.add(new Artifact(file, size, modified));
+                        total += size;
+                    }
+                } catch (IOException e) {
+                    // Removed by another node while we were looking
+                    logger.debug("Skipping {} during trim: {}", artifactDir, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Cannot scan shared artifact store {}: {}", root, e.getMessage());
+            return;
+        }
+
+        long maxBytes = maxSizeMb * 1024 * 1024;
+        artifacts.sort(Comparator.comparingLong(Artifact::modified));
+        int count = artifacts.size();
+        for (Artifact artifact : artifacts) {
+            if (total <= maxBytes) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(artifact.file());
+                Files.deleteIfExists(artifact.file().getParent());
+                logger.info("Evicted shared artifact {} ({} bytes)", artifact.file().getParent().getFileName(), artifact.size());
+            } catch (IOException e) {
+                logger.debug("Could not evict {}: {}", artifact.file(), e.getMessage());
+            }
+            total -= artifact.size();
+            count--;
+        }
+        totalBytes = total;
+        entries = count;
+    }
+
+    private Path visibleFile(Path artifactDir) throws IOException {
+        if (!Files.isDirectory(artifactDir)) {
+            return null;
+        }
+        try (Stream<Path> files = Files.list(artifactDir)) {
+            return files.filter(SharedDirectoryArtifactStore::isVisibleFile).findFirst().orElse(null);
+        }
+    }
+
+    private static boolean isVisibleFile(Path file) {
+        return !file.getFileName().toString().startsWith(STAGING_PREFIX) && Files.isRegularFile(file);
+    }
+}
@@ -0,0 +1,64 @@
+package video.example.com.service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * The one outbound HTTP client of the application. HTTP/1.1 connections are kept alive
+ * and pooled by the JDK client, so oEmbed lookups and direct downloads to the same host
+ * reuse sockets instead of paying a TCP + TLS handshake per request.
+ */
+@Component
+public class SharedHttpClient {
+
+    public static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/91.0.4472.124 Safari/537.36";
+
+    private final Duration readTimeout;
+    private final AtomicInteger threads = new AtomicInteger();
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "http-client-" + threads.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+    private final HttpClient client;
+
+    public SharedHttpClient(@Value("${http.client.connect-timeout-ms:5000}") long connectTimeoutMs,
+                            @Value("${http.client.read-timeout-ms:10000}") long readTimeoutMs) {
+        this.readTimeout = Duration.ofMillis(readTimeoutMs);
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1) // parallel range requests need separate connections, not h2 streams
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .executor(executor)
+                .build();
+    }
+
+    public HttpClient client() {
+        return client;
+    }
+
+    /**
+     * Request builder with the default read timeout (time until the response headers
+     * arrive) and a browser User-Agent. Callers streaming large bodies override the timeout.
+     */
+    public HttpRequest.Builder request(URI uri) {
+        return HttpRequest.newBuilder(uri)
+                .timeout(readTimeout)
+                .header("User-Agent", USER_AGENT);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
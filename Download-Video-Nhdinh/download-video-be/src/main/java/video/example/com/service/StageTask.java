@@ -0,0 +1,13 @@
+package video.example.com.service;
+
+import java.nio.file.Path;
+
+/**
+ * Body of one pipeline stage after the fetch, e.g. a transcode. Gets the file produced by
+ * the previous stage and returns the file for the next one, or {@code null} if it already
+ * reported its own failure through {@link DownloadJob#fail(String)}.
+ */
+@FunctionalInterface
+public interface StageTask {
+    Path run(DownloadJob job, Path input) throws Exception;
+}
@@ -0,0 +1,39 @@
+package video.example.com.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the cached toolchain probe results under {@code /actuator/health/toolchain}.
+ * Down when yt-dlp or ffmpeg is missing, since downloads cannot run without them.
+ */
+@Component("toolchain")
+public class ToolchainHealthIndicator implements HealthIndicator {
+
+    private final ToolchainRegistry toolchain;
+
+    public ToolchainHealthIndicator(ToolchainRegistry toolchain) {
+        this.toolchain = toolchain;
+    }
+
+    @Override
+    public Health health() {
+        boolean ready = toolchain.isAvailable(ToolchainRegistry.YT_DLP) && toolchain.isFfmpegAvailable();
+        Health.Builder builder = ready ? Health.up() : Health.down();
+        toolchain.snapshot().forEach((executable, info) -> {
+            Map<String, Object> detail = new LinkedHashMap<>();
+            detail.put("available", info.available());
+            if (info.version() != null) {
+                detail.put("version", info.version());
+            }
+            detail.put("features", info.features());
+            detail.put("checkedAt", info.checkedAt());
+            builder.withDetail(executable, detail);
+        });
+        return builder.build();
+    }
+}
@@ -0,0 +1,202 @@
+package video.example.com.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Knows which external tools (yt-dlp, ffmpeg, ffprobe) are installed. Tools are probed
+ * once at startup and then refreshed in the background, so request paths can check
+ * availability without spawning a process.
+ */
+@Component
+public class ToolchainRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ToolchainRegistry.class);
+
+    public static final String YT_DLP = "yt-dlp";
+    public static final String FFMPEG = "ffmpeg";
+    public static final String FFPROBE = "ffprobe";
+
+    private static final List<String> FFMPEG_ENCODERS = List.of("libx264", "libx265", "h264_nvenc", "h264_qsv", "aac");
+    private static final List<String> YT_DLP_OPTIONS = List.of("--impersonate", "--print-to-file", "--concurrent-fragments");
+
+    public record ToolInfo(String executable, boolean available, String version, Set<String> features, long checkedAt) {
+    }
+
+    @Value("${tiktok.yt.dlp.path:yt-dlp}")
+    private String tiktokYtDlpPath;
+
+    @Value("${toolchain.refresh-seconds:300}")
+    private long refreshSeconds;
+
+    @Value("${toolchain.probe-timeout-seconds:10}")
+    private long probeTimeoutSeconds;
+
+    private final Map<String, ToolInfo> tools = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    void init() {
+        refresh();
+        if (refreshSeconds > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "toolchain-probe");
+                t.setDaemon(true);
+                return t;
+            });
+            scheduler.scheduleWithFixedDelay(this::refresh, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    public void refresh() {
+        Set<String> ytDlpExecutables = new LinkedHashSet<>(List.of(YT_DLP));
+        if (tiktokYtDlpPath != null && !tiktokYtDlpPath.isBlank()) {
+            ytDlpExecutables.add(tiktokYtDlpPath);
+        }
+        for (String executable : ytDlpExecutables) {
+            tools.put(executable, probeYtDlp(executable));
+        }
+        tools.put(FFMPEG, probeFfmpeg());
+        tools.put(FFPROBE, probeVersion(FFPROBE, "-version"));
+    }
+
+    public boolean isAvailable(String executable) {
+        ToolInfo info = tools.get(executable);
+        return info != null && info.available();
+    }
+
+    public boolean isFfmpegAvailable() {
+        return isAvailable(FFMPEG);
+    }
+
+    public boolean hasFeature(String executable, String feature) {
+        ToolInfo info = tools.get(executable);
+        return info != null && info.features().contains(feature);
+    }
+
+    public ToolInfo get(String executable) {
+        return tools.get(executable);
+    }
+
+    public Map<String, ToolInfo> snapshot() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(tools));
+    }
+
+    private ToolInfo probeYtDlp(String executable) {
+        ToolInfo info = probeVersion(executable, "--version");
+        if (!info.available()) {
+            return info;
+        }
+        Set<String> features = new LinkedHashSet<>();
+        for (String line : run(executable, "--help")) {
+            for (String option : YT_DLP_OPTIONS) {
+                if (line.contains(option)) {
+                    features.add(option.substring(2));
+                }
+            }
+        }
+        return new ToolInfo(executable, true, info.version(), features, info.checkedAt());
+    }
+
+    private ToolInfo probeFfmpeg() {
+        ToolInfo info = probeVersion(FFMPEG, "-version");
+        if (!info.available()) {
+            return info;
+        }
+        Set<String> features = new LinkedHashSet<>();
+        for (String line : run(FFMPEG, "-hide_banner", "-encoders")) {
+            for (String encoder : FFMPEG_ENCODERS) {
+                if (line.contains(" " + encoder + " ")) {
+                    features.add(encoder);
+                }
+            }
+        }
+        return new ToolInfo(FFMPEG, true, info.version(), features, info.checkedAt());
+    }
+
+    private ToolInfo probeVersion(String executable, String versionFlag) {
+        List<String> output = run(executable, versionFlag);
+        long now = System.currentTimeMillis();
+        if (output == null) {
+            ToolInfo previous = tools.get(executable);
+            if (previous == null || previous.available()) {
+                logger.warn("{} is not available", executable);
+            }
+            return new ToolInfo(executable, false, null, Set.of(), now);
+        }
+        String version = output.isEmpty() ? "" : output.get(0).trim();
+        ToolInfo previous = tools.get(executable);
+        if (previous == null || !version.equals(previous.version())) {
+            logger.info("Detected {}: {}", executable, version);
+        }
+        return new ToolInfo(executable, true, version, Set.of(), now);
+    }
+
+    /**
+     * Runs the tool and returns its output lines, or {@code null} if it could not be run,
+     * exited with a non-zero code or did not exit within the probe timeout. Output goes to
+     * a file rather than a pipe, so a tool that hangs with stdout open cannot block the
+     * probe past its timeout.
+     */
+    private List<String> run(String... command) {
+        Process process = null;
+        Path output = null;
+        try {
+            output = Files.createTempFile("toolchain-probe-", ".out");
+            process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(output.toFile()).start();
+            if (!process.waitFor(probeTimeoutSeconds, TimeUnit.SECONDS)) {
+                logger.warn("Probe timed out: {}", String.join(" ", command));
+                return null;
+            }
+            if (process.exitValue() != 0) {
+                return null;
+            }
+            // Decoded leniently, a banner with stray bytes still counts
+            return new String(Files.readAllBytes(output), StandardCharsets.UTF_8).lines().toList();
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            if (process != null) {
+                process.destroyForcibly();
+            }
+            if (output != null) {
+                try {
+                    Files.deleteIfExists(output);
+                } catch (IOException e) {
+                    logger.debug("Cannot delete probe output {}: {}", output, e.getMessage());
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
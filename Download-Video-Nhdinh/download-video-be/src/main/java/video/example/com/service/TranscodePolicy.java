@@ -0,0 +1,217 @@
+package video.example.com.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import video.example.com.util.ProcessFailedException;
+import video.example.com.util.ProcessWatcher;
+
+/**
+ * Makes a downloaded file playable everywhere (H.264 + AAC in MP4) with as little CPU as
+ * possible. The streams are probed with ffprobe first: compatible files are kept as they
+ * are or only remuxed, and just the incompatible streams (usually HEVC video) are
+ * re-encoded.
+ */
+@Component
+public class TranscodePolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(TranscodePolicy.class);
+
+    private static final Set<String> COMPATIBLE_VIDEO = Set.of("h264");
+    private static final Set<String> COMPATIBLE_AUDIO = Set.of("aac", "mp3");
+
+    public enum Action {
+        /** Already H.264/AAC in MP4, nothing to do. */
+        KEEP,
+        /** Codecs are fine, only the container changes (stream copy). */
+        REMUX,
+        /** At least one stream has to be re-encoded. */
+        TRANSCODE
+    }
+
+    /**
+     * What ffprobe found in the file. {@code formatName} is ffprobe's comma separated list,
+     * e.g. {@code mov,mp4,m4a,3gp,3g2,mj2}.
+     */
+    record MediaInfo(String formatName, String videoCodec, String audioCodec) {
+    }
+
+    record Plan(Action action, boolean copyVideo, boolean copyAudio) {
+    }
+
+    @Value("${transcode.preset:veryfast}")
+    private String preset;
+
+    @Value("${transcode.crf:23}")
+    private int crf;
+
+    @Value("${transcode.threads:0}")
+    private int threads;
+
+    private final ToolchainRegistry toolchain;
+
+    public TranscodePolicy(ToolchainRegistry toolchain) {
+        this.toolchain = toolchain;
+    }
+
+    /**
+     * Returns the path of a playable MP4: either {@code input} itself or a new file next to
+     * it (the input is then deleted).
+     */
+    public Path apply(Path input, ProcessWatcher processWatcher) throws IOException, InterruptedException {
+        MediaInfo info = toolchain.isAvailable(ToolchainRegistry.FFPROBE) ? probe(input, processWatcher) : null;
+        Plan plan = plan(info);
+        logger.info("Transcode policy for {}: {} ({})", input.getFileName(), plan.action(), info);
+        if (plan.action() == Action.KEEP) {
+            return input;
+        }
+
+        Path output = input.resolveSibling(stripExtension(input.getFileName().toString()) + ".out.mp4");
+        List<String> command = new ArrayList<>(List.of(ToolchainRegistry.FFMPEG, "-hide_banner", "-loglevel", "error", "-y",
+                "-i", input.toString(), "-map", "0:v:0?", "-map", "0:a:0?"));
+        if (plan.copyVideo()) {
+            command.addAll(List.of("-c:v", "copy"));
+        } else {
+            command.addAll(List.of("-c:v", "libx264", "-preset", preset, "-crf", String.valueOf(crf), "-pix_fmt", "yuv420p"));
+        }
+        command.addAll(plan.copyAudio() ? List.of("-c:a", "copy") : List.of("-c:a", "aac", "-b:a", "128k"));
+        if (threads > 0) {
+            command.addAll(List.of("-threads", String.valueOf(threads)));
+        }
+        command.addAll(List.of("-movflags", "+faststart", output.toString()));
+
+        try {
+            run(command, ProcessWatcher.PHASE_POSTPROCESS, processWatcher);
+        } catch (ProcessFailedException e) {
+            Files.deleteIfExists(output);
+            throw new ProcessFailedException("ffmpeg " + plan.action().name().toLowerCase(Locale.ROOT) + " failed for "
+                    + input.getFileName(), e.getExitCode(), e.getOutput());
+        } catch (IOException e) {
+            Files.deleteIfExists(output);
+            throw e;
+        }
+        Path result = input.resolveSibling(stripExtension(input.getFileName().toString()) + ".mp4");
+        Files.move(output, result, StandardCopyOption.REPLACE_EXISTING);
+        if (!result.equals(input)) {
+            Files.deleteIfExists(input);
+        }
+        return result;
+    }
+
+    /**
+     * Chooses the cheapest action for the probed streams. Without probe results we cannot
+     * tell, so the file is transcoded like before.
+     */
+    static Plan plan(MediaInfo info) {
+        if (info == null) {
+            return new Plan(Action.TRANSCODE, false, false);
+        }
+        boolean copyVideo = info.videoCodec() == null || COMPATIBLE_VIDEO.contains(info.videoCodec());
+        boolean copyAudio = info.audioCodec() == null || COMPATIBLE_AUDIO.contains(info.audioCodec());
+        if (!copyVideo || !copyAudio) {
+            return new Plan(Action.TRANSCODE, copyVideo, copyAudio);
+        }
+        boolean mp4 = info.formatName() != null && List.of(info.formatName().split(",")).contains("mp4");
+        return new Plan(mp4 ? Action.KEEP : Action.REMUX, true, true);
+    }
+
+    private MediaInfo probe(Path input, ProcessWatcher processWatcher) throws InterruptedException {
+        try {
+            return parseProbe(run(List.of(ToolchainRegistry.FFPROBE, "-v", "error",
+                    "-show_entries", "format=format_name:stream=codec_type,codec_name",
+                    "-of", "default=noprint_wrappers=1", input.toString()), ProcessWatcher.PHASE_METADATA, processWatcher));
+        } catch (IOException e) {
+            logger.warn("ffprobe failed for {}, falling back to transcode: {}", input.getFileName(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Parses {@code ffprobe -of default=noprint_wrappers=1} output, where each stream prints
+     * {@code codec_name=} before {@code codec_type=}. Only the first video and audio stream
+     * count.
+     */
+    static MediaInfo parseProbe(List<String> lines) {
+        String format = null;
+        String video = null;
+        String audio = null;
+        String codec = null;
+        for (String line : lines) {
+            int eq = line.indexOf('=');
+            if (eq < 0) {
+                continue;
+            }
+            String name = line.substring(0, eq).trim();
+            String value = line.substring(eq + 1).trim().toLowerCase(Locale.ROOT);
+            switch (name) {
+                case "codec_name" -> codec = value;
+                case "codec_type" -> {
+                    if ("video".equals(value) && video == null) {
+                        video = codec;
+                    } else if ("audio".equals(value) && audio == null) {
+                        audio = codec;
+                    }
+                    codec = null;
+                }
+                case "format_name" -> format = value;
+                default -> {
+                }
+            }
+        }
+        return new MediaInfo(format, video, audio);
+    }
+
+    /**
+     * Runs the command and returns its output.
+     *
+     * @throws ProcessFailedException on a non-zero exit code
+     * @throws IOException            if the process could not be started
+     */
+    private static List<String> run(List<String> command, String phase, ProcessWatcher processWatcher)
+            throws IOException, InterruptedException {
+        Process process;
+        try {
+            process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        } catch (IOException e) {
+            logger.warn("Could not start {}: {}", command.get(0), e.getMessage());
+            throw new IOException(command.get(0) + " executable not found: " + e.getMessage(), e);
+        }
+        processWatcher.started(process, phase);
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+                processWatcher.output(line);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to read {} output: {}", command.get(0), e.getMessage());
+        }
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            String output = String.join("\n", lines);
+            logger.warn("{} exited with code {}: {}", command.get(0), exitCode, output);
+            throw new ProcessFailedException(command.get(0) + " exited with code " + exitCode, exitCode, output);
+        }
+        return lines;
+    }
+
+    private static String stripExtension(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+}
@@ -0,0 +1,186 @@
+package video.example.com.service;
+
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Turns any spelling of a video URL into the key the caches and the job engine dedupe
+ * on, so a {@code vm.tiktok.com} link, the full {@code /@user/video/<id>} URL and the same
+ * URL with tracking parameters all hit the same preview, file and in-flight job.
+ * Short links are followed once (HEAD, falling back to GET) and the answer is cached;
+ * concurrent lookups of the same short link share one request.
+ */
+@Component
+public class UrlCanonicalizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(UrlCanonicalizer.class);
+
+    @Value("${url.resolve.enabled:true}")
+    private boolean enabled;
+
+    @Value("${url.resolve.timeout-ms:3000}")
+    private long timeoutMs;
+
+    @Value("${url.resolve.ttl-seconds:86400}")
+    private long ttlSeconds;
+
+    @Value("${url.resolve.negative-ttl-seconds:60}")
+    private long negativeTtlSeconds;
+
+    @Value("${url.resolve.max-entries:10000}")
+    private int maxEntries;
+
+    private final SharedHttpClient httpClient;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    /** {@code video} completes with {@code null} when the link could not be resolved. */
+    private record Entry(CompletableFuture<VideoUrl> video, long expiresAt) {
+    }
+
+    public UrlCanonicalizer(SharedHttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    /**
+     * Cache / dedupe key of a URL, {@code <platform>:<video id>}. URLs we cannot find an id
+     * for fall back to their normalized form. May block for a short-link lookup, at most
+     * {@code url.resolve.timeout-ms}.
+     */
+    public String key(Platform platform, String url) {
+        return keyAsync(platform, url).join();
+    }
+
+    /**
+     * Same as {@link #key}, for callers resolving many URLs at once.
+     */
+    public CompletableFuture<String> keyAsync(Platform platform, String url) {
+        VideoUrl video = VideoUrl.parse(url);
+        if (video != null) {
+            return CompletableFuture.completedFuture(video.key());
+        }
+        String fallback = platform.key() + ":" + VideoUrl.normalize(url);
+        if (!enabled || !VideoUrl.isShortLink(url)) {
+            return CompletableFuture.completedFuture(fallback);
+        }
+        return resolve(VideoUrl.normalize(url))
+                .thenApply(resolved -> resolved != null && resolved.platform() == platform ? resolved.key() : fallback);
+    }
+
+    private CompletableFuture<VideoUrl> resolve(String shortUrl) {
+        long now = System.currentTimeMillis();
+        CompletableFuture<VideoUrl> future;
+        synchronized (this) {
+            Entry entry = entries.get(shortUrl);
+            if (entry != null && entry.expiresAt() > now) {
+                hits.incrementAndGet();
+                return entry.video();
+            }
+            misses.incrementAndGet();
+            future = new CompletableFuture<>();
+            entries.put(shortUrl, new Entry(future, now + ttlSeconds * 1000));
+            Iterator<Entry> it = entries.values().iterator();
+            while (entries.size() > maxEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+
+        CompletableFuture<VideoUrl> lookup = follow(shortUrl);
+        lookup.completeOnTimeout(null, timeoutMs, TimeUnit.MILLISECONDS)
+                .whenComplete((video, error) -> {
+                    if (video == null) {
+                        failures.incrementAndGet();
+                        logger.info("Could not resolve short link {}, keying it as is", shortUrl);
+                        synchronized (this) {
+                            Entry entry = entries.get(shortUrl);
+                            if (entry != null && entry.video() == future) {
+                                entries.put(shortUrl, new Entry(future, System.currentTimeMillis() + negativeTtlSeconds * 1000));
+                            }
+                        }
+                    } else {
+                        logger.debug("Short link {} is {}", shortUrl, video.key());
+                    }
+                    future.complete(video);
+                });
+        return future;
+    }
+
+    /**
+     * Follows the redirects of a short link and parses where they end. Some hosts reject
+     * HEAD or answer it without redirecting, so an unparseable landing page is retried
+     * with GET.
+     */
+    private CompletableFuture<VideoUrl> follow(String shortUrl) {
+        URI uri = URI.create(shortUrl);
+        HttpRequest head = httpClient.request(uri)
+                .timeout(Duration.ofMillis(timeoutMs))
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
+        return httpClient.client().sendAsync(head, HttpResponse.BodyHandlers.discarding())
+                .thenCompose(response -> {
+                    VideoUrl video = landing(response.uri());
+                    if (video != null) {
+                        return CompletableFuture.completedFuture(video);
+                    }
+                    HttpRequest get = httpClient.request(uri)
+                            .timeout(Duration.ofMillis(timeoutMs))
+                            .GET()
+                            .build();
+                    return httpClient.client().sendAsync(get, HttpResponse.BodyHandlers.discarding())
+                            .thenApply(r -> landing(r.uri()));
+                })
+                .exceptionally(e -> {
+                    logger.debug("Short link {} failed: {}", shortUrl, e.toString());
+                    return null;
+                });
+    }
+
+    /**
+     * The video a redirect chain ended at. Logged-out Facebook visitors land on a login
+     * page that carries the target in its {@code next} parameter.
+     */
+    private static VideoUrl landing(URI uri) {
+        VideoUrl video = VideoUrl.parse(uri.toString());
+        if (video != null || uri.getRawQuery() == null) {
+            return video;
+        }
+        for (String param : uri.getRawQuery().split("&")) {
+            if (param.startsWith("next=")) {
+                return VideoUrl.parse(URLDecoder.decode(param.substring(5), StandardCharsets.UTF_8));
+            }
+        }
+        return null;
+    }
+
+    public Map<String, Object> stats() {
+        int size;
+        synchronized (this) {
+            size = entries.size();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("size", size);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("failures", failures.get());
+        return stats;
+    }
+}
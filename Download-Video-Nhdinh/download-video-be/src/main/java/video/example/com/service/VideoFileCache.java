@@ -0,0 +1,181 @@
+package video.example.com.service;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * On-disk cache of finished downloads, the default {@link ArtifactStore}. Each entry lives
+ * in its own directory named after the artifact id, so the original file name (used for
+ * Content-Disposition) is kept. The index is LRU ordered and trimmed to the configured
+ * size cap after every insert. The index is in memory, so the directory must not be
+ * shared with other nodes; use {@link SharedDirectoryArtifactStore} for that.
+ */
+@Component
+@ConditionalOnProperty(name = "artifact.store", havingValue = "local", matchIfMissing = true)
+public class VideoFileCache implements ArtifactStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(VideoFileCache.class);
+
+    @Value("${download.cache.dir:}")
+    private String cacheDir;
+
+    @Value("${download.cache.max-size-mb:2048}")
+    private long maxSizeMb;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private Path root;
+    private long totalBytes;
+
+    private record Entry(Path file, long size) {
+    }
+
+    @PostConstruct
+    void init() throws IOException {
+        root = cacheDir == null || cacheDir.isBlank()
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "video-cache")
+                : Paths.get(cacheDir);
+        Files.createDirectories(root);
+        // Nothing else writes here, so any staging file is left from a previous run
+        int staged = ArtifactStore.deleteStagingFiles(root, Long.MAX_VALUE);
+        if (staged > 0) {
+            logger.info("Removed {} staging files left in {}", staged, root);
+        }
+
+        List<Path> existing = new ArrayList<>();
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path dir : dirs) {
+                Path file = firstFile(dir);
+                if (file != null) {
+                    existing.add(file);
+                }
+            }
+        }
+        existing.sort(Comparator.comparingLong(VideoFileCache::lastModified));
+        synchronized (this) {
+            for (Path file : existing) {
+                long size = Files.size(file);
+                entries.put(file.getParent().getFileName().toString(), new Entry(file, size));
+                totalBytes += size;
+            }
+            evict(null);
+        }
+        logger.info("Video cache at {}: {} entries, {} MB", root, entries.size(), totalBytes / (1024 * 1024));
+    }
+
+    @Override
+    public Path getRoot() {
+        return root;
+    }
+
+    @Override
+    public synchronized Path lookup(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (!Files.isRegularFile(entry.file())) {
+            entries.remove(key);
+            totalBytes -= entry.size();
+            return null;
+        }
+        return entry.file();
+    }
+
+    @Override
+    public Path store(String key, Path downloaded, String fileName) throws IOException {
+        Path dir = root.resolve(key);
+        Files.createDirectories(dir);
+        Path target = dir.resolve(fileName);
+        try {
+            Files.move(downloaded, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(downloaded, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        long size = Files.size(target);
+        synchronized (this) {
+            Entry previous = entries.put(key, new Entry(target, size));
+            if (previous != null) {
+                totalBytes -= previous.size();
+                if (!previous.file().equals(target)) {
+                    deleteQuietly(previous.file());
+                }
+            }
+            totalBytes += size;
+            evict(key);
+        }
+        return target;
+    }
+
+    @Override
+    public synchronized long sizeBytes() {
+        return totalBytes;
+    }
+
+    @Override
+    public synchronized int entryCount() {
+        return entries.size();
+    }
+
+    private void evict(String keep) {
+        long maxBytes = maxSizeMb * 1024 * 1024;
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            if (eldest.getKey().equals(keep)) {
+                continue;
+            }
+            it.remove();
+            totalBytes -= eldest.getValue().size();
+            deleteQuietly(eldest.getValue().file());
+            logger.info("Evicted cached video {} ({} bytes)", eldest.getKey(), eldest.getValue().size());
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+            Path dir = file.getParent();
+            try (Stream<Path> rest = Files.list(dir)) {
+                if (rest.findAny().isEmpty()) {
+                    Files.deleteIfExists(dir);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to delete cached file {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static Path firstFile(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(Files::isRegularFile).findFirst().orElse(null);
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package video.example.com.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Serves downloaded videos for the {@code /download} endpoints. Supports conditional
+ * requests (ETag / Last-Modified), single and multi-part byte ranges so players can seek
+ * and clients can resume. Whole files and single ranges go out via Tomcat sendfile when
+ * the connector offers it, so the kernel copies them to the socket; otherwise, and for
+ * multi-part responses, bytes are read into a buffer and written to the response stream.
+ */
+@Component
+public class VideoFileServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(VideoFileServer.class);
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final int MAX_RANGES = 16;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Inclusive byte range. */
+    record ByteRange(long start, long end) {
+        long length() {
+            return end - start + 1;
+        }
+    }
+
+    private final DownloadMetrics metrics;
+    private final ArtifactStore artifacts;
+
+    public VideoFileServer(DownloadMetrics metrics, ArtifactStore artifacts) {
+        this.metrics = metrics;
+        this.artifacts = artifacts;
+    }
+
+    /**
+     * Serves a published artifact by the id from its {@code DONE_} event. Unknown ids,
+     * including anything that looks like a path, are a 404.
+     */
+    public void serveArtifact(String id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path file = artifacts.lookup(id);
+        if (file == null) {
+            logger.warn("Artifact not found: {}", id);
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        serve(file.toFile(), request, response);
+    }
+
+    public void serve(File file, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!file.isFile()) {
+            logger.error("File not found: {}", file);
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        long length = file.length();
+        long lastModified = file.lastModified() / 1000 * 1000;
+        String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition(file.getName()));
+
+        if (notModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        List<ByteRange> ranges = null;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && ifRangeMatches(request, etag, lastModified)) {
+            ranges = parseRanges(rangeHeader, length);
+            if (ranges != null && ranges.isEmpty()) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                return;
+            }
+        }
+
+        boolean head = "HEAD".equalsIgnoreCase(request.getMethod());
+        if (ranges == null) {
+            logger.info("Serving file for download: {}", file);
+            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            response.setContentLengthLong(length);
+            if (!head) {
+                send(file, 0, length, request, response);
+            }
+        } else if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            logger.debug("Serving bytes {}-{} of {}", range.start(), range.end(), file);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + range.start() + "-" + range.end() + "/" + length);
+            response.setContentLengthLong(range.length());
+            if (!head) {
+                send(file, range.start(), range.length(), request, response);
+            }
+        } else {
+            sendMultipart(file, length, ranges, head, response);
+        }
+    }
+
+    static String contentDisposition(String name) {
+        ContentDisposition.Builder builder = ContentDisposition.attachment();
+        if (StandardCharsets.US_ASCII.newEncoder().canEncode(name)) {
+            builder.filename(name);
+        } else {
+            builder.filename(name, StandardCharsets.UTF_8);
+        }
+        return builder.build().toString();
+    }
+
+    private static boolean notModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            return etagListMatches(ifNoneMatch, etag);
+        }
+        long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince >= 0 && lastModified <= ifModifiedSince;
+    }
+
+    private static boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        long date = dateHeader(request, HttpHeaders.IF_RANGE);
+        return date >= 0 && lastModified <= date;
+    }
+
+    private static boolean etagListMatches(String header, String etag) {
+        for (String candidate : header.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*") || value.equals(etag) || value.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Parses a {@code Range} header. Returns {@code null} when the header should be ignored
+     * (malformed or too many ranges), an empty list when no range is satisfiable, and the
+     * requested ranges otherwise.
+     */
+    static List<ByteRange> parseRanges(String header, long length) {
+        if (!header.startsWith("bytes=")) {
+            return null;
+        }
+        String[] specs = header.substring(6).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<ByteRange> ranges = new ArrayList<>(specs.length);
+        for (String raw : specs) {
+            String spec = raw.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            try {
+                long start;
+                long end;
+                if (dash == 0) {
+                    long suffix = Long.parseLong(spec.substring(1));
+                    if (suffix <= 0) {
+                        continue;
+                    }
+                    start = Math.max(0, length - suffix);
+                    end = length - 1;
+                } else {
+                    start = Long.parseLong(spec.substring(0, dash));
+                    end = dash == spec.length() - 1 ? Long.MAX_VALUE : Long.parseLong(spec.substring(dash + 1));
+                    if (end < start) {
+                        return null;
+                    }
+                    end = Math.min(end, length - 1);
+                }
+                if (start < length) {
+                    ranges.add(new ByteRange(start, end));
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return ranges;
+    }
+
+    private void send(File file, long start, long count, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        metrics.recordServedBytes(count);
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.getAbsolutePath());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            OutputStream out = response.getOutputStream();
+            copy(channel, start, count, out);
+            out.flush();
+        }
+    }
+
+    private void sendMultipart(File file, long length, List<ByteRange> ranges, boolean head, HttpServletResponse response) throws IOException {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (ByteRange range : ranges) {
+            byte[] header = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + MediaType.APPLICATION_OCTET_STREAM_VALUE + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": bytes " + range.start() + "-" + range.end() + "/" + length + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(header);
+            contentLength += header.length + range.length();
+        }
+        byte[] trailer = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += trailer.length;
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if (head) {
+            return;
+        }
+        metrics.recordServedBytes(contentLength);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            OutputStream out = response.getOutputStream();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (int i = 0; i < ranges.size(); i++) {
+                out.write(partHeaders.get(i));
+                copy(channel, ranges.get(i).start(), ranges.get(i).length(), out, buffer);
+            }
+            out.write(trailer);
+            out.flush();
+        }
+    }
+
+    private static void copy(FileChannel channel, long start, long count, OutputStream out) throws IOException {
+        copy(channel, start, count, out, new byte[(int) Math.min(BUFFER_SIZE, Math.max(1, count))]);
+    }
+
+    /**
+     * Copies {@code count} bytes from {@code start} through {@code buffer}. The servlet
+     * stream is not a channel the kernel can send to, so this is a plain heap copy.
+     */
+    private static void copy(FileChannel channel, long start, long count, OutputStream out, byte[] buffer)
+            throws IOException {
+        ByteBuffer view = ByteBuffer.wrap(buffer);
+        long position = start;
+        long end = start + count;
+        while (position < end) {
+            view.clear().limit((int) Math.min(buffer.length, end - position));
+            int read = channel.read(view, position);
+            if (read < 0) {
+                break;
+            }
+            out.write(buffer, 0, read);
+            position += read;
+        }
+    }
+}
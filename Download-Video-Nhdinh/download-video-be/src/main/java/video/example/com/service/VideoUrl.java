@@ -0,0 +1,183 @@
+package video.example.com.service;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Stable identity of a video: the platform and its id on that platform. Every spelling
+ * of a TikTok, Facebook or Instagram video URL (mobile host, tracking query string,
+ * trailing slash) parses to the same {@code VideoUrl}; short links ({@code vm.tiktok.com},
+ * {@code fb.watch}, ...) carry no id and are resolved by {@link UrlCanonicalizer}.
+ *
+ * All patterns are compiled once here; request handlers must not call
+ * {@code String.matches}, which compiles the expression on every call.
+ */
+public record VideoUrl(Platform platform, String id) {
+
+    public static final int MAX_LENGTH = 2048;
+
+    // Request checks the controllers have always applied
+    private static final Map<Platform, Pattern> ACCEPTED = Map.of(
+            Platform.TIKTOK, Pattern.compile("https?://(www\\.)?(tiktok\\.com|vm\\.tiktok\\.com|vt\\.tiktok\\.com)/.*"),
+            Platform.FACEBOOK, Pattern.compile("https?://(www\\.)?(facebook\\.com|fb\\.watch|fb\\.com)/.*"),
+            Platform.INSTAGRAM, Pattern.compile("https?://(www\\.)?instagram\\.com/reel/[a-zA-Z0-9_-]+(/|\\?[^\\s]*)?"));
+
+    private static final Pattern TIKTOK_VIDEO = Pattern.compile("/(?:@[^/]+/(?:video|photo)|v|embed(?:/v2)?|share/video)/(\\d{8,25})(?:\\.html)?/?");
+    private static final Pattern TIKTOK_SHORT = Pattern.compile("/t/[A-Za-z0-9]+/?");
+    private static final Pattern FACEBOOK_VIDEO_PATH = Pattern.compile("/(?:[^/]+/videos/(?:[^/]+/)?|reel/|watch/live/)(\\d{5,25})/?");
+    private static final Pattern FACEBOOK_SHORT = Pattern.compile("/share/[rv]/[A-Za-z0-9]+/?");
+    private static final Pattern FACEBOOK_V_PARAM = Pattern.compile("(?:^|&)v=(\\d{5,25})(?:&|$)");
+    private static final Set<String> TRACKING_PARAMS = Set.of("fbclid", "igsh", "igshid", "mibextid", "rdid",
+            "is_from_webapp", "sender_device", "sender_web_id", "share_app_id", "share_link_id", "_r", "_t", "si");
+    private static final Pattern INSTAGRAM_MEDIA = Pattern.compile("/(?:[^/]+/)?(?:reels?|p|tv)/([A-Za-z0-9_-]{5,40})/?");
+
+    /**
+     * Whether a request URL passes the platform's input check.
+     */
+    public static boolean accepts(Platform platform, String url) {
+        return url != null && url.length() <= MAX_LENGTH && ACCEPTED.get(platform).matcher(url).matches();
+    }
+
+    /**
+     * Platform of a URL by host, or {@code null} if it is not one we download from.
+     */
+    public static Platform platformOf(String url) {
+        URI uri = toUri(url);
+        return uri == null ? null : platformOfHost(host(uri));
+    }
+
+    /**
+     * The video a URL points to, or {@code null} when the URL has no id in it (short links,
+     * profile pages) or is not a supported platform.
+     */
+    public static VideoUrl parse(String url) {
+        URI uri = toUri(url);
+        if (uri == null) {
+            return null;
+        }
+        String host = host(uri);
+        Platform platform = platformOfHost(host);
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        if (platform == Platform.TIKTOK) {
+            Matcher m = TIKTOK_VIDEO.matcher(path);
+            return m.matches() ? new VideoUrl(platform, m.group(1)) : null;
+        }
+        if (platform == Platform.FACEBOOK) {
+            if (host.equals("fb.watch")) {
+                return null;
+            }
+            Matcher m = FACEBOOK_VIDEO_PATH.matcher(path);
+            if (m.matches()) {
+                return new VideoUrl(platform, m.group(1));
+            }
+            String query = uri.getRawQuery();
+            if (query != null && (path.startsWith("/watch") || path.equals("/video.php"))) {
+                Matcher v = FACEBOOK_V_PARAM.matcher(query);
+                if (v.find()) {
+                    return new VideoUrl(platform, v.group(1));
+                }
+            }
+            return null;
+        }
+        if (platform == Platform.INSTAGRAM) {
+            Matcher m = INSTAGRAM_MEDIA.matcher(path);
+            return m.matches() ? new VideoUrl(platform, m.group(1)) : null;
+        }
+        return null;
+    }
+
+    /**
+     * Whether the URL is a redirecting short link that has to be followed to find the video.
+     */
+    public static boolean isShortLink(String url) {
+        URI uri = toUri(url);
+        if (uri == null) {
+            return false;
+        }
+        String host = host(uri);
+        String path = uri.getRawPath() == null ? "" : uri.getRawPath();
+        return host.equals("vm.tiktok.com") || host.equals("vt.tiktok.com") || host.equals("fb.watch")
+                || (platformOfHost(host) == Platform.TIKTOK && TIKTOK_SHORT.matcher(path).matches())
+                || (platformOfHost(host) == Platform.FACEBOOK && FACEBOOK_SHORT.matcher(path).matches());
+    }
+
+    /**
+     * The URL with the scheme and host lower-cased, {@code www.} / {@code m.} dropped, the
+     * fragment and tracking parameters removed and the remaining parameters sorted: the best
+     * key for a URL we cannot parse an id from.
+     */
+    public static String normalize(String url) {
+        URI uri = toUri(url);
+        if (uri == null) {
+            return url == null ? "" : url.trim();
+        }
+        String host = host(uri);
+        if (host.startsWith("www.") || host.startsWith("m.")) {
+            host = host.substring(host.indexOf('.') + 1);
+        }
+        String path = uri.getRawPath() == null ? "" : uri.getRawPath();
+        if (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        String query = uri.getRawQuery() == null ? "" : Arrays.stream(uri.getRawQuery().split("&"))
+                .filter(param -> !param.isEmpty() && !isTrackingParam(param.split("=", 2)[0]))
+                .sorted()
+                .collect(Collectors.joining("&"));
+        return "https://" + host + path + (query.isEmpty() ? "" : "?" + query);
+    }
+
+    /**
+     * {@code platform:id}, the form used as cache and dedupe key.
+     */
+    public String key() {
+        return platform.key() + ":" + id;
+    }
+
+    private static boolean isTrackingParam(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        return lower.startsWith("utm_") || TRACKING_PARAMS.contains(lower);
+    }
+
+    private static Platform platformOfHost(String host) {
+        if (host == null) {
+            return null;
+        }
+        if (host.equals("tiktok.com") || host.endsWith(".tiktok.com")) {
+            return Platform.TIKTOK;
+        }
+        if (host.equals("facebook.com") || host.endsWith(".facebook.com") || host.equals("fb.watch")
+                || host.equals("fb.com") || host.endsWith(".fb.com")) {
+            return Platform.FACEBOOK;
+        }
+        if (host.equals("instagram.com") || host.endsWith(".instagram.com")) {
+            return Platform.INSTAGRAM;
+        }
+        return null;
+    }
+
+    private static URI toUri(String url) {
+        if (url == null || url.length() > MAX_LENGTH) {
+            return null;
+        }
+        try {
+            URI uri = new URI(url.trim());
+            String scheme = uri.getScheme();
+            if (uri.getHost() == null || (!"http".equalsIgnoreCase(scheme) && !"https".equalsIgnoreCase(scheme))) {
+                return null;
+            }
+            return uri;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String host(URI uri) {
+        return uri.getHost().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,146 @@
+package video.example.com.util;
+
+/**
+ * Count-based circuit breaker. Closed, it records the outcome of the last
+ * {@code windowSize} calls and opens once at least {@code minCalls} of them are in and
+ * the failure rate reaches the threshold. Open, it refuses calls until the open period
+ * ends, then lets {@code halfOpenProbes} calls through: if they all succeed it closes,
+ * the first failure opens it again for twice as long (up to {@code maxOpenNanos}).
+ * Time is passed in so callers (and tests) control the clock.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int minCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private final long maxOpenNanos;
+    private final int halfOpenProbes;
+    private final boolean[] window;
+    private int windowNext;
+    private int windowCount;
+    private int windowFailures;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private long currentOpenNanos;
+    private int probesStarted;
+    private int probesSucceeded;
+    private long probeStartedAt;
+
+    public CircuitBreaker(int windowSize, int minCalls, double failureRateThreshold, long openNanos, long maxOpenNanos,
+                          int halfOpenProbes) {
+        this.window = new boolean[Math.max(1, windowSize)];
+        this.minCalls = Math.max(1, Math.min(minCalls, window.length));
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = Math.max(1, openNanos);
+        this.maxOpenNanos = Math.max(this.openNanos, maxOpenNanos);
+        this.halfOpenProbes = Math.max(1, halfOpenProbes);
+        this.currentOpenNanos = this.openNanos;
+    }
+
+    /**
+     * Asks to make a call. Half-open, this takes one of the probe slots; a probe that never
+     * reports back frees its slot after one open period.
+     */
+    public synchronized boolean tryAcquire(long nowNanos) {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.OPEN) {
+            if (nowNanos - openedAt < currentOpenNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probesStarted = 0;
+            probesSucceeded = 0;
+        }
+        if (probesStarted >= halfOpenProbes) {
+            if (nowNanos - probeStartedAt < currentOpenNanos) {
+                return false;
+            }
+            // The outstanding probes are presumed lost
+            probesStarted = probesSucceeded;
+        }
+        probesStarted++;
+        probeStartedAt = nowNanos;
+        return true;
+    }
+
+    /**
+     * Whether calls are being refused right now, without taking a probe slot.
+     */
+    public synchronized boolean isOpen(long nowNanos) {
+        return state == State.OPEN && nowNanos - openedAt < currentOpenNanos;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++probesSucceeded >= halfOpenProbes) {
+                close();
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure(long nowNanos) {
+        if (state == State.HALF_OPEN) {
+            open(nowNanos, Math.min(maxOpenNanos, currentOpenNanos * 2));
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (windowCount >= minCalls && (double) windowFailures / windowCount >= failureRateThreshold) {
+                open(nowNanos, openNanos);
+            }
+        }
+        // Open: a late result of a call started before the circuit opened, nothing to learn
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Nanoseconds until an open circuit lets a probe through, 0 if it is not open.
+     */
+    public synchronized long retryAfterNanos(long nowNanos) {
+        return state == State.OPEN ? Math.max(0, currentOpenNanos - (nowNanos - openedAt)) : 0;
+    }
+
+    public synchronized double failureRate() {
+        return windowCount == 0 ? 0 : (double) windowFailures / windowCount;
+    }
+
+    private void record(boolean failure) {
+        if (windowCount == window.length) {
+            if (window[windowNext]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowNext] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowNext = (windowNext + 1) % window.length;
+    }
+
+    private void open(long nowNanos, long duration) {
+        state = State.OPEN;
+        openedAt = nowNanos;
+        currentOpenNanos = duration;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        currentOpenNanos = openNanos;
+        windowNext = 0;
+        windowCount = 0;
+        windowFailures = 0;
+    }
+}
@@ -0,0 +1,21 @@
+package video.example.com.util;
+
+import java.io.IOException;
+
+/**
+ * A call was not made because the upstream's circuit breaker is open. The message is
+ * meant for users.
+ */
+public class CircuitOpenException extends IOException {
+
+    private final long retryAfterSeconds;
+
+    public CircuitOpenException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -1,16 +1,22 @@
 package video.example.com.util;
 
-import java.io.BufferedReader;
-import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import java.util.function.Consumer;
 
 public class FacebookVideoUtil {
 
+    /**
+     * @param fileName tên file theo tiêu đề video, để lưu vào kho artifact
+     */
+    public record Download(Path file, String fileName) {
+    }
+
     // Hàm tiện ích để làm sạch tiêu đề thành tên file hợp lệ
-    private static String sanitizeFileName(String title) {
+    public static String sanitizeFileName(String title) {
         if (title == null || title.trim().isEmpty()) {
             return UUID.randomUUID().toString();
         }
@@ -19,62 +25,43 @@ public class FacebookVideoUtil {
         return sanitized.isEmpty() ? UUID.randomUUID().toString() : sanitized;
     }
 
-    public static String downloadVideoUsingYtDlp(String fbUrl, String providedTitle, Consumer<String> progressCallback) throws IOException {
-        // Nếu không có tiêu đề từ client, thử lấy từ yt-dlp
-        String videoTitle = providedTitle;
-        if (videoTitle == null || videoTitle.trim().isEmpty()) {
-            ProcessBuilder titlePb = new ProcessBuilder("yt-dlp", "--get-title", fbUrl);
-            titlePb.redirectErrorStream(true);
-            Process titleProcess = titlePb.start();
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(titleProcess.getInputStream(), "UTF-8"))) {
-                videoTitle = reader.readLine();
-            } catch (IOException e) {
-                System.err.println("Failed to read video title: " + e.getMessage());
-                videoTitle = null; // Fallback to null if reading fails
-            }
-            try {
-                titleProcess.waitFor();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt(); // Khôi phục trạng thái ngắt
-                System.err.println("Interrupted while waiting for title process: " + e.getMessage());
-                videoTitle = null; // Fallback to null if interrupted
-            }
-        }
-
-        // Tạo tên file từ tiêu đề
-        String fileName = sanitizeFileName(videoTitle) + ".mp4";
-        String outputPath = System.getProperty("java.io.tmpdir") + File.separator + fileName;
+    // Lệnh yt-dlp ghi thẳng video ra stdout (dùng cho chế độ pass-through)
+    public static List<String> buildStreamCommand(String fbUrl, String proxy) {
+        List<String> command = buildDownloadCommand(proxy);
+        command.addAll(List.of("--newline", "-o", "-", fbUrl));
+        return command;
+    }
 
-        ProcessBuilder pb = new ProcessBuilder(
-                "yt-dlp", "--newline", "-f", "best", "-o", outputPath, fbUrl
-        );
-        pb.redirectErrorStream(true);
+    // Phần đầu lệnh tải (chưa có -o và URL), dùng chung cho tải lẻ và tải hàng loạt; proxy rỗng = kết nối trực tiếp
+    public static List<String> buildDownloadCommand(String proxy) {
+        List<String> command = new ArrayList<>(List.of("yt-dlp", "-f", "best"));
+        if (proxy != null && !proxy.isEmpty()) {
+            command.addAll(List.of("--proxy", proxy));
+        }
+        return command;
+    }
 
-        Process process = pb.start();
+    /**
+     * @param downloaded where yt-dlp writes; if a {@code .part} file of an earlier attempt
+     *                   is there, yt-dlp continues it
+     */
+    public static Download downloadVideoUsingYtDlp(String fbUrl, String providedTitle, String proxy, Path downloaded,
+                                                   Consumer<ProgressEvent> progressCallback, ProcessWatcher processWatcher) throws IOException {
+        // Tiêu đề lấy luôn từ JSON của cùng lần chạy yt-dlp
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                System.out.println("[yt-dlp] " + line);
-                if (progressCallback != null && line.matches(".*?(\\d{1,3})\\.\\d+%.*")) {
-                    String percent = line.replaceAll(".*?(\\d{1,3})\\.\\d+%.*", "$1");
-                    progressCallback.accept("PROGRESS_" + percent);
-                }
-            }
-        } catch (Exception e) {
-            throw new IOException("Download failed: " + e.getMessage(), e);
+        List<String> command = buildDownloadCommand(proxy);
+        command.addAll(YtDlpRunner.DOWNLOAD_WITH_METADATA);
+        command.addAll(List.of("-o", downloaded.toString(), fbUrl));
+        YtDlpRunner.Result result = YtDlpRunner.run(command, ProcessWatcher.PHASE_DOWNLOAD, progressCallback, processWatcher);
+        if (result.exitCode() != 0) {
+            throw new ProcessFailedException("yt-dlp exited with code " + result.exitCode(), result.exitCode(), result.output().toString());
         }
 
-        try {
-            int exitCode = process.waitFor();
-            if (exitCode != 0) {
-                throw new IOException("yt-dlp exited with code " + exitCode);
-            }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new IOException("Interrupted during download", e);
+        // Tên file theo tiêu đề chỉ dùng khi lưu; file tải về giữ nguyên vì job khác có thể trùng tiêu đề
+        String videoTitle = providedTitle;
+        if ((videoTitle == null || videoTitle.trim().isEmpty()) && result.metadata() != null) {
+            videoTitle = result.metadata().title();
         }
-
-        return outputPath;
+        return new Download(downloaded, sanitizeFileName(videoTitle) + ".mp4");
     }
 }
@@ -0,0 +1,123 @@
+package video.example.com.util;
+
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Why a yt-dlp or ffmpeg run (or an HTTP call) failed, read from its output, exit code or
+ * exception. Decides whether trying again can help.
+ */
+public enum FailureClass {
+    /** HTTP 429 from upstream: this exit IP is being throttled. */
+    RATE_LIMITED(true),
+    /** Retrying cannot help: private, removed or region-locked video, bad URL, missing tool, broken file. */
+    PERMANENT(false),
+    /** HTTP 403 from upstream: this exit IP is blocked or flagged. */
+    FORBIDDEN(true),
+    /** The proxy or upstream host could not be reached or timed out. */
+    ROUTE_ERROR(true),
+    /** Network hiccup, upstream 5xx, or a process killed by its timeout. */
+    TRANSIENT(true),
+    /** The job was cancelled or the thread interrupted. */
+    CANCELLED(false),
+    /** Not attempted: the upstream's circuit breaker is open. */
+    CIRCUIT_OPEN(false),
+    /** Nothing recognisable in the output. */
+    UNKNOWN(true);
+
+    // Checked in declaration order, so a 429 wins over the "not available" yt-dlp prints with it
+    private static final List<String> RATE_LIMITED_SIGNS = List.of(
+            "http error 429", "too many requests", "rate-limit reached", "rate limit exceeded");
+    private static final List<String> PERMANENT_SIGNS = List.of(
+            "private video", "video is private", "this video is private", "video unavailable",
+            "video is unavailable", "this video is not available", "content is not available",
+            "has been removed", "no longer available", "does not exist", "not available in your country",
+            "geo restrict", "unsupported url", "is not a valid url", "http error 404", "http error 410",
+            "login required", "no video formats found", "requested format is not available",
+            "executable not found", "invalid data found when processing input", "moov atom not found",
+            "unknown encoder", "does not contain any stream");
+    private static final List<String> FORBIDDEN_SIGNS = List.of("http error 403", "403: forbidden");
+    private static final List<String> ROUTE_SIGNS = List.of(
+            "proxyerror", "unable to connect to proxy", "tunnel connection failed", "cannot connect to proxy",
+            "connection refused", "timed out");
+    private static final List<String> TRANSIENT_SIGNS = List.of(
+            "http error 5", "connection reset", "connection aborted", "remote end closed", "incompleteread",
+            "temporary failure in name resolution", "network is unreachable", "broken pipe",
+            "resource temporarily unavailable", "unable to download webpage");
+
+    /** yt-dlp's exit code for invalid options. */
+    private static final int EXIT_USAGE = 2;
+    /** 128 + SIGKILL / SIGTERM: the process supervisor killed a run that hung. */
+    private static final int EXIT_KILLED = 137;
+    private static final int EXIT_TERMINATED = 143;
+
+    private final boolean retryable;
+
+    FailureClass(boolean retryable) {
+        this.retryable = retryable;
+    }
+
+    public boolean isRetryable() {
+        return retryable;
+    }
+
+    /**
+     * @param exitCode the process exit code, or -1 if unknown
+     */
+    public static FailureClass classify(String output, int exitCode) {
+        String text = output == null ? "" : output.toLowerCase(Locale.ROOT);
+        if (containsAny(text, RATE_LIMITED_SIGNS)) {
+            return RATE_LIMITED;
+        }
+        if (containsAny(text, PERMANENT_SIGNS) || exitCode == EXIT_USAGE) {
+            return PERMANENT;
+        }
+        if (containsAny(text, FORBIDDEN_SIGNS)) {
+            return FORBIDDEN;
+        }
+        if (containsAny(text, ROUTE_SIGNS)) {
+            return ROUTE_ERROR;
+        }
+        if (containsAny(text, TRANSIENT_SIGNS) || exitCode == EXIT_KILLED || exitCode == EXIT_TERMINATED) {
+            return TRANSIENT;
+        }
+        return UNKNOWN;
+    }
+
+    public static FailureClass of(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof InterruptedException) {
+                return CANCELLED;
+            }
+            if (t instanceof CircuitOpenException) {
+                return CIRCUIT_OPEN;
+            }
+            if (t instanceof ProcessFailedException failed) {
+                return classify(failed.getOutput(), failed.getExitCode());
+            }
+            if (t instanceof ConnectException) {
+                return ROUTE_ERROR;
+            }
+            if (t instanceof SocketTimeoutException || t instanceof HttpTimeoutException) {
+                return TRANSIENT;
+            }
+            if (t instanceof InterruptedIOException) {
+                return CANCELLED;
+            }
+        }
+        return error == null ? UNKNOWN : classify(error.getMessage(), -1);
+    }
+
+    private static boolean containsAny(String text, List<String> signs) {
+        for (String sign : signs) {
+            if (text.contains(sign)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
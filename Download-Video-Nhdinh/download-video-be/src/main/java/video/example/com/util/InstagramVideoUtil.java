@@ -1,47 +1,45 @@
 package video.example.com.util;
 
-import java.io.BufferedReader;
-import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.util.UUID;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Consumer;
 
 public class InstagramVideoUtil {
 
-    public static String downloadVideoUsingYtDlp(String instaUrl, Consumer<String> progressCallback) throws IOException {
-        String outputPath = System.getProperty("java.io.tmpdir") + File.separator + UUID.randomUUID() + ".mp4";
-
-        ProcessBuilder pb = new ProcessBuilder(
-                "yt-dlp", "--newline", "-f", "best", "-o", outputPath, instaUrl
-        );
-        pb.redirectErrorStream(true);
-
-        Process process = pb.start();
+    public static List<String> buildStreamCommand(String instaUrl, String proxy) {
+        List<String> command = buildDownloadCommand(proxy);
+        command.addAll(List.of("--newline", "-o", "-", instaUrl));
+        return command;
+    }
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                System.out.println("[yt-dlp] " + line);
-                if (progressCallback != null && line.matches(".*?(\\d{1,3})\\.\\d+%.*")) {
-                    String percent = line.replaceAll(".*?(\\d{1,3})\\.\\d+%.*", "$1");
-                    progressCallback.accept("PROGRESS_" + percent);
-                }
-            }
-        } catch (Exception e) {
-            throw new IOException("Download failed: " + e.getMessage(), e);
+    /**
+     * @param proxy proxy URL for {@code --proxy}, empty for a direct connection
+     */
+    public static List<String> buildDownloadCommand(String proxy) {
+        List<String> command = new ArrayList<>(List.of("yt-dlp", "-f", "best"));
+        if (proxy != null && !proxy.isEmpty()) {
+            command.addAll(List.of("--proxy", proxy));
         }
+        return command;
+    }
 
-        try {
-            int exitCode = process.waitFor();
-            if (exitCode != 0) {
-                throw new IOException("yt-dlp exited with code " + exitCode);
-            }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new IOException("Interrupted", e);
+    /**
+     * @param output where yt-dlp writes; a {@code .part} file left there by an earlier
+     *               attempt is continued
+     */
+    public static String downloadVideoUsingYtDlp(String instaUrl, String proxy, Path output, Consumer<ProgressEvent> progressCallback,
+                                                 ProcessWatcher processWatcher) throws IOException {
+        String outputPath = output.toString();
+
+        List<String> command = buildDownloadCommand(proxy);
+        command.addAll(YtDlpRunner.DOWNLOAD_WITH_METADATA);
+        command.addAll(List.of("-o", outputPath, instaUrl));
+        YtDlpRunner.Result result = YtDlpRunner.run(command, ProcessWatcher.PHASE_DOWNLOAD, progressCallback, processWatcher);
+        if (result.exitCode() != 0) {
+            throw new ProcessFailedException("yt-dlp exited with code " + result.exitCode(), result.exitCode(), result.output().toString());
         }
-
         return outputPath;
     }
 }
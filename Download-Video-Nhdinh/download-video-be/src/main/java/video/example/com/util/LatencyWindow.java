@@ -0,0 +1,44 @@
+package video.example.com.util;
+
+import java.util.Arrays;
+
+/**
+ * The last {@code capacity} latency samples in a ring buffer, for percentile queries
+ * that follow recent behaviour rather than all-time history.
+ */
+public class LatencyWindow {
+
+    private final long[] samples;
+    private int next;
+    private int size;
+
+    public LatencyWindow(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    public synchronized void record(long millis) {
+        samples[next] = millis;
+        next = (next + 1) % samples.length;
+        size = Math.min(size + 1, samples.length);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Nearest-rank percentile, {@code quantile} in (0, 1]; {@code -1} when there are no samples.
+     */
+    public long percentile(double quantile) {
+        long[] copy;
+        synchronized (this) {
+            if (size == 0) {
+                return -1;
+            }
+            copy = Arrays.copyOf(samples, size);
+        }
+        Arrays.sort(copy);
+        int rank = (int) Math.ceil(quantile * copy.length);
+        return copy[Math.max(0, Math.min(copy.length - 1, rank - 1))];
+    }
+}
@@ -0,0 +1,48 @@
+package video.example.com.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the last {@code capacity} characters of a process's output, line by line, so
+ * a chatty {@code --verbose} run costs a fixed amount of heap. Older lines are dropped
+ * whole; a single line longer than the capacity keeps only its end.
+ */
+public class OutputRingBuffer {
+
+    private final int capacity;
+    private final ArrayDeque<String> lines = new ArrayDeque<>();
+    private int chars;
+    private long droppedLines;
+
+    public OutputRingBuffer(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    public synchronized void append(String line) {
+        if (line.length() > capacity) {
+            line = line.substring(line.length() - capacity);
+        }
+        lines.addLast(line);
+        chars += line.length();
+        while (chars > capacity) {
+            chars -= lines.removeFirst().length();
+            droppedLines++;
+        }
+    }
+
+    public synchronized List<String> lines() {
+        return new ArrayList<>(lines);
+    }
+
+    public synchronized long droppedLines() {
+        return droppedLines;
+    }
+
+    @Override
+    public synchronized String toString() {
+        String joined = String.join("\n", lines);
+        return droppedLines > 0 ? "[" + droppedLines + " earlier lines dropped]\n" + joined : joined;
+    }
+}
@@ -0,0 +1,28 @@
+package video.example.com.util;
+
+import java.io.IOException;
+
+/**
+ * A child process (yt-dlp, ffmpeg) exited with an error. The message stays short enough
+ * to show to users; the exit code and output tail are kept for logs and for
+ * {@link FailureClass#of} to tell why the run failed.
+ */
+public class ProcessFailedException extends IOException {
+
+    private final int exitCode;
+    private final String output;
+
+    public ProcessFailedException(String message, int exitCode, String output) {
+        super(message);
+        this.exitCode = exitCode;
+        this.output = output != null ? output : "";
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+}
@@ -0,0 +1,22 @@
+package video.example.com.util;
+
+/**
+ * Told about every child process the utils start, so the caller can enforce timeouts
+ * and kill the process tree on cancellation, and about every line the process prints,
+ * so the caller can keep it for diagnostics.
+ */
+@FunctionalInterface
+public interface ProcessWatcher {
+
+    String PHASE_METADATA = "metadata";
+    String PHASE_DOWNLOAD = "download";
+    String PHASE_POSTPROCESS = "postprocess";
+
+    ProcessWatcher NONE = (process, phase) -> {
+    };
+
+    void started(Process process, String phase);
+
+    default void output(String line) {
+    }
+}
@@ -0,0 +1,85 @@
+package video.example.com.util;
+
+/**
+ * Mutable snapshot of one yt-dlp progress line. Readers reuse a single instance per
+ * process, so consumers must copy what they need instead of keeping a reference.
+ */
+public final class ProgressEvent {
+
+    private double percent;
+    private long downloadedBytes;
+    private long totalBytes;
+    private long speedBytesPerSecond;
+    private long etaSeconds;
+
+    void reset() {
+        percent = 0;
+        downloadedBytes = -1;
+        totalBytes = -1;
+        speedBytesPerSecond = -1;
+        etaSeconds = -1;
+    }
+
+    public double getPercent() {
+        return percent;
+    }
+
+    void setPercent(double percent) {
+        this.percent = percent;
+    }
+
+    public long getDownloadedBytes() {
+        return downloadedBytes;
+    }
+
+    void setDownloadedBytes(long downloadedBytes) {
+        this.downloadedBytes = downloadedBytes;
+    }
+
+    /** Total size in bytes, or -1 when yt-dlp does not know it yet. */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    public long getSpeedBytesPerSecond() {
+        return speedBytesPerSecond;
+    }
+
+    void setSpeedBytesPerSecond(long speedBytesPerSecond) {
+        this.speedBytesPerSecond = speedBytesPerSecond;
+    }
+
+    public long getEtaSeconds() {
+        return etaSeconds;
+    }
+
+    void setEtaSeconds(long etaSeconds) {
+        this.etaSeconds = etaSeconds;
+    }
+
+    /**
+     * Fills the event from a downloader other than yt-dlp; unknown values are -1.
+     */
+    public void update(double percent, long downloadedBytes, long totalBytes, long speedBytesPerSecond, long etaSeconds) {
+        this.percent = percent;
+        this.downloadedBytes = downloadedBytes;
+        this.totalBytes = totalBytes;
+        this.speedBytesPerSecond = speedBytesPerSecond;
+        this.etaSeconds = etaSeconds;
+    }
+
+    public String toJson() {
+        return new StringBuilder(96)
+                .append("{\"percent\":").append(Math.round(percent * 10) / 10.0)
+                .append(",\"downloadedBytes\":").append(downloadedBytes)
+                .append(",\"totalBytes\":").append(totalBytes)
+                .append(",\"speed\":").append(speedBytesPerSecond)
+                .append(",\"eta\":").append(etaSeconds)
+                .append('}')
+                .toString();
+    }
+}
@@ -0,0 +1,31 @@
+package video.example.com.util;
+
+/**
+ * Decides which progress ticks are worth sending to clients: at most one per interval,
+ * only when the whole-number percent changed, and always the first 100%.
+ */
+public final class ProgressThrottle {
+
+    private final long minIntervalNanos;
+    private long lastEmitNanos;
+    private int lastPercent = -1;
+
+    public ProgressThrottle(int maxEventsPerSecond) {
+        this.minIntervalNanos = maxEventsPerSecond > 0 ? 1_000_000_000L / maxEventsPerSecond : 0;
+    }
+
+    public synchronized boolean shouldEmit(ProgressEvent event) {
+        int percent = (int) event.getPercent();
+        if (percent == lastPercent) {
+            return false;
+        }
+        long now = System.nanoTime();
+        boolean finished = percent >= 100;
+        if (!finished && lastPercent >= 0 && now - lastEmitNanos < minIntervalNanos) {
+            return false;
+        }
+        lastPercent = percent;
+        lastEmitNanos = now;
+        return true;
+    }
+}
@@ -0,0 +1,60 @@
+package video.example.com.util;
+
+/**
+ * Classic token bucket: up to {@code capacity} requests in a burst, refilled at a steady
+ * rate. Time is passed in so callers (and tests) control the clock.
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long refilledAt;
+
+    public TokenBucket(int capacity, double tokensPerSecond, long nowNanos) {
+        this.capacity = Math.max(1, capacity);
+        this.tokensPerNano = tokensPerSecond / 1_000_000_000.0;
+        this.tokens = this.capacity;
+        this.refilledAt = nowNanos;
+    }
+
+    /**
+     * Takes a token if one is available.
+     *
+     * @return 0 if the request may proceed, otherwise the nanoseconds until a token is free;
+     *         {@link Long#MAX_VALUE} if the rate is zero and the bucket never refills
+     */
+    public synchronized long tryAcquire(long nowNanos) {
+        refill(nowNanos);
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return tokensPerNano <= 0 ? Long.MAX_VALUE : (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    /**
+     * Gives back a token taken by {@link #tryAcquire} for a request that was not served
+     * after all.
+     */
+    public synchronized void refund() {
+        tokens = Math.min(capacity, tokens + 1);
+    }
+
+    /**
+     * Whether the bucket has been idle long enough to be full again, i.e. dropping it
+     * loses nothing.
+     */
+    public synchronized boolean isFull(long nowNanos) {
+        refill(nowNanos);
+        return tokens >= capacity;
+    }
+
+    private void refill(long nowNanos) {
+        long elapsed = nowNanos - refilledAt;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+            refilledAt = nowNanos;
+        }
+    }
+}
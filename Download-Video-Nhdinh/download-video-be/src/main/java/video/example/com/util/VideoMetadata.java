@@ -0,0 +1,58 @@
+package video.example.com.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The parts of yt-dlp's {@code --dump-json} info dict we use. {@code url} is the direct
+ * media URL when a single format was selected, otherwise {@code null};
+ * {@code originalUrl} is the URL as it was passed to yt-dlp.
+ */
+public record VideoMetadata(String id, String title, Double duration, String ext, String thumbnail,
+                            String url, String originalUrl, List<Format> formats) {
+
+    public record Format(String formatId, String ext, String vcodec, String acodec, Integer width, Integer height,
+                         Long filesize, String url) {
+    }
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Parses one JSON line printed by yt-dlp; returns {@code null} if the line is not an
+     * info dict.
+     */
+    public static VideoMetadata parse(String line) {
+        if (line == null || line.isEmpty() || line.charAt(0) != '{') {
+            return null;
+        }
+        JsonNode root;
+        try {
+            root = MAPPER.readTree(line);
+        } catch (Exception e) {
+            return null;
+        }
+        if (!root.hasNonNull("id") && !root.hasNonNull("title")) {
+            return null;
+        }
+        List<Format> formats = new ArrayList<>();
+        for (JsonNode f : root.path("formats")) {
+            formats.add(new Format(text(f, "format_id"), text(f, "ext"), text(f, "vcodec"), text(f, "acodec"),
+                    f.hasNonNull("width") ? f.get("width").asInt() : null,
+                    f.hasNonNull("height") ? f.get("height").asInt() : null,
+                    f.hasNonNull("filesize") ? f.get("filesize").asLong()
+                            : f.hasNonNull("filesize_approx") ? f.get("filesize_approx").asLong() : null,
+                    text(f, "url")));
+        }
+        return new VideoMetadata(text(root, "id"), text(root, "title"),
+                root.hasNonNull("duration") ? root.get("duration").asDouble() : null,
+                text(root, "ext"), text(root, "thumbnail"), text(root, "url"), text(root, "original_url"), formats);
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+}
@@ -0,0 +1,82 @@
+package video.example.com.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Downloads many URLs with a single yt-dlp process ({@code -a <batch file>}), so the
+ * interpreter and extractor start-up is paid once per batch instead of once per URL.
+ * Output lines are attributed to the item whose info dict was printed last; a marker
+ * printed after each file is moved into place reports where it ended up.
+ */
+public final class YtDlpBatchRunner {
+
+    private static final String DONE_MARKER = "BATCH_DONE\t";
+
+    public interface Listener {
+        void started(String url, VideoMetadata metadata);
+
+        void progress(String url, ProgressEvent progress);
+
+        void downloaded(String url, Path file);
+    }
+
+    private YtDlpBatchRunner() {
+    }
+
+    /**
+     * @param command  platform command prefix, e.g. {@link TiktokVideoUtil#buildDownloadCommand}
+     * @param urls     URLs exactly as they should be reported back to the listener
+     * @param workDir  empty directory for the batch file and the downloads
+     * @return yt-dlp's exit code; non-zero when at least one item failed
+     */
+    public static int run(List<String> command, List<String> urls, Path workDir, Listener listener,
+                          ProcessWatcher processWatcher) throws IOException, InterruptedException {
+        Path batchFile = workDir.resolve("urls.txt");
+        Files.write(batchFile, urls, StandardCharsets.UTF_8);
+
+        List<String> full = new ArrayList<>(command);
+        full.addAll(YtDlpRunner.DOWNLOAD_WITH_METADATA);
+        full.addAll(List.of(
+                "--ignore-errors",
+                "--print", "after_move:" + DONE_MARKER + "%(original_url)s\t%(filepath)s",
+                "-o", workDir.resolve("%(id)s.%(ext)s").toString(),
+                "-a", batchFile.toString()));
+
+        Process process = new ProcessBuilder(full).redirectErrorStream(true).start();
+        processWatcher.started(process, ProcessWatcher.PHASE_DOWNLOAD);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            ProgressEvent progress = new ProgressEvent();
+            String current = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(DONE_MARKER)) {
+                    int tab = line.indexOf('\t', DONE_MARKER.length());
+                    if (tab > 0) {
+                        listener.downloaded(line.substring(DONE_MARKER.length(), tab), Paths.get(line.substring(tab + 1)));
+                    }
+                    continue;
+                }
+                VideoMetadata metadata = VideoMetadata.parse(line);
+                if (metadata != null) {
+                    current = metadata.originalUrl();
+                    listener.started(current, metadata);
+                    continue;
+                }
+                processWatcher.output(line);
+                if (current != null && YtDlpProgressParser.parse(line, progress)) {
+                    listener.progress(current, progress);
+                }
+            }
+        }
+        return process.waitFor();
+    }
+}
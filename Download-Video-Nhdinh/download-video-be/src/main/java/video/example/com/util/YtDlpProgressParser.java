@@ -0,0 +1,180 @@
+package video.example.com.util;
+
+/**
+ * Parses yt-dlp {@code --newline} progress lines such as
+ * {@code [download]  45.3% of ~ 12.34MiB at 1.20MiB/s ETA 00:07 (frag 3/10)} by scanning
+ * characters directly: no regex, and nothing is allocated per line.
+ */
+public final class YtDlpProgressParser {
+
+    private static final String PREFIX = "[download]";
+
+    private YtDlpProgressParser() {
+    }
+
+    /**
+     * Fills {@code out} from the line and returns {@code true} if it was a progress line.
+     */
+    public static boolean parse(CharSequence line, ProgressEvent out) {
+        // Only the percentage right after the prefix counts: --verbose lines carry URLs full of %XX escapes
+        if (!startsWith(line, PREFIX)) {
+            return false;
+        }
+        int start = skipSpaces(line, PREFIX.length());
+        int percentSign = start;
+        while (percentSign < line.length() && isNumberChar(line.charAt(percentSign))) {
+            percentSign++;
+        }
+        if (percentSign == start || percentSign >= line.length() || line.charAt(percentSign) != '%') {
+            return false;
+        }
+        double percent = parseDecimal(line, start, percentSign);
+        if (Double.isNaN(percent) || percent > 100) {
+            return false;
+        }
+
+        out.reset();
+        out.setPercent(percent);
+
+        int of = indexOf(line, " of ", percentSign);
+        if (of >= 0) {
+            int p = skipSpaces(line, of + 4);
+            if (p < line.length() && line.charAt(p) == '~') {
+                p = skipSpaces(line, p + 1);
+            }
+            out.setTotalBytes(parseSize(line, p));
+            if (out.getTotalBytes() > 0) {
+                out.setDownloadedBytes((long) (out.getTotalBytes() * percent / 100));
+            }
+        }
+
+        int at = indexOf(line, " at ", percentSign);
+        if (at >= 0) {
+            out.setSpeedBytesPerSecond(parseSize(line, skipSpaces(line, at + 4)));
+        }
+
+        int eta = indexOf(line, "ETA ", percentSign);
+        if (eta >= 0) {
+            out.setEtaSeconds(parseDuration(line, eta + 4));
+        }
+        return true;
+    }
+
+    private static boolean isNumberChar(char c) {
+        return (c >= '0' && c <= '9') || c == '.';
+    }
+
+    private static boolean startsWith(CharSequence s, String prefix) {
+        if (s.length() < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (s.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipSpaces(CharSequence s, int from) {
+        while (from < s.length() && s.charAt(from) == ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private static int indexOf(CharSequence s, String needle, int from) {
+        int max = s.length() - needle.length();
+        outer:
+        for (int i = from; i <= max; i++) {
+            for (int j = 0; j < needle.length(); j++) {
+                if (s.charAt(i + j) != needle.charAt(j)) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static double parseDecimal(CharSequence s, int from, int to) {
+        long whole = 0;
+        long fraction = 0;
+        long scale = 1;
+        boolean dot = false;
+        boolean digits = false;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c == '.') {
+                if (dot) {
+                    return Double.NaN;
+                }
+                dot = true;
+            } else if (dot) {
+                if (scale < 1_000_000_000L) {
+                    fraction = fraction * 10 + (c - '0');
+                    scale *= 10;
+                }
+                digits = true;
+            } else {
+                whole = whole * 10 + (c - '0');
+                digits = true;
+            }
+        }
+        return digits ? whole + (double) fraction / scale : Double.NaN;
+    }
+
+    /**
+     * Parses sizes like {@code 12.34MiB}, {@code 900KiB} or {@code 1.2MB}; returns -1 for
+     * {@code Unknown} or anything unparsable.
+     */
+    private static long parseSize(CharSequence s, int from) {
+        int end = from;
+        while (end < s.length() && isNumberChar(s.charAt(end))) {
+            end++;
+        }
+        if (end == from) {
+            return -1;
+        }
+        double value = parseDecimal(s, from, end);
+        if (Double.isNaN(value)) {
+            return -1;
+        }
+        long multiplier = 1;
+        if (end < s.length()) {
+            boolean binary = end + 1 < s.length() && s.charAt(end + 1) == 'i';
+            long base = binary ? 1024 : 1000;
+            switch (s.charAt(end)) {
+                case 'K', 'k' -> multiplier = base;
+                case 'M' -> multiplier = base * base;
+                case 'G' -> multiplier = base * base * base;
+                case 'T' -> multiplier = base * base * base * base;
+                default -> multiplier = 1;
+            }
+        }
+        return (long) (value * multiplier);
+    }
+
+    /**
+     * Parses {@code SS}, {@code MM:SS} or {@code HH:MM:SS}; returns -1 for {@code Unknown}.
+     */
+    private static long parseDuration(CharSequence s, int from) {
+        long total = 0;
+        long field = 0;
+        boolean digits = false;
+        int i = from;
+        for (; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                field = field * 10 + (c - '0');
+                digits = true;
+            } else if (c == ':') {
+                total = total * 60 + field;
+                field = 0;
+            } else {
+                break;
+            }
+        }
+        return digits ? total * 60 + field : -1;
+    }
+}
@@ -0,0 +1,73 @@
+package video.example.com.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Runs one yt-dlp process and collects everything the utils need from it: progress lines
+ * for the callback and the JSON info dict for the metadata. Downloads add
+ * {@link #DOWNLOAD_WITH_METADATA} so title, id, duration and formats come out of the same
+ * extractor pass as the file instead of a separate {@code --get-title} run.
+ */
+public final class YtDlpRunner {
+
+
+    /** Print the info dict, still download, and keep progress lines despite the implied --quiet. */
+    public static final List<String> DOWNLOAD_WITH_METADATA = List.of("--dump-json", "--no-simulate", "--progress", "--newline");
+
+    /** Output kept in {@link Result#output()}; the full output goes to the watcher. */
+    private static final int OUTPUT_TAIL_CHARS = 8 * 1024;
+
+    /** Print the info dict without downloading. */
+    public static final List<String> METADATA_ONLY = List.of("--dump-json", "--no-warnings");
+
+    /**
+     * @param output the last few KB of what yt-dlp printed, for error messages
+     */
+    public record Result(int exitCode, VideoMetadata metadata, OutputRingBuffer output) {
+    }
+
+    private YtDlpRunner() {
+    }
+
+    public static Result run(List<String> command, String phase, Consumer<ProgressEvent> progressCallback,
+                             ProcessWatcher processWatcher) throws IOException {
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.redirectErrorStream(true);
+        Process process = pb.start();
+        processWatcher.started(process, phase);
+
+        OutputRingBuffer output = new OutputRingBuffer(OUTPUT_TAIL_CHARS);
+        VideoMetadata metadata = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            ProgressEvent progress = new ProgressEvent();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (metadata == null && !line.isEmpty() && line.charAt(0) == '{') {
+                    metadata = VideoMetadata.parse(line);
+                    if (metadata != null) {
+                        continue;
+                    }
+                }
+                output.append(line);
+                processWatcher.output(line);
+                if (progressCallback != null && YtDlpProgressParser.parse(line, progress)) {
+                    progressCallback.accept(progress);
+                }
+            }
+        } catch (IOException e) {
+            throw new IOException("Failed to read yt-dlp output: " + e.getMessage(), e);
+        }
+
+        try {
+            return new Result(process.waitFor(), metadata, output);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for yt-dlp", e);
+        }
+    }
+}
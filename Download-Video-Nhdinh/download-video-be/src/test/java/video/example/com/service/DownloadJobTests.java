@@ -0,0 +1,61 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class DownloadJobTests {
+
+    @Test
+    void slowSubscriberDoesNotHoldUpPublisherOrLoseTheEnd() throws Exception {
+        DownloadJob job = new DownloadJob("job", Platform.TIKTOK, "https://www.tiktok.com/@a/video/1", null, 1000, 32);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        List<String> received = new CopyOnWriteArrayList<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            job.subscribe(new DownloadJob.Subscriber() {
+                @Override
+                public void onEvent(DownloadJob.Event event) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    received.add(event.data());
+                }
+
+                @Override
+                public void onFinished() {
+                    finished.countDown();
+                }
+            }, 0, executor);
+
+            long startedAt = System.nanoTime();
+            for (int i = 0; i < 200; i++) {
+                job.publish("PROGRESS_" + i);
+            }
+            job.publish("retry", "RETRY_1");
+            job.complete("DONE_abc");
+            assertTrue(System.nanoTime() - startedAt < TimeUnit.SECONDS.toNanos(1), "publisher was blocked");
+
+            release.countDown();
+            assertTrue(finished.await(5, TimeUnit.SECONDS));
+            // Old progress was dropped, the newest progress, the notice and the end were not
+            assertTrue(received.size() <= DownloadJob.DELIVERY_QUEUE_SIZE + 3, "received " + received.size());
+            assertTrue(received.contains("PROGRESS_199"));
+            assertTrue(received.contains("RETRY_1"));
+            assertEquals("DONE_abc", received.get(received.size() - 1));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class JobJournalTests {
+
+    @TempDir
+    Path dir;
+
+    private JobJournal open() {
+        JobJournal journal = new JobJournal();
+        ReflectionTestUtils.setField(journal, "enabled", true);
+        ReflectionTestUtils.setField(journal, "dir", dir.toString());
+        ReflectionTestUtils.setField(journal, "fsync", false);
+        ReflectionTestUtils.setField(journal, "compactAfter", 1000);
+        journal.init();
+        return journal;
+    }
+
+    @Test
+    void replaysUnfinishedJobsAndSkipsTornLine() throws IOException {
+        JobJournal journal = open();
+        JobJournal.Entry running = JobJournal.Entry.create(Platform.TIKTOK, "https://www.tiktok.com/@a/video/1", null, "a1");
+        JobJournal.Entry done = JobJournal.Entry.create(Platform.FACEBOOK, "https://www.facebook.com/watch?v=2", "Clip", "b2");
+        journal.record(running, JobJournal.State.QUEUED);
+        journal.record(done, JobJournal.State.QUEUED);
+        journal.record(running, JobJournal.State.CHECKPOINTED);
+        journal.record(done, JobJournal.State.DONE);
+        journal.close();
+        // A crash in the middle of a write
+        Files.writeString(dir.resolve("jobs.journal"), "{\"job\":\"", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        JobJournal reopened = open();
+        List<JobJournal.Entry> interrupted = reopened.interrupted();
+        assertEquals(1, interrupted.size());
+        assertEquals(running.job(), interrupted.get(0).job());
+        assertEquals(JobJournal.State.CHECKPOINTED, interrupted.get(0).state());
+        assertEquals(Platform.TIKTOK, interrupted.get(0).platform());
+        // Compacted down to the open job
+        assertEquals(1, Files.readAllLines(dir.resolve("jobs.journal")).size());
+
+        reopened.record(interrupted.get(0).resumed(), JobJournal.State.DONE);
+        reopened.close();
+        assertEquals(List.of(), open().interrupted());
+    }
+}
@@ -0,0 +1,123 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import video.example.com.util.LatencyWindow;
+
+class PreviewHedgerTests {
+
+    private final PreviewHedger hedger = new PreviewHedger();
+
+    @BeforeEach
+    void configure() {
+        ReflectionTestUtils.setField(hedger, "enabled", true);
+        ReflectionTestUtils.setField(hedger, "percentile", 0.95);
+        ReflectionTestUtils.setField(hedger, "defaultDelayMs", 100L);
+        ReflectionTestUtils.setField(hedger, "minDelayMs", 10L);
+        ReflectionTestUtils.setField(hedger, "maxDelayMs", 1000L);
+    }
+
+    @AfterEach
+    void stop() {
+        hedger.shutdown();
+    }
+
+    @Test
+    void fastPrimaryWinsWithoutStartingBackup() throws Exception {
+        AtomicBoolean backupStarted = new AtomicBoolean();
+        String result = hedger.resolve("test",
+                PreviewHedger.Attempt.of(() -> "oembed"),
+                PreviewHedger.Attempt.of(() -> {
+                    backupStarted.set(true);
+                    return "yt-dlp";
+                }),
+                r -> r != null);
+
+        assertEquals("oembed", result);
+        assertFalse(backupStarted.get());
+    }
+
+    @Test
+    void slowPrimaryIsHedgedAndCancelled() throws Exception {
+        CountDownLatch primaryInterrupted = new CountDownLatch(1);
+        String result = hedger.resolve("test",
+                PreviewHedger.Attempt.of(() -> {
+                    try {
+                        Thread.sleep(10_000);
+                    } catch (InterruptedException e) {
+                        primaryInterrupted.countDown();
+                        throw e;
+                    }
+                    return "oembed";
+                }),
+                PreviewHedger.Attempt.of(() -> "yt-dlp"),
+                r -> r != null);
+
+        assertEquals("yt-dlp", result);
+        assertTrue(primaryInterrupted.await(2, TimeUnit.SECONDS));
+        assertEquals(1L, hedger.stats().get("hedged"));
+        assertEquals(1L, hedger.stats().get("backupWins"));
+    }
+
+    @Test
+    void primaryAnsweringWhileHedgedCancelsBackup() throws Exception {
+        AtomicBoolean backupCancelled = new AtomicBoolean();
+        String result = hedger.resolve("test",
+                PreviewHedger.Attempt.of(() -> {
+                    Thread.sleep(200);
+                    return "oembed";
+                }),
+                PreviewHedger.Attempt.of(() -> {
+                    Thread.sleep(10_000);
+                    return "yt-dlp";
+                }, () -> backupCancelled.set(true)),
+                r -> r != null);
+
+        assertEquals("oembed", result);
+        assertTrue(backupCancelled.get());
+    }
+
+    @Test
+    void failedPrimaryFallsBackToBackup() throws Exception {
+        String result = hedger.resolve("test",
+                PreviewHedger.Attempt.of(() -> {
+                    throw new IllegalStateException("HTTP 500");
+                }),
+                PreviewHedger.Attempt.of(() -> "yt-dlp"),
+                r -> r != null);
+
+        assertEquals("yt-dlp", result);
+        assertEquals(0L, hedger.stats().get("hedged"));
+    }
+
+    @Test
+    void hedgeDelayFollowsRecentPercentile() throws Exception {
+        for (int i = 0; i < 25; i++) {
+            hedger.resolve("test", PreviewHedger.Attempt.of(() -> "oembed"), PreviewHedger.Attempt.of(() -> "yt-dlp"),
+                    r -> r != null);
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Object> delays = (Map<String, Object>) hedger.stats().get("hedgeDelayMs");
+        // Instant answers clamp the hedge delay to the configured minimum
+        assertEquals(10L, delays.get("test"));
+
+        LatencyWindow window = new LatencyWindow(4);
+        for (long sample : new long[] {500, 10, 20, 30, 40}) {
+            window.record(sample);
+        }
+        assertEquals(40L, window.percentile(0.95));
+        assertEquals(20L, window.percentile(0.5));
+    }
+}
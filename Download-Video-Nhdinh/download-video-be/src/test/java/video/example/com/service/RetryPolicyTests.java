@@ -0,0 +1,68 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import video.example.com.util.FailureClass;
+
+class RetryPolicyTests {
+
+    private final RetryPolicy policy = new RetryPolicy(new DownloadMetrics(new SimpleMeterRegistry(), new VideoFileCache()));
+
+    @BeforeEach
+    void configure() {
+        ReflectionTestUtils.setField(policy, "tiktokMaxAttempts", 3);
+        ReflectionTestUtils.setField(policy, "facebookMaxAttempts", 2);
+        ReflectionTestUtils.setField(policy, "instagramMaxAttempts", 2);
+        ReflectionTestUtils.setField(policy, "tiktokBudgetPerMinute", 30.0);
+        ReflectionTestUtils.setField(policy, "facebookBudgetPerMinute", 20.0);
+        ReflectionTestUtils.setField(policy, "instagramBudgetPerMinute", 2.0);
+        ReflectionTestUtils.setField(policy, "baseDelayMs", 1000L);
+        ReflectionTestUtils.setField(policy, "maxDelayMs", 30000L);
+        ReflectionTestUtils.setField(policy, "rateLimitedDelayMs", 5000L);
+        policy.init();
+    }
+
+    @Test
+    void permanentFailuresAreNotRetried() {
+        RetryPolicy.Decision decision = policy.onFailure(Platform.TIKTOK, "download", 1, "ERROR: This video is private", 1);
+        assertFalse(decision.retry());
+        assertEquals(FailureClass.PERMANENT, decision.failure());
+    }
+
+    @Test
+    void transientFailuresRetryUntilTheAttemptLimit() {
+        IOException timeout = new IOException("Read timed out");
+        assertTrue(policy.onFailure(Platform.FACEBOOK, "download", 1, timeout).retry());
+        assertFalse(policy.onFailure(Platform.FACEBOOK, "download", 2, timeout).retry());
+    }
+
+    @Test
+    void budgetCapsRetriesPerPlatform() {
+        assertTrue(policy.onFailure(Platform.INSTAGRAM, "download", 1, "HTTP Error 503", 1).retry());
+        assertTrue(policy.onFailure(Platform.INSTAGRAM, "download", 1, "HTTP Error 503", 1).retry());
+        assertFalse(policy.onFailure(Platform.INSTAGRAM, "download", 1, "HTTP Error 503", 1).retry());
+        // Other platforms have their own budget
+        assertTrue(policy.onFailure(Platform.TIKTOK, "download", 1, "HTTP Error 503", 1).retry());
+    }
+
+    @Test
+    void backoffGrowsWithJitterAndWaitsLongerAfter429() {
+        for (int i = 0; i < 100; i++) {
+            long first = policy.delayMillis(1, FailureClass.TRANSIENT);
+            long third = policy.delayMillis(3, FailureClass.TRANSIENT);
+            long rateLimited = policy.delayMillis(1, FailureClass.RATE_LIMITED);
+            assertTrue(first >= 500 && first <= 1000, "first: " + first);
+            assertTrue(third >= 2000 && third <= 4000, "third: " + third);
+            assertTrue(rateLimited >= 2500 && rateLimited <= 5000, "429: " + rateLimited);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.sun.net.httpserver.HttpServer;
+
+class SegmentedDownloaderTests {
+
+    private final byte[] content = new byte[300_000];
+    private final AtomicInteger rangeRequests = new AtomicInteger();
+    private final SharedHttpClient httpClient = new SharedHttpClient(5_000, 10_000);
+    private final SegmentedDownloader downloader = new SegmentedDownloader(httpClient);
+    private HttpServer server;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void start() throws Exception {
+        new Random(42).nextBytes(content);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/video.mp4", exchange -> {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            rangeRequests.incrementAndGet();
+            String[] bounds = range.substring("bytes=".length()).split("-", -1);
+            int start = Integer.parseInt(bounds[0]);
+            int end = bounds[1].isEmpty() ? content.length - 1 : Integer.parseInt(bounds[1]);
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+            exchange.sendResponseHeaders(206, end - start + 1);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(content, start, end - start + 1);
+            }
+        });
+        server.createContext("/gone.mp4", exchange -> {
+            exchange.sendResponseHeaders(403, -1);
+            exchange.close();
+        });
+        server.start();
+        ReflectionTestUtils.setField(downloader, "segments", 4);
+        ReflectionTestUtils.setField(downloader, "minSegmentBytes", 50_000L);
+        ReflectionTestUtils.setField(downloader, "requestTimeoutSeconds", 10L);
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+        downloader.shutdown();
+        httpClient.shutdown();
+    }
+
+    @Test
+    void downloadsInParallelSegments() throws Exception {
+        Path target = tempDir.resolve("out.mp4");
+        downloader.download(uri("/video.mp4"), target, null, null);
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(4, rangeRequests.get());
+    }
+
+    @Test
+    void reportsRefusedUrlAsExpired() {
+        Path target = tempDir.resolve("gone.mp4");
+        assertThrows(SegmentedDownloader.UrlExpiredException.class, () -> downloader.download(uri("/gone.mp4"), target, null, null));
+        assertFalse(Files.exists(target));
+    }
+
+    @Test
+    void readsCdnExpiry() {
+        assertTrue(SegmentedDownloader.isExpired(URI.create("https://v16.tiktokcdn.com/a.mp4?x-expires=1000"), 2000));
+        assertFalse(SegmentedDownloader.isExpired(URI.create("https://v16.tiktokcdn.com/a.mp4?expire=5000"), 2000));
+        assertTrue(SegmentedDownloader.isExpired(URI.create("https://video.xx.fbcdn.net/v.mp4?oe=3E8"), 2000));
+        assertFalse(SegmentedDownloader.isExpired(URI.create("https://cdn.example.com/v.mp4"), 2000));
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+}
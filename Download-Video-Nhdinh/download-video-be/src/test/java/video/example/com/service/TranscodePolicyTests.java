@@ -0,0 +1,36 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TranscodePolicyTests {
+
+    @Test
+    void parsesFfprobeOutput() {
+        TranscodePolicy.MediaInfo info = TranscodePolicy.parseProbe(List.of(
+                "codec_name=hevc", "codec_type=video",
+                "codec_name=aac", "codec_type=audio",
+                "format_name=mov,mp4,m4a,3gp,3g2,mj2"));
+        assertEquals(new TranscodePolicy.MediaInfo("mov,mp4,m4a,3gp,3g2,mj2", "hevc", "aac"), info);
+    }
+
+    @Test
+    void picksCheapestAction() {
+        assertEquals(TranscodePolicy.Action.KEEP,
+                TranscodePolicy.plan(new TranscodePolicy.MediaInfo("mov,mp4,m4a", "h264", "aac")).action());
+        assertEquals(TranscodePolicy.Action.REMUX,
+                TranscodePolicy.plan(new TranscodePolicy.MediaInfo("matroska,webm", "h264", "aac")).action());
+
+        TranscodePolicy.Plan hevc = TranscodePolicy.plan(new TranscodePolicy.MediaInfo("mov,mp4,m4a", "hevc", "aac"));
+        assertEquals(TranscodePolicy.Action.TRANSCODE, hevc.action());
+        assertFalse(hevc.copyVideo());
+        assertTrue(hevc.copyAudio());
+
+        assertEquals(TranscodePolicy.Action.TRANSCODE, TranscodePolicy.plan(null).action());
+    }
+}
@@ -0,0 +1,92 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class VideoFileServerTests {
+
+    private final VideoFileServer server = new VideoFileServer(
+            new DownloadMetrics(new SimpleMeterRegistry(), new VideoFileCache()), new VideoFileCache());
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void parsesRangeForms() {
+        assertEquals(List.of(new VideoFileServer.ByteRange(0, 9)), VideoFileServer.parseRanges("bytes=0-9", 100));
+        assertEquals(List.of(new VideoFileServer.ByteRange(90, 99)), VideoFileServer.parseRanges("bytes=90-", 100));
+        assertEquals(List.of(new VideoFileServer.ByteRange(80, 99)), VideoFileServer.parseRanges("bytes=-20", 100));
+        assertEquals(List.of(new VideoFileServer.ByteRange(50, 99)), VideoFileServer.parseRanges("bytes=50-500", 100));
+        assertEquals(2, VideoFileServer.parseRanges("bytes=0-1, 5-6", 100).size());
+        assertTrue(VideoFileServer.parseRanges("bytes=100-", 100).isEmpty());
+        assertNull(VideoFileServer.parseRanges("bytes=9-1", 100));
+        assertNull(VideoFileServer.parseRanges("items=0-1", 100));
+    }
+
+    @Test
+    void servesPartialContentAndHonoursEtag() throws Exception {
+        File file = write("0123456789");
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.addHeader("Range", "bytes=2-4");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        server.serve(file, request, response);
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 2-4/10", response.getHeader("Content-Range"));
+        assertEquals("234", response.getContentAsString());
+
+        MockHttpServletRequest conditional = new MockHttpServletRequest("GET", "/download");
+        conditional.addHeader("If-None-Match", response.getHeader("ETag"));
+        MockHttpServletResponse notModified = new MockHttpServletResponse();
+        server.serve(file, conditional, notModified);
+        assertEquals(304, notModified.getStatus());
+        assertEquals(0, notModified.getContentAsByteArray().length);
+    }
+
+    @Test
+    void servesMultipleRangesAsMultipart() throws Exception {
+        File file = write("0123456789");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.addHeader("Range", "bytes=0-1,8-9");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        server.serve(file, request, response);
+
+        assertEquals(206, response.getStatus());
+        assertTrue(response.getContentType().startsWith("multipart/byteranges"));
+        String body = response.getContentAsString();
+        assertTrue(body.contains("Content-Range: bytes 0-1/10\r\n\r\n01"));
+        assertTrue(body.contains("Content-Range: bytes 8-9/10\r\n\r\n89"));
+        assertEquals(response.getContentAsByteArray().length, response.getContentLengthLong());
+    }
+
+    @Test
+    void rejectsUnsatisfiableRange() throws Exception {
+        File file = write("0123456789");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.addHeader("Range", "bytes=20-30");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        server.serve(file, request, response);
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */10", response.getHeader("Content-Range"));
+    }
+
+    private File write(String content) throws Exception {
+        Path path = tempDir.resolve("video.mp4");
+        Files.writeString(path, content, StandardCharsets.US_ASCII);
+        return path.toFile();
+    }
+}
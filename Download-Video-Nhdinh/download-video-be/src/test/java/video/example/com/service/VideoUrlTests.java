@@ -0,0 +1,67 @@
+package video.example.com.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class VideoUrlTests {
+
+    @Test
+    void tiktokSpellingsShareOneKey() {
+        String key = "tiktok:7312345678901234567";
+        assertEquals(key, VideoUrl.parse("https://www.tiktok.com/@someone/video/7312345678901234567").key());
+        assertEquals(key, VideoUrl.parse("https://www.tiktok.com/@someone/video/7312345678901234567?is_from_webapp=1&sender_device=pc").key());
+        assertEquals(key, VideoUrl.parse("https://m.tiktok.com/v/7312345678901234567.html").key());
+        assertEquals(key, VideoUrl.parse("https://www.tiktok.com/embed/v2/7312345678901234567").key());
+    }
+
+    @Test
+    void facebookSpellingsShareOneKey() {
+        String key = "facebook:1234567890123456";
+        assertEquals(key, VideoUrl.parse("https://www.facebook.com/watch/?v=1234567890123456").key());
+        assertEquals(key, VideoUrl.parse("https://m.facebook.com/watch?ref=share&v=1234567890123456").key());
+        assertEquals(key, VideoUrl.parse("https://www.facebook.com/somepage/videos/1234567890123456/").key());
+        assertEquals(key, VideoUrl.parse("https://web.facebook.com/somepage/videos/a-title/1234567890123456").key());
+        assertEquals(key, VideoUrl.parse("https://www.facebook.com/reel/1234567890123456?mibextid=abc").key());
+    }
+
+    @Test
+    void instagramKeepsShortcodeCase() {
+        assertEquals("instagram:C1a2B3c4D5e", VideoUrl.parse("https://www.instagram.com/reel/C1a2B3c4D5e/?igsh=abcdefghijkl").key());
+        assertEquals("instagram:C1a2B3c4D5e", VideoUrl.parse("https://instagram.com/reels/C1a2B3c4D5e").key());
+        assertEquals("instagram:C1a2B3c4D5e", VideoUrl.parse("https://www.instagram.com/someone/p/C1a2B3c4D5e/").key());
+    }
+
+    @Test
+    void shortLinksHaveNoIdUntilResolved() {
+        assertNull(VideoUrl.parse("https://vm.tiktok.com/ZMabc123/"));
+        assertNull(VideoUrl.parse("https://fb.watch/abcDEF123/"));
+        assertTrue(VideoUrl.isShortLink("https://vm.tiktok.com/ZMabc123/"));
+        assertTrue(VideoUrl.isShortLink("https://www.tiktok.com/t/ZTabc123/"));
+        assertTrue(VideoUrl.isShortLink("https://fb.watch/abcDEF123/"));
+        assertTrue(VideoUrl.isShortLink("https://www.facebook.com/share/v/1AbCdEf/"));
+        assertFalse(VideoUrl.isShortLink("https://www.tiktok.com/@someone/video/7312345678901234567"));
+    }
+
+    @Test
+    void normalizeDropsTrackingAndSortsParameters() {
+        assertEquals("https://facebook.com/story.php?id=2&story_fbid=1",
+                VideoUrl.normalize("HTTPS://M.Facebook.com/story.php?story_fbid=1&fbclid=xyz&id=2#comments"));
+        assertEquals("https://vm.tiktok.com/ZMabc123", VideoUrl.normalize("https://vm.tiktok.com/ZMabc123/"));
+    }
+
+    @Test
+    void acceptsWhatTheControllersAlwaysAccepted() {
+        assertTrue(VideoUrl.accepts(Platform.TIKTOK, "https://vm.tiktok.com/ZMabc123/"));
+        assertFalse(VideoUrl.accepts(Platform.TIKTOK, "https://example.com/@someone/video/1"));
+        assertTrue(VideoUrl.accepts(Platform.FACEBOOK, "https://fb.watch/abcDEF123/"));
+        assertTrue(VideoUrl.accepts(Platform.INSTAGRAM, "https://www.instagram.com/reel/C1a2B3c4D5e?igsh=abc"));
+        assertFalse(VideoUrl.accepts(Platform.INSTAGRAM, "https://www.instagram.com/p/C1a2B3c4D5e/"));
+        assertFalse(VideoUrl.accepts(Platform.TIKTOK, null));
+        assertEquals(Platform.FACEBOOK, VideoUrl.platformOf("https://fb.watch/abcDEF123/"));
+        assertNull(VideoUrl.platformOf("ftp://www.tiktok.com/x"));
+    }
+}
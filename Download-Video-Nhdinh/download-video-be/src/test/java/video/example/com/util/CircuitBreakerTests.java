@@ -0,0 +1,90 @@
+package video.example.com.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTests {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private static CircuitBreaker breaker() {
+        return new CircuitBreaker(10, 4, 0.5, 30 * SECOND, 300 * SECOND, 2);
+    }
+
+    @Test
+    void opensOnceFailureRateReachesThresholdAfterMinCalls() {
+        CircuitBreaker breaker = breaker();
+        breaker.onFailure(0);
+        breaker.onFailure(0);
+        breaker.onFailure(0);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.onSuccess();
+        breaker.onFailure(0);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire(SECOND));
+        assertTrue(breaker.isOpen(SECOND));
+        assertEquals(29 * SECOND, breaker.retryAfterNanos(SECOND));
+    }
+
+    @Test
+    void staysClosedWhileMostCallsSucceed() {
+        CircuitBreaker breaker = breaker();
+        for (int i = 0; i < 20; i++) {
+            breaker.onSuccess();
+            breaker.onSuccess();
+            breaker.onFailure(0);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire(0));
+    }
+
+    @Test
+    void closesWhenHalfOpenProbesSucceed() {
+        CircuitBreaker breaker = breaker();
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure(0);
+        }
+
+        assertTrue(breaker.tryAcquire(30 * SECOND));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire(30 * SECOND));
+        assertFalse(breaker.tryAcquire(30 * SECOND));
+        breaker.onSuccess();
+        breaker.onSuccess();
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.failureRate());
+    }
+
+    @Test
+    void failedProbeReopensForTwiceAsLong() {
+        CircuitBreaker breaker = breaker();
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure(0);
+        }
+
+        assertTrue(breaker.tryAcquire(30 * SECOND));
+        breaker.onFailure(30 * SECOND);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire(89 * SECOND));
+        assertTrue(breaker.tryAcquire(90 * SECOND));
+    }
+
+    @Test
+    void lostProbeFreesItsSlotAfterOneOpenPeriod() {
+        CircuitBreaker breaker = breaker();
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure(0);
+        }
+        assertTrue(breaker.tryAcquire(30 * SECOND));
+        assertTrue(breaker.tryAcquire(30 * SECOND));
+
+        assertFalse(breaker.tryAcquire(59 * SECOND));
+        assertTrue(breaker.tryAcquire(60 * SECOND));
+    }
+}
@@ -0,0 +1,45 @@
+package video.example.com.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class ConsistentHashRingTests {
+
+    private static final List<String> NODES = List.of("http://a:8081", "http://b:8081", "http://c:8081");
+
+    @Test
+    void spreadsKeysOverAllNodes() {
+        ConsistentHashRing ring = new ConsistentHashRing(NODES, 128);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 3000; i++) {
+            counts.merge(ring.nodeFor("tiktok:" + i), 1, Integer::sum);
+        }
+        assertEquals(3, counts.size());
+        counts.values().forEach(count -> assertTrue(count > 700, "unbalanced: " + counts));
+    }
+
+    @Test
+    void removingANodeOnlyMovesItsKeys() {
+        ConsistentHashRing full = new ConsistentHashRing(NODES, 128);
+        ConsistentHashRing reduced = new ConsistentHashRing(NODES.subList(0, 2), 128);
+        for (int i = 0; i < 1000; i++) {
+            String key = "facebook:" + i;
+            String owner = full.nodeFor(key);
+            if (!owner.equals("http://c:8081")) {
+                assertEquals(owner, reduced.nodeFor(key));
+            }
+        }
+    }
+
+    @Test
+    void emptyRingHasNoOwner() {
+        assertNull(new ConsistentHashRing(List.of(), 128).nodeFor("tiktok:1"));
+    }
+}
@@ -0,0 +1,39 @@
+package video.example.com.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+
+import org.junit.jupiter.api.Test;
+
+class FailureClassTests {
+
+    @Test
+    void readsYtDlpOutput() {
+        assertEquals(FailureClass.PERMANENT, FailureClass.classify("ERROR: [TikTok] 123: This video is private", 1));
+        assertEquals(FailureClass.PERMANENT, FailureClass.classify("ERROR: Unsupported URL: https://example.com", 1));
+        assertEquals(FailureClass.RATE_LIMITED, FailureClass.classify("ERROR: [TikTok] 123: HTTP Error 429: Too Many Requests", 1));
+        // Instagram reports throttling as unavailable content; the rate limit has to win
+        assertEquals(FailureClass.RATE_LIMITED, FailureClass.classify(
+                "ERROR: [Instagram] abc: Requested content is not available, rate-limit reached or login required", 1));
+        assertEquals(FailureClass.FORBIDDEN, FailureClass.classify("ERROR: unable to download video data: HTTP Error 403: Forbidden", 1));
+        assertEquals(FailureClass.ROUTE_ERROR, FailureClass.classify("ProxyError('Unable to connect to proxy')", 1));
+        assertEquals(FailureClass.TRANSIENT, FailureClass.classify("ERROR: unable to download video data: HTTP Error 503: Service Unavailable", 1));
+        assertEquals(FailureClass.UNKNOWN, FailureClass.classify("ERROR: something new", 1));
+    }
+
+    @Test
+    void usesExitCodes() {
+        assertEquals(FailureClass.PERMANENT, FailureClass.classify("Usage: yt-dlp [OPTIONS] URL", 2));
+        assertEquals(FailureClass.TRANSIENT, FailureClass.classify("", 137));
+    }
+
+    @Test
+    void readsExceptions() {
+        assertEquals(FailureClass.PERMANENT, FailureClass.of(new ProcessFailedException("ffmpeg exited with code 1", 1,
+                "input.mp4: Invalid data found when processing input")));
+        assertEquals(FailureClass.TRANSIENT, FailureClass.of(new HttpTimeoutException("request timed out")));
+        assertEquals(FailureClass.CANCELLED, FailureClass.of(new IOException("Interrupted while waiting for yt-dlp", new InterruptedException())));
+    }
+}
@@ -0,0 +1,32 @@
+package video.example.com.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class OutputRingBufferTests {
+
+    @Test
+    void keepsOnlyTheLastCharacters() {
+        OutputRingBuffer buffer = new OutputRingBuffer(10);
+        buffer.append("aaaa");
+        buffer.append("bbbb");
+        buffer.append("cccc");
+
+        assertEquals(List.of("bbbb", "cccc"), buffer.lines());
+        assertEquals(1, buffer.droppedLines());
+        assertEquals("[1 earlier lines dropped]\nbbbb\ncccc", buffer.toString());
+    }
+
+    @Test
+    void truncatesLinesLongerThanTheCapacity() {
+        OutputRingBuffer buffer = new OutputRingBuffer(4);
+        buffer.append("ab");
+        buffer.append("0123456789");
+
+        assertEquals(List.of("6789"), buffer.lines());
+        assertEquals(1, buffer.droppedLines());
+    }
+}
@@ -0,0 +1,49 @@
+package video.example.com.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class TokenBucketTests {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void allowsBurstThenReportsWaitForNextToken() {
+        TokenBucket bucket = new TokenBucket(2, 0.5, 0);
+
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(2 * SECOND, bucket.tryAcquire(0));
+        assertEquals(SECOND, bucket.tryAcquire(SECOND));
+        assertEquals(0, bucket.tryAcquire(2 * SECOND));
+    }
+
+    @Test
+    void refillsUpToCapacityOnly() {
+        TokenBucket bucket = new TokenBucket(2, 1, 0);
+        bucket.tryAcquire(0);
+        assertFalse(bucket.isFull(0));
+
+        assertTrue(bucket.isFull(100 * SECOND));
+        assertEquals(0, bucket.tryAcquire(100 * SECOND));
+        assertEquals(0, bucket.tryAcquire(100 * SECOND));
+        assertTrue(bucket.tryAcquire(100 * SECOND) > 0);
+    }
+
+    @Test
+    void refundGivesBackATokenUpToCapacity() {
+        TokenBucket bucket = new TokenBucket(1, 0.5, 0);
+        assertEquals(0, bucket.tryAcquire(0));
+        bucket.refund();
+        assertEquals(0, bucket.tryAcquire(0));
+
+        bucket.refund();
+        bucket.refund();
+        assertTrue(bucket.isFull(0));
+        assertEquals(0, bucket.tryAcquire(0));
+        assertTrue(bucket.tryAcquire(0) > 0);
+    }
+}
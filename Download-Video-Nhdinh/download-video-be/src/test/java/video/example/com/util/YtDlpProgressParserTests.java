@@ -0,0 +1,64 @@
+package video.example.com.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class YtDlpProgressParserTests {
+
+    private final ProgressEvent event = new ProgressEvent();
+
+    @Test
+    void parsesFullProgressLine() {
+        assertTrue(YtDlpProgressParser.parse("[download]  45.3% of   10.00MiB at    2.00MiB/s ETA 01:05", event));
+        assertEquals(45.3, event.getPercent(), 0.001);
+        assertEquals(10L * 1024 * 1024, event.getTotalBytes());
+        assertEquals((long) (10L * 1024 * 1024 * 0.453), event.getDownloadedBytes());
+        assertEquals(2L * 1024 * 1024, event.getSpeedBytesPerSecond());
+        assertEquals(65, event.getEtaSeconds());
+    }
+
+    @Test
+    void parsesEstimatedSizeAndUnknownValues() {
+        assertTrue(YtDlpProgressParser.parse("[download]   3.0% of ~ 500.00KiB at  Unknown B/s ETA Unknown (frag 1/20)", event));
+        assertEquals(3.0, event.getPercent(), 0.001);
+        assertEquals(500L * 1024, event.getTotalBytes());
+        assertEquals(-1, event.getSpeedBytesPerSecond());
+        assertEquals(-1, event.getEtaSeconds());
+    }
+
+    @Test
+    void parsesFinalLine() {
+        assertTrue(YtDlpProgressParser.parse("[download] 100% of    4.20MiB in 00:00:02 at 1.95MiB/s", event));
+        assertEquals(100.0, event.getPercent(), 0.001);
+    }
+
+    @Test
+    void ignoresOtherLines() {
+        assertFalse(YtDlpProgressParser.parse("[info] Downloading 1 format(s): 0", event));
+        assertFalse(YtDlpProgressParser.parse("[download] Destination: /tmp/x.mp4", event));
+    }
+
+    @Test
+    void ignoresPercentEncodedUrlsInVerboseOutput() {
+        assertFalse(YtDlpProgressParser.parse(
+                "[debug] Invoking http downloader on \"https://v16-webapp.tiktok.com/video/tos/?a=1988&mime_type=video_mp4&l=20%2F0%2F50%25\"",
+                event));
+        assertFalse(YtDlpProgressParser.parse("[download] Destination: /tmp/clip%2050%.mp4", event));
+    }
+
+    @Test
+    void throttleDropsRepeatsButKeepsCompletion() {
+        ProgressThrottle throttle = new ProgressThrottle(1);
+        YtDlpProgressParser.parse("[download]  10.0% of 1.00MiB", event);
+        assertTrue(throttle.shouldEmit(event));
+        YtDlpProgressParser.parse("[download]  10.5% of 1.00MiB", event);
+        assertFalse(throttle.shouldEmit(event));
+        YtDlpProgressParser.parse("[download]  20.0% of 1.00MiB", event);
+        assertFalse(throttle.shouldEmit(event));
+        YtDlpProgressParser.parse("[download] 100% of 1.00MiB", event);
+        assertTrue(throttle.shouldEmit(event));
+    }
+}
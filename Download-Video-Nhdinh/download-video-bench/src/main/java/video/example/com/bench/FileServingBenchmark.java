@@ -0,0 +1,111 @@
+package video.example.com.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import video.example.com.service.DownloadMetrics;
+import video.example.com.service.VideoFileCache;
+import video.example.com.service.VideoFileServer;
+
+/**
+ * {@link VideoFileServer#serve} behind the {@code /download} endpoints, for a whole file
+ * and for a 1 MiB range (a player seeking). The response discards its body, so this is
+ * the server's own copy path; Tomcat sendfile is not available outside a connector.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileServingBenchmark {
+
+    @Param({"1048576", "16777216"})
+    public int size;
+
+    private final VideoFileServer server = new VideoFileServer(
+            new DownloadMetrics(new SimpleMeterRegistry(), new VideoFileCache()), new VideoFileCache());
+    private Path dir;
+    private File file;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        dir = Files.createTempDirectory("file-serving-bench");
+        byte[] content = new byte[size];
+        new Random(42).nextBytes(content);
+        file = Files.write(dir.resolve("video.mp4"), content).toFile();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file.toPath());
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public int wholeFile() throws IOException {
+        DiscardingResponse response = new DiscardingResponse();
+        server.serve(file, new MockHttpServletRequest("GET", "/api/download"), response);
+        return response.getStatus();
+    }
+
+    @Benchmark
+    public int range() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/download");
+        request.addHeader("Range", "bytes=" + (size / 2) + "-" + (size / 2 + 1024 * 1024 - 1));
+        DiscardingResponse response = new DiscardingResponse();
+        server.serve(file, request, response);
+        return response.getStatus();
+    }
+
+    /** Mock response whose body goes nowhere, so buffering it does not dominate the result. */
+    static class DiscardingResponse extends MockHttpServletResponse {
+
+        private final ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener listener) {
+            }
+
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return out;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package video.example.com.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import video.example.com.util.ProgressEvent;
+import video.example.com.util.YtDlpProgressParser;
+
+/**
+ * Parsing one yt-dlp output line, as done for every line of every download. The
+ * {@code legacyRegex} case is the {@code matches} + {@code replaceAll} pair the
+ * {@code *VideoUtil} classes used before {@link YtDlpProgressParser}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProgressParsingBenchmark {
+
+    private static final String[] LINES = {
+            "[download]  45.3% of   10.00MiB at    2.00MiB/s ETA 00:05",
+            "[download]   3.0% of ~ 500.00KiB at  Unknown B/s ETA Unknown (frag 1/20)",
+            "[download] 100% of   10.00MiB in 00:00:04 at 2.31MiB/s",
+            "[debug] Invoking http downloader on \"https://v16-webapp.tiktok.com/video/tos/alisg/abc\"",
+            "[info] 7312345678901234567: Downloading 1 format(s): bytevc1_720p_1234567-1",
+    };
+
+    private final ProgressEvent event = new ProgressEvent();
+    private int next;
+
+    private String nextLine() {
+        String line = LINES[next];
+        next = (next + 1) % LINES.length;
+        return line;
+    }
+
+    @Benchmark
+    public boolean parser() {
+        return YtDlpProgressParser.parse(nextLine(), event);
+    }
+
+    @Benchmark
+    public void legacyRegex(Blackhole bh) {
+        String line = nextLine();
+        if (line.matches(".*?(\\d{1,3})\\.\\d+%.*")) {
+            bh.consume(Integer.parseInt(line.replaceAll(".*?(\\d{1,3})\\.\\d+%.*", "$1")));
+        }
+    }
+}
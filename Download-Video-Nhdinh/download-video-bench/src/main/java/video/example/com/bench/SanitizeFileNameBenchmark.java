@@ -0,0 +1,41 @@
+package video.example.com.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import video.example.com.util.FacebookVideoUtil;
+
+/**
+ * {@link FacebookVideoUtil#sanitizeFileName}, run on every video title before it becomes
+ * a file name.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SanitizeFileNameBenchmark {
+
+    @Param({
+            "Funny cat compilation 2024 - part 3",
+            "Hướng dẫn nấu phở bò ngon chuẩn vị Hà Nội 🍜 #food #vietnam",
+            "【MV】最新の曲 / New song (Official Video) | 4K HDR 60fps !!! ✨✨✨"
+    })
+    public String title;
+
+    @Benchmark
+    public String sanitize() {
+        return FacebookVideoUtil.sanitizeFileName(title);
+    }
+}
@@ -0,0 +1,74 @@
+package video.example.com.bench;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import video.example.com.util.ProgressEvent;
+
+/**
+ * Turning a progress update into an SSE event, done for every throttled progress event of
+ * every subscriber. {@code jacksonMap} is the generic alternative to
+ * {@link ProgressEvent#toJson()}; {@code sseEvent} adds the event framing as
+ * {@code ProgressHub} builds it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SseSerializationBenchmark {
+
+    private final ProgressEvent event = new ProgressEvent();
+    private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+    private long downloaded;
+
+    private ProgressEvent nextEvent() {
+        downloaded = (downloaded + 65_536) % 52_428_800;
+        event.update(downloaded * 100.0 / 52_428_800, downloaded, 52_428_800, 2_097_152, 12);
+        return event;
+    }
+
+    @Benchmark
+    public String progressToJson() {
+        return nextEvent().toJson();
+    }
+
+    @Benchmark
+    public String jacksonMap() throws JsonProcessingException {
+        ProgressEvent e = nextEvent();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("percent", Math.round(e.getPercent() * 10) / 10.0);
+        body.put("downloadedBytes", e.getDownloadedBytes());
+        body.put("totalBytes", e.getTotalBytes());
+        body.put("speed", e.getSpeedBytesPerSecond());
+        body.put("eta", e.getEtaSeconds());
+        return mapper.writeValueAsString(body);
+    }
+
+    @Benchmark
+    public Set<?> sseEvent() {
+        return SseEmitter.event()
+                .id("3f2b9c1e-0d4a-4e57-9a43-6c1f1f3e8b20:" + downloaded)
+                .name("progress")
+                .data(nextEvent().toJson())
+                .build();
+    }
+}
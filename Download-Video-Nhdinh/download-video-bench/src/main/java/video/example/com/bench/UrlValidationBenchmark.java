@@ -0,0 +1,96 @@
+package video.example.com.bench;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import video.example.com.service.VideoUrl;
+
+/**
+ * Request URL checks of the three controllers. The expressions are the ones the
+ * controllers pass to {@code String.matches}, which compiles the pattern on every call;
+ * the {@code precompiled} cases show what a static {@link Pattern} costs instead. The
+ * host checks mirror {@code TiktokVideoController.isValidThumbnailUrl}; {@code videoKey}
+ * is the cache key extraction every download and preview goes through.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UrlValidationBenchmark {
+
+    private static final String TIKTOK_REGEX = "https?://(www\\.)?(tiktok\\.com|vm\\.tiktok\\.com|vt\\.tiktok\\.com)/.*";
+    private static final String FACEBOOK_REGEX = "https?://(www\\.)?(facebook\\.com|fb\\.watch|fb\\.com)/.*";
+    private static final String INSTAGRAM_REGEX = "https?://(www\\.)?instagram\\.com/reel/[a-zA-Z0-9_-]+(/|\\?[^\\s]*)?";
+    private static final Pattern TIKTOK = Pattern.compile(TIKTOK_REGEX);
+    private static final Pattern FACEBOOK = Pattern.compile(FACEBOOK_REGEX);
+    private static final Pattern INSTAGRAM = Pattern.compile(INSTAGRAM_REGEX);
+    private static final List<String> THUMBNAIL_DOMAINS = List.of("tiktokcdn.com", "muscdn.com");
+
+    private final String tiktokUrl = "https://www.tiktok.com/@someone/video/7312345678901234567?is_from_webapp=1&sender_device=pc";
+    private final String facebookUrl = "https://www.facebook.com/watch/?v=1234567890123456";
+    private final String instagramUrl = "https://www.instagram.com/reel/C1a2B3c4D5e/?igsh=abcdefghijkl";
+    private final String thumbnailUrl = "https://p16-sign-va.tiktokcdn.com/obj/tos-maliva-p-0068/abc~tplv-photomode-image.jpeg?x-expires=1700000000&x-signature=abc";
+
+    @Benchmark
+    public boolean tiktokMatches() {
+        return tiktokUrl.matches(TIKTOK_REGEX);
+    }
+
+    @Benchmark
+    public boolean tiktokPrecompiled() {
+        return TIKTOK.matcher(tiktokUrl).matches();
+    }
+
+    @Benchmark
+    public boolean facebookMatches() {
+        return facebookUrl.matches(FACEBOOK_REGEX);
+    }
+
+    @Benchmark
+    public boolean facebookPrecompiled() {
+        return FACEBOOK.matcher(facebookUrl).matches();
+    }
+
+    @Benchmark
+    public boolean instagramMatches() {
+        return instagramUrl.matches(INSTAGRAM_REGEX);
+    }
+
+    @Benchmark
+    public boolean instagramPrecompiled() {
+        return INSTAGRAM.matcher(instagramUrl).matches();
+    }
+
+    @Benchmark
+    public String videoKey() {
+        return VideoUrl.parse(tiktokUrl).key();
+    }
+
+    @Benchmark
+    public boolean thumbnailHost() {
+        if (!thumbnailUrl.startsWith("https://")) {
+            return false;
+        }
+        try {
+            String host = new URI(thumbnailUrl).getHost();
+            return host != null && THUMBNAIL_DOMAINS.stream().anyMatch(host::endsWith);
+        } catch (URISyntaxException e) {
+            return false;
+        }
+    }
+}
@@ -106,14 +106,14 @@ const FacebookDownloader = () => {
       if (msg.startsWith("PROGRESS_")) {
         setProgress(Number(msg.replace("PROGRESS_", "")));
       } else if (msg.startsWith("DONE_")) {
-        const fileName = msg.replace("DONE_", "");
+        const artifactId = msg.replace("DONE_", "");
         setProgress(100);
         setSuccess("Video đã sẵn sàng để tải xuống...");
         const tempLink = document.createElement("a");
-        tempLink.href = `${API_BASE}/download?filename=${encodeURIComponent(
-          fileName
+        tempLink.href = `${API_BASE}/download?id=${encodeURIComponent(
+          artifactId
         )}`;
-        tempLink.download = sanitizedTitle ? `${sanitizedTitle}.mp4` : fileName;
+        tempLink.download = sanitizedTitle ? `${sanitizedTitle}.mp4` : "";
         tempLink.click();
         setSuccess("Tải video thành công!");
         setLoading((prev) => ({ ...prev, download: false }));
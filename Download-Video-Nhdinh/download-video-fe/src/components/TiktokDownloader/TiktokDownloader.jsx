@@ -115,14 +115,15 @@ const TiktokDownloader = () => {
       if (msg.startsWith("PROGRESS_")) {
         setProgress(Number(msg.replace("PROGRESS_", "")));
       } else if (msg.startsWith("DONE_")) {
-        const fileName = msg.replace("DONE_", "");
+        const artifactId = msg.replace("DONE_", "");
         setProgress(100);
         setSuccess("Video đã sẵn sàng để tải xuống...");
         const tempLink = document.createElement("a");
-        tempLink.href = `${API_BASE}/download?filename=${encodeURIComponent(
-          fileName
+        tempLink.href = `${API_BASE}/download?id=${encodeURIComponent(
+          artifactId
         )}`;
-        tempLink.download = fileName;
+        // The server names the file (Content-Disposition)
+        tempLink.download = "";
         tempLink.click();
         setSuccess("Tải video thành công!");
         setLoading((prev) => ({ ...prev, download: false }));